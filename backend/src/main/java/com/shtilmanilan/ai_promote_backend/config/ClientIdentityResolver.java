@@ -0,0 +1,377 @@
+package com.shtilmanilan.ai_promote_backend.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Enumeration;
+
+/**
+ * Client Identity Resolver
+ *
+ * Decides which client a request counts against for rate limiting.
+ * Forwarding headers are only believed when they come from a trusted proxy:
+ * - a request from an untrusted address is that address, whatever its
+ *   headers say, so a client cannot mint a fresh identity per request
+ * - from a trusted proxy, X-Forwarded-For is walked right to left, past
+ *   every trusted hop, and the first untrusted address is the client
+ * - with no X-Forwarded-For, a trusted proxy's X-Real-IP is used
+ * IPv6 clients are aggregated to their /64 (rate-limit.ipv6-prefix-length),
+ * the block a single subscriber typically controls.
+ *
+ * Features:
+ * - Trusted proxies as CIDRs (rate-limit.trusted-proxies), IPv4 and IPv6,
+ *   matched through a binary prefix trie in flat arrays
+ * - Addresses parsed by hand into two longs (IPv4 as ::ffff:a.b.c.d), never
+ *   through InetAddress, which may resolve host names
+ * - No allocation while parsing and matching; only the resulting key string
+ */
+@Component
+public class ClientIdentityResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClientIdentityResolver.class);
+
+    private static final long IPV4_MAPPED_PREFIX = 0xffffL << 32;
+
+    private final PrefixTrie trustedProxies = new PrefixTrie();
+    private final int ipv6PrefixLength;
+    // Parse target for the request thread: {high 64 bits, low 64 bits}
+    private final ThreadLocal<long[]> scratch = ThreadLocal.withInitial(() -> new long[2]);
+
+    public ClientIdentityResolver(Environment environment) {
+        String proxies = environment.getProperty("rate-limit.trusted-proxies", "127.0.0.0/8,::1/128");
+        this.ipv6PrefixLength = environment.getProperty("rate-limit.ipv6-prefix-length", Integer.class, 64);
+        if (ipv6PrefixLength < 1 || ipv6PrefixLength > 128) {
+            throw new IllegalArgumentException("rate-limit.ipv6-prefix-length must be between 1 and 128");
+        }
+        long[] address = new long[2];
+        for (String cidr : proxies.split(",")) {
+            String trimmed = cidr.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int slash = trimmed.indexOf('/');
+            String host = slash < 0 ? trimmed : trimmed.substring(0, slash);
+            if (!parse(host, 0, host.length(), address)) {
+                throw new IllegalArgumentException("Invalid trusted proxy address: " + trimmed);
+            }
+            boolean ipv4 = isIpv4(address);
+            int maxLength = ipv4 ? 32 : 128;
+            int length = slash < 0 ? maxLength : Integer.parseInt(trimmed.substring(slash + 1));
+            if (length < 0 || length > maxLength) {
+                throw new IllegalArgumentException("Invalid trusted proxy prefix length: " + trimmed);
+            }
+            trustedProxies.add(address[0], address[1], ipv4 ? 96 + length : length);
+        }
+        logger.info("Client identity: trusting proxies {}, IPv6 clients grouped by /{}", proxies, ipv6PrefixLength);
+    }
+
+    /**
+     * The rate limit key for the client behind request: an IPv4 address or
+     * an IPv6 prefix such as 2001:db8:1:2::/64
+     */
+    public String resolve(HttpServletRequest request) {
+        long[] address = scratch.get();
+        String remote = request.getRemoteAddr();
+        if (!parse(remote, 0, remote.length(), address)) {
+            // Not an IP (e.g. a Unix socket peer): nothing to aggregate
+            return remote;
+        }
+        if (!trustedProxies.contains(address[0], address[1])) {
+            return key(address);
+        }
+
+        String forwardedFor = forwardedFor(request);
+        if (forwardedFor != null) {
+            // Each proxy appends the address it received from: the nearest hops are last
+            int end = forwardedFor.length();
+            while (end > 0) {
+                int start = forwardedFor.lastIndexOf(',', end - 1) + 1;
+                // A hop we cannot read leaves the last trusted proxy as the client
+                if (!parse(forwardedFor, start, end, address)) {
+                    break;
+                }
+                if (!trustedProxies.contains(address[0], address[1])) {
+                    return key(address);
+                }
+                end = start - 1;
+            }
+            return key(address);
+        }
+
+        String realIp = request.getHeader("X-Real-IP");
+        if (realIp != null) {
+            parse(realIp, 0, realIp.length(), address);
+        }
+        return key(address);
+    }
+
+    /**
+     * All X-Forwarded-For lines as one list; proxies may append a line of
+     * their own rather than extend the existing one
+     */
+    private static String forwardedFor(HttpServletRequest request) {
+        Enumeration<String> lines = request.getHeaders("X-Forwarded-For");
+        if (lines == null || !lines.hasMoreElements()) {
+            return null;
+        }
+        String first = lines.nextElement();
+        if (!lines.hasMoreElements()) {
+            return first;
+        }
+        StringBuilder joined = new StringBuilder(first);
+        while (lines.hasMoreElements()) {
+            joined.append(',').append(lines.nextElement());
+        }
+        return joined.toString();
+    }
+
+    private String key(long[] address) {
+        if (isIpv4(address)) {
+            long ipv4 = address[1];
+            return ((ipv4 >>> 24) & 0xff) + "." + ((ipv4 >>> 16) & 0xff) + "." + ((ipv4 >>> 8) & 0xff) + "." + (ipv4 & 0xff);
+        }
+        StringBuilder key = new StringBuilder(48);
+        int groups = (ipv6PrefixLength + 15) / 16;
+        for (int group = 0; group < groups; group++) {
+            long word = group < 4 ? address[0] : address[1];
+            int bits = Math.min(16, ipv6PrefixLength - group * 16);
+            long value = (word >>> (48 - (group & 3) * 16)) & 0xffff & (0xffff << (16 - bits));
+            if (group > 0) {
+                key.append(':');
+            }
+            key.append(Long.toHexString(value));
+        }
+        if (groups < 8) {
+            key.append("::");
+        }
+        return key.append('/').append(ipv6PrefixLength).toString();
+    }
+
+    private static boolean isIpv4(long[] address) {
+        return address[0] == 0 && (address[1] >>> 32) == 0xffffL;
+    }
+
+    /**
+     * Parse the address in s[start, end) into out, as the 128-bit IPv6 form.
+     * Accepts surrounding whitespace, "[v6]" with an optional port, "a.b.c.d"
+     * with an optional port, and a v6 zone id. Leaves out untouched and
+     * returns false when the text is not an address.
+     */
+    static boolean parse(String s, int start, int end, long[] out) {
+        while (start < end && Character.isWhitespace(s.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(s.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            return false;
+        }
+        if (s.charAt(start) == '[') {
+            int close = s.indexOf(']', start);
+            if (close < 0 || close >= end) {
+                return false;
+            }
+            return parseIpv6(s, start + 1, close, out);
+        }
+        int firstColon = s.indexOf(':', start);
+        if (firstColon < 0 || firstColon >= end) {
+            return parseIpv4Into(s, start, end, out);
+        }
+        int dot = s.indexOf('.', start);
+        int lastColon = s.lastIndexOf(':', end - 1);
+        if (firstColon == lastColon && dot >= 0 && dot < firstColon) {
+            // a.b.c.d:port
+            return parseIpv4Into(s, start, firstColon, out);
+        }
+        return parseIpv6(s, start, end, out);
+    }
+
+    private static boolean parseIpv4Into(String s, int start, int end, long[] out) {
+        long ipv4 = parseIpv4(s, start, end);
+        if (ipv4 < 0) {
+            return false;
+        }
+        out[0] = 0;
+        out[1] = IPV4_MAPPED_PREFIX | ipv4;
+        return true;
+    }
+
+    /**
+     * Dotted quad in s[start, end) as an unsigned 32-bit value, -1 if invalid
+     */
+    private static long parseIpv4(String s, int start, int end) {
+        long result = 0;
+        int octets = 0;
+        int value = -1;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value) * 10 + (c - '0');
+                if (value > 255 || ++digits > 3) {
+                    return -1;
+                }
+            } else if (c == '.' && value >= 0 && octets < 3) {
+                result = result << 8 | value;
+                octets++;
+                value = -1;
+                digits = 0;
+            } else {
+                return -1;
+            }
+        }
+        return value < 0 || octets != 3 ? -1 : result << 8 | value;
+    }
+
+    private static boolean parseIpv6(String s, int start, int end, long[] out) {
+        int zone = s.indexOf('%', start);
+        if (zone >= 0 && zone < end) {
+            end = zone;
+        }
+        // Groups before "::" (or all of them) and after it, each packed from the low end up
+        long headHigh = 0;
+        long headLow = 0;
+        long tailHigh = 0;
+        long tailLow = 0;
+        int headGroups = 0;
+        int tailGroups = 0;
+        boolean compressed = false;
+
+        int i = start;
+        if (end - i >= 2 && s.charAt(i) == ':' && s.charAt(i + 1) == ':') {
+            compressed = true;
+            i += 2;
+        }
+        while (i < end) {
+            int segmentEnd = i;
+            boolean dotted = false;
+            while (segmentEnd < end && s.charAt(segmentEnd) != ':') {
+                dotted |= s.charAt(segmentEnd) == '.';
+                segmentEnd++;
+            }
+            if (segmentEnd == i) {
+                return false;
+            }
+            long value;
+            int groups;
+            if (dotted) {
+                // Embedded IPv4, only as the last 32 bits
+                value = segmentEnd == end ? parseIpv4(s, i, segmentEnd) : -1;
+                groups = 2;
+            } else {
+                value = segmentEnd - i > 4 ? -1 : parseHex(s, i, segmentEnd);
+                groups = 1;
+            }
+            if (value < 0 || headGroups + tailGroups + groups > 8) {
+                return false;
+            }
+            int shift = groups * 16;
+            if (compressed) {
+                tailHigh = tailHigh << shift | tailLow >>> (64 - shift);
+                tailLow = tailLow << shift | value;
+                tailGroups += groups;
+            } else {
+                headHigh = headHigh << shift | headLow >>> (64 - shift);
+                headLow = headLow << shift | value;
+                headGroups += groups;
+            }
+
+            i = segmentEnd;
+            if (i < end) {
+                i++;
+                if (i < end && s.charAt(i) == ':') {
+                    if (compressed) {
+                        return false;
+                    }
+                    compressed = true;
+                    i++;
+                } else if (i == end) {
+                    return false;
+                }
+            }
+        }
+        if (compressed ? headGroups + tailGroups > 7 : headGroups != 8) {
+            return false;
+        }
+
+        // Move the head groups to the top; "::" stands for the zeros in between
+        int shift = (8 - headGroups) * 16;
+        if (shift >= 128) {
+            headHigh = 0;
+            headLow = 0;
+        } else if (shift >= 64) {
+            headHigh = headLow << (shift - 64);
+            headLow = 0;
+        } else if (shift > 0) {
+            headHigh = headHigh << shift | headLow >>> (64 - shift);
+            headLow <<= shift;
+        }
+        out[0] = headHigh | tailHigh;
+        out[1] = headLow | tailLow;
+        return true;
+    }
+
+    private static long parseHex(String s, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = Character.digit(s.charAt(i), 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    /**
+     * Set of 128-bit prefixes as a binary trie: node n's children are at
+     * children[2n] and children[2n + 1] (0 = none, node 0 being the root),
+     * and a node ending a prefix is marked in terminal. A lookup walks at
+     * most 128 array slots and stops at the first prefix it passes.
+     */
+    private static final class PrefixTrie {
+        private int[] children = new int[64];
+        private boolean[] terminal = new boolean[32];
+        private int nodes = 1;
+
+        void add(long high, long low, int length) {
+            int node = 0;
+            for (int bit = 0; bit < length && !terminal[node]; bit++) {
+                int branch = 2 * node + bit(high, low, bit);
+                if (children[branch] == 0) {
+                    if (nodes == terminal.length) {
+                        children = Arrays.copyOf(children, children.length * 2);
+                        terminal = Arrays.copyOf(terminal, terminal.length * 2);
+                    }
+                    children[branch] = nodes++;
+                }
+                node = children[branch];
+            }
+            terminal[node] = true;
+        }
+
+        boolean contains(long high, long low) {
+            int node = 0;
+            for (int bit = 0; bit < 128; bit++) {
+                if (terminal[node]) {
+                    return true;
+                }
+                node = children[2 * node + bit(high, low, bit)];
+                if (node == 0) {
+                    return false;
+                }
+            }
+            return terminal[node];
+        }
+
+        private static int bit(long high, long low, int bit) {
+            long word = bit < 64 ? high : low;
+            return (int) (word >>> (63 - (bit & 63))) & 1;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.shtilmanilan.ai_promote_backend.config;
+
+import jakarta.servlet.MultipartConfigElement;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.MultipartConfigFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Multipart limits for image uploads. Spring's 1 MB default is smaller than
+ * a typical phone photo, so each part is limited to the Azure Vision upload
+ * maximum, and a whole request to a full batch of such parts.
+ */
+@Configuration
+public class MultipartConfig {
+
+    // Room for form fields and part headers around each image
+    private static final long PART_OVERHEAD_BYTES = 64 * 1024;
+
+    @Bean
+    public MultipartConfigElement multipartConfigElement(
+            @Value("${azure.vision.max-upload-bytes:16777216}") long maxUploadBytes,
+            @Value("${azure.vision.batch.max-images:50}") int maxBatchImages) {
+        MultipartConfigFactory factory = new MultipartConfigFactory();
+        factory.setMaxFileSize(DataSize.ofBytes(maxUploadBytes));
+        // No file-size threshold is set, so parts are spooled to disk and a full batch is not held in memory
+        long maxParts = Math.max(1, maxBatchImages);
+        factory.setMaxRequestSize(DataSize.ofBytes(maxParts * (maxUploadBytes + PART_OVERHEAD_BYTES)));
+        return factory.createMultipartConfig();
+    }
+}
@@ -0,0 +1,432 @@
+package com.shtilmanilan.ai_promote_backend.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shtilmanilan.ai_promote_backend.service.RateLimiter;
+import com.shtilmanilan.ai_promote_backend.service.SharedMemoryRateLimitStore;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rate Limit Filter
+ *
+ * Applies the per-route rate limit policies in one place, ahead of the
+ * DispatcherServlet: an over-limit request is answered with 429 before its
+ * body is read, deserialized or multipart-parsed, and before any controller
+ * code runs.
+ *
+ * Admission has three stages, cheapest first:
+ * 1. the route's own request rate per client (burst shape per endpoint)
+ * 2. the client's cost budget, shared by all routes - an Imagen call spends
+ *    30 units, a text generation 1, so heavy clients run out by actual cost
+ * 3. the global cost budget across all clients, which caps upstream spend
+ * A request turned away at a later stage is refunded at the earlier ones.
+ *
+ * A short burst over the limit is delayed rather than failed: a request that
+ * every stage can admit within rate-limit.max-delay-ms reserves its slot and
+ * is parked with async servlet processing, holding no worker thread, until
+ * a scheduler resumes it when the slot is due. At most rate-limit.max-parked
+ * requests wait at once; past that, and beyond the delay bound, it is 429.
+ *
+ * Features:
+ * - Declarative policies: method + path patterns + rate + burst + cost,
+ *   each overridable under rate-limit.<policy>.*
+ * - GCRA limiters throughout, keyed by the client identity from
+ *   ClientIdentityResolver (trusted proxies only, IPv6 per /64)
+ * - RateLimit-Policy / -Limit / -Remaining / -Reset on every limited route,
+ *   Retry-After and a JSON error body on 429
+ * - Optional host-wide limits: with rate-limit.shared-dir set, every limiter
+ *   keeps its state in a memory-mapped file there, so all backend processes
+ *   on the host share the limits (they must use the same configuration)
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitFilter.class);
+
+    private static final String[] TEXT_PROVIDERS = {"claude", "groq", "openai", "gemini"};
+    // Headers browser clients may read, also exposed on allowed responses by WebConfig
+    static final String[] EXPOSED_HEADERS =
+        {"Retry-After", "RateLimit-Policy", "RateLimit-Limit", "RateLimit-Remaining", "RateLimit-Reset"};
+    private static final String GLOBAL_KEY = "*";
+    // Only a backstop: parked requests are resumed by the scheduler, not by the timeout
+    private static final long PARK_TIMEOUT_MARGIN_MILLIS = 30_000;
+
+    private final List<RateLimitPolicy> policies = new ArrayList<>();
+    private final RateLimiter clientBudget;
+    private final RateLimiter globalBudget;
+    private final LongAdder clientBudgetRejections = new LongAdder();
+    private final LongAdder globalBudgetRejections = new LongAdder();
+    private final ObjectMapper objectMapper;
+    private final Environment environment;
+    private final ClientIdentityResolver identityResolver;
+    private final Path sharedDir;
+    private final int sharedSlots;
+
+    private final long maxDelayNanos;
+    private final int maxParked;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final AtomicInteger parked = new AtomicInteger();
+    private final LongAdder delayedRequests = new LongAdder();
+    private final LongAdder totalDelayNanos = new LongAdder();
+    private final LongAdder queueFullRejections = new LongAdder();
+
+    public RateLimitFilter(ObjectMapper objectMapper, Environment environment,
+                           ClientIdentityResolver identityResolver) {
+        this.objectMapper = objectMapper;
+        this.environment = environment;
+        this.identityResolver = identityResolver;
+        String dir = environment.getProperty("rate-limit.shared-dir", "");
+        this.sharedDir = dir.isBlank() ? null : Path.of(dir);
+        this.sharedSlots = environment.getProperty("rate-limit.shared-slots", Integer.class, 65536);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(
+            environment.getProperty("rate-limit.max-delay-ms", Long.class, 10_000L));
+        this.maxParked = environment.getProperty("rate-limit.max-parked", Integer.class, 200);
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "rate-limit-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // The frontend asks all text providers at once, so each keeps its own request rate
+        for (String provider : TEXT_PROVIDERS) {
+            policies.add(policy("text-" + provider, "text", 6, 3, 1, "/api/v1/" + provider + "/generate"));
+        }
+        policies.add(policy("vision", "vision", 6, 5, 5, "/api/vision/analyze"));
+        // Admission charges the first image; the controller charges the rest once it
+        // knows how many there are (chargeBudgets)
+        policies.add(policy("vision-batch", "vision.batch", 6, 5, 5, "/api/vision/analyze/batch"));
+        // Vision + text + CSS + Imagen in one request. Render and export are local CPU
+        // work behind bounded pools, so only compose is limited
+        policies.add(policy("flyer-compose", "flyer", 6, 5, 38, "/api/flyer/compose"));
+        policies.add(policy("backgrounds-css", "backgrounds.css", 10, 5, 2, "/api/backgrounds/generate"));
+        // Three Imagen images per call, the most expensive route
+        policies.add(policy("backgrounds-images", "backgrounds.images", 2, 2, 30, "/api/backgrounds/generate-images"));
+
+        this.clientBudget = budget("client", 60, 90);
+        this.globalBudget = budget("global", 600, 1200);
+        for (RateLimitPolicy policy : policies) {
+            if (policy.cost() > clientBudget.getBurst() || policy.cost() > globalBudget.getBurst()) {
+                throw new IllegalArgumentException("Rate limit policy " + policy.name() + " costs " + policy.cost()
+                    + ", more than a full cost budget");
+            }
+        }
+        logger.info("Rate limiting {} policies, cost budgets {}/client and {}/global, state {}, "
+                + "delaying up to {} requests by {} ms",
+            policies.size(), clientBudget.getBurst(), globalBudget.getBurst(),
+            sharedDir == null ? "in-process" : "shared in " + sharedDir,
+            maxParked, TimeUnit.NANOSECONDS.toMillis(maxDelayNanos));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Let anything still parked through rather than leaving it hanging
+        scheduler.shutdownNow().forEach(Runnable::run);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RateLimitPolicy policy = findPolicy(request);
+        if (policy == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String clientKey = identityResolver.resolve(request);
+        RateLimiter.Decision decision = policy.limiter().reserve(clientKey, 1, maxDelayNanos);
+        if (!decision.allowed()) {
+            policy.rejections().increment();
+            logger.warn("Rate limit exceeded for {} on {}", clientKey, policy.name());
+            reject(request, response, policy.limiter(), decision, "Too many requests");
+            return;
+        }
+
+        RateLimiter.Decision budget = clientBudget.reserve(clientKey, policy.cost(), maxDelayNanos);
+        if (!budget.allowed()) {
+            policy.limiter().refund(clientKey, 1);
+            clientBudgetRejections.increment();
+            logger.warn("Cost budget exhausted for {} on {} (cost {})", clientKey, policy.name(), policy.cost());
+            reject(request, response, clientBudget, budget, "Too many requests");
+            return;
+        }
+
+        RateLimiter.Decision global = globalBudget.reserve(GLOBAL_KEY, policy.cost(), maxDelayNanos);
+        if (!global.allowed()) {
+            policy.limiter().refund(clientKey, 1);
+            clientBudget.refund(clientKey, policy.cost());
+            globalBudgetRejections.increment();
+            logger.warn("Global cost budget exhausted - rejecting {} (cost {})", policy.name(), policy.cost());
+            reject(request, response, globalBudget, global, "The service is busy");
+            return;
+        }
+
+        // Each stage reserved a slot at most maxDelay ahead; the request may go once all are due
+        long delay = Math.max(decision.retryAfterNanos(), Math.max(budget.retryAfterNanos(), global.retryAfterNanos()));
+        setRateLimitHeaders(response, policy.limiter(), decision);
+        if (delay == 0) {
+            chain.doFilter(request, response);
+        } else if (!park(request, response, delay)) {
+            policy.limiter().refund(clientKey, 1);
+            clientBudget.refund(clientKey, policy.cost());
+            globalBudget.refund(GLOBAL_KEY, policy.cost());
+            queueFullRejections.increment();
+            logger.warn("Rate limit queue full - rejecting {} on {}", clientKey, policy.name());
+            reject(request, response, policy.limiter(), new RateLimiter.Decision(false, decision.limit(),
+                decision.remaining(), delay, decision.resetNanos()), "Too many requests");
+        }
+    }
+
+    /**
+     * Suspend the request and resume it on the scheduler after delayNanos.
+     * The resumed ASYNC dispatch skips this filter, as OncePerRequestFilter
+     * does by default, and goes straight on to the controller. False if the
+     * queue is full or the request cannot go async.
+     */
+    private boolean park(HttpServletRequest request, HttpServletResponse response, long delayNanos) {
+        if (!request.isAsyncSupported()) {
+            return false;
+        }
+        if (parked.incrementAndGet() > maxParked) {
+            parked.decrementAndGet();
+            return false;
+        }
+        delayedRequests.increment();
+        totalDelayNanos.add(delayNanos);
+        AsyncContext async = request.startAsync(request, response);
+        async.setTimeout(TimeUnit.NANOSECONDS.toMillis(delayNanos) + PARK_TIMEOUT_MARGIN_MILLIS);
+        Runnable resume = () -> {
+            parked.decrementAndGet();
+            try {
+                async.dispatch();
+            } catch (IllegalStateException e) {
+                // The client went away while parked
+                logger.debug("Parked request no longer resumable: {}", e.getMessage());
+            }
+        };
+        try {
+            scheduler.schedule(resume, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            resume.run();
+        }
+        return true;
+    }
+
+    /**
+     * Charge an admitted request for items of work found only after
+     * admission, such as the further images of a batch: items times the
+     * policy's cost against the client and global budgets. When a budget
+     * turns it away, everything the request was charged is refunded and the
+     * 429 is written to response.
+     *
+     * @return false if the request was rejected
+     * @throws IllegalArgumentException if the charge exceeds a whole budget
+     *                                  and could never be admitted
+     */
+    public boolean chargeBudgets(HttpServletRequest request, HttpServletResponse response, String policyName,
+                                 int items) throws IOException {
+        if (items <= 0) {
+            return true;
+        }
+        RateLimitPolicy policy = findPolicy(policyName);
+        int units = items * policy.cost();
+        String clientKey = identityResolver.resolve(request);
+        if (units + policy.cost() > clientBudget.getBurst() || units + policy.cost() > globalBudget.getBurst()) {
+            refundAdmission(policy, clientKey);
+            throw new IllegalArgumentException("Request costs " + (units + policy.cost())
+                + " units, more than the budget of " + Math.min(clientBudget.getBurst(), globalBudget.getBurst()));
+        }
+
+        RateLimiter.Decision budget = clientBudget.tryAcquire(clientKey, units);
+        if (!budget.allowed()) {
+            refundAdmission(policy, clientKey);
+            clientBudgetRejections.increment();
+            logger.warn("Cost budget exhausted for {} on {} ({} more units)", clientKey, policy.name(), units);
+            reject(request, response, clientBudget, budget, "Too many requests");
+            return false;
+        }
+        RateLimiter.Decision global = globalBudget.tryAcquire(GLOBAL_KEY, units);
+        if (!global.allowed()) {
+            clientBudget.refund(clientKey, units);
+            refundAdmission(policy, clientKey);
+            globalBudgetRejections.increment();
+            logger.warn("Global cost budget exhausted - rejecting {} ({} more units)", policy.name(), units);
+            reject(request, response, globalBudget, global, "The service is busy");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Most items one request of the policy can be charged for, admission
+     * included: any more could never fit a full cost budget, and
+     * chargeBudgets() refuses them
+     */
+    public int maxItems(String policyName) {
+        return Math.min(clientBudget.getBurst(), globalBudget.getBurst()) / findPolicy(policyName).cost();
+    }
+
+    /**
+     * Give back items charged with chargeBudgets() that turned out to need
+     * no upstream call, e.g. duplicate images in a batch or images whose
+     * analysis fell back
+     */
+    public void refundBudgets(HttpServletRequest request, String policyName, int items) {
+        if (items <= 0) {
+            return;
+        }
+        int units = items * findPolicy(policyName).cost();
+        clientBudget.refund(identityResolver.resolve(request), units);
+        globalBudget.refund(GLOBAL_KEY, units);
+    }
+
+    private void refundAdmission(RateLimitPolicy policy, String clientKey) {
+        policy.limiter().refund(clientKey, 1);
+        clientBudget.refund(clientKey, policy.cost());
+        globalBudget.refund(GLOBAL_KEY, policy.cost());
+    }
+
+    /**
+     * Per-policy limiter statistics and the cost budgets, for the stats endpoints
+     */
+    public Map<String, Object> getStats(String... policyNames) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (RateLimitPolicy policy : policies) {
+            if (policyNames.length == 0 || List.of(policyNames).contains(policy.name())) {
+                Map<String, Object> policyStats = new LinkedHashMap<>(policy.limiter().getStats());
+                policyStats.put("cost", policy.cost());
+                policyStats.put("rejections", policy.rejections().sum());
+                stats.put(policy.name(), policyStats);
+            }
+        }
+        Map<String, Object> clientStats = new LinkedHashMap<>(clientBudget.getStats());
+        clientStats.put("rejections", clientBudgetRejections.sum());
+        stats.put("clientBudget", clientStats);
+        Map<String, Object> globalStats = new LinkedHashMap<>(globalBudget.getStats());
+        globalStats.put("rejections", globalBudgetRejections.sum());
+        stats.put("globalBudget", globalStats);
+        Map<String, Object> queueStats = new LinkedHashMap<>();
+        queueStats.put("parked", parked.get());
+        queueStats.put("maxParked", maxParked);
+        queueStats.put("maxDelayMillis", TimeUnit.NANOSECONDS.toMillis(maxDelayNanos));
+        queueStats.put("delayedRequests", delayedRequests.sum());
+        queueStats.put("totalDelayMillis", TimeUnit.NANOSECONDS.toMillis(totalDelayNanos.sum()));
+        queueStats.put("queueFullRejections", queueFullRejections.sum());
+        stats.put("queue", queueStats);
+        return stats;
+    }
+
+    private RateLimitPolicy policy(String name, String property, int requestsPerMinute, int burst, int cost,
+                                   String... patterns) {
+        String prefix = "rate-limit." + property + ".";
+        return RateLimitPolicy.of(name, "POST",
+            limiter(name,
+                environment.getProperty(prefix + "requests-per-minute", Integer.class, requestsPerMinute),
+                environment.getProperty(prefix + "burst", Integer.class, burst)),
+            environment.getProperty(prefix + "cost", Integer.class, cost),
+            patterns);
+    }
+
+    private RateLimiter budget(String property, int unitsPerMinute, int capacity) {
+        String prefix = "rate-limit.budget." + property + ".";
+        return limiter("budget-" + property,
+            environment.getProperty(prefix + "units-per-minute", Integer.class, unitsPerMinute),
+            environment.getProperty(prefix + "capacity", Integer.class, capacity));
+    }
+
+    /**
+     * In-process limiter, or one backed by <shared-dir>/<name>.tat
+     */
+    private RateLimiter limiter(String name, int requestsPerMinute, int burst) {
+        if (sharedDir == null) {
+            return new RateLimiter(requestsPerMinute, burst);
+        }
+        Path file = sharedDir.resolve(name + ".tat");
+        try {
+            return new RateLimiter(requestsPerMinute, burst,
+                SharedMemoryRateLimitStore.open(file, sharedSlots, requestsPerMinute, burst));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map shared rate limit state " + file, e);
+        }
+    }
+
+    private RateLimitPolicy findPolicy(String name) {
+        for (RateLimitPolicy policy : policies) {
+            if (policy.name().equals(name)) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("No rate limit policy " + name);
+    }
+
+    private RateLimitPolicy findPolicy(HttpServletRequest request) {
+        PathContainer path = PathContainer.parsePath(request.getRequestURI().substring(request.getContextPath().length()));
+        for (RateLimitPolicy policy : policies) {
+            if (policy.matches(request.getMethod(), path)) {
+                return policy;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * RateLimit-* headers for the limiter that made the decision. The policy
+     * is its burst and the window it refills over, in seconds.
+     */
+    private static void setRateLimitHeaders(HttpServletResponse response, RateLimiter limiter,
+                                            RateLimiter.Decision decision) {
+        long windowSeconds = (60L * limiter.getBurst() + limiter.getRequestsPerMinute() - 1) / limiter.getRequestsPerMinute();
+        response.setHeader("RateLimit-Policy", limiter.getBurst() + ";w=" + windowSeconds);
+        response.setHeader("RateLimit-Limit", String.valueOf(decision.limit()));
+        response.setHeader("RateLimit-Remaining", String.valueOf(decision.remaining()));
+        response.setHeader("RateLimit-Reset", String.valueOf(decision.resetSeconds()));
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response, RateLimiter limiter,
+                        RateLimiter.Decision decision, String reason) throws IOException {
+        long retryAfter = decision.retryAfterSeconds();
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        setRateLimitHeaders(response, limiter, decision);
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+        // The rejection never reaches MVC's CORS handling; WebConfig allows every origin
+        if (request.getHeader(HttpHeaders.ORIGIN) != null) {
+            response.setHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, "*");
+            response.setHeader(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, String.join(", ", EXPOSED_HEADERS));
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("error", reason + ". Please wait " + retryAfter + " seconds before trying again.");
+        body.put("retryAfterSeconds", retryAfter);
+        objectMapper.writeValue(response.getOutputStream(), body);
+    }
+}
@@ -0,0 +1,40 @@
+package com.shtilmanilan.ai_promote_backend.config;
+
+import com.shtilmanilan.ai_promote_backend.service.RateLimiter;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One rate limit rule: the routes it covers, the per-client request rate
+ * they share, and what one request costs against the cost budgets. Every
+ * route listed in a policy draws from the same limiter.
+ */
+public record RateLimitPolicy(String name, String method, List<PathPattern> patterns,
+                              int requestsPerMinute, int burst, int cost, RateLimiter limiter, LongAdder rejections) {
+
+    public static RateLimitPolicy of(String name, String method, RateLimiter limiter, int cost, String... patterns) {
+        if (cost < 1) {
+            throw new IllegalArgumentException("Rate limit policy " + name + ": cost must be positive");
+        }
+        List<PathPattern> parsed = Arrays.stream(patterns).map(PathPatternParser.defaultInstance::parse).toList();
+        return new RateLimitPolicy(name, method, parsed, (int) limiter.getRequestsPerMinute(), limiter.getBurst(),
+            cost, limiter, new LongAdder());
+    }
+
+    public boolean matches(String requestMethod, PathContainer path) {
+        if (!method.equals(requestMethod)) {
+            return false;
+        }
+        for (PathPattern pattern : patterns) {
+            if (pattern.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
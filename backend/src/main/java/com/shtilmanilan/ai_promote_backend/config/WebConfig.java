@@ -14,6 +14,7 @@ public class WebConfig implements WebMvcConfigurer {
             .allowedOrigins("*")
             .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
             .allowedHeaders("*")
+            .exposedHeaders(RateLimitFilter.EXPOSED_HEADERS)
             .allowCredentials(false)
             .maxAge(3600);
     }
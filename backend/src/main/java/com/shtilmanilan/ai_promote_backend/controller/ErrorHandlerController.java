@@ -6,6 +6,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -15,6 +16,18 @@ public class ErrorHandlerController {
 
     private static final Logger logger = LoggerFactory.getLogger(ErrorHandlerController.class);
 
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<Map<String, Object>> handleUploadTooLarge(MaxUploadSizeExceededException e) {
+        logger.warn("Upload rejected: {}", e.getMessage());
+        
+        Map<String, Object> errorDetails = new HashMap<>();
+        errorDetails.put("message", "Upload exceeds the maximum allowed size");
+        errorDetails.put("error", "Upload exceeds the maximum allowed size");
+        errorDetails.put("type", e.getClass().getSimpleName());
+        
+        return new ResponseEntity<>(errorDetails, HttpStatus.PAYLOAD_TOO_LARGE);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, Object>> handleException(Exception e) {
         logger.error("Global error handler caught: {}", e.getMessage(), e);
@@ -1,7 +1,9 @@
 package com.shtilmanilan.ai_promote_backend.controller.ai;
 
+import com.shtilmanilan.ai_promote_backend.config.RateLimitFilter;
 import com.shtilmanilan.ai_promote_backend.model.ai.TextGenerationRequest;
 import com.shtilmanilan.ai_promote_backend.model.ai.TextGenerationResponse;
+import com.shtilmanilan.ai_promote_backend.service.ProviderQuotaGovernor;
 import com.shtilmanilan.ai_promote_backend.service.claude.ClaudeService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
@@ -9,7 +11,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import com.shtilmanilan.ai_promote_backend.service.RateLimiter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/v1/claude")
@@ -18,11 +22,15 @@ public class ClaudeController {
 
     private static final Logger logger = LoggerFactory.getLogger(ClaudeController.class);
     private final ClaudeService claudeService;
-    private final RateLimiter rateLimiter = new RateLimiter();
+    private final ProviderQuotaGovernor quotaGovernor;
+    private final RateLimitFilter rateLimitFilter;
     
     @Autowired
-    public ClaudeController(ClaudeService claudeService) {
+    public ClaudeController(ClaudeService claudeService, ProviderQuotaGovernor quotaGovernor,
+                            RateLimitFilter rateLimitFilter) {
         this.claudeService = claudeService;
+        this.quotaGovernor = quotaGovernor;
+        this.rateLimitFilter = rateLimitFilter;
     }
     
     @GetMapping("/test")
@@ -33,20 +41,8 @@ public class ClaudeController {
     
     @PostMapping(value = "/generate", produces = MediaType.APPLICATION_JSON_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<TextGenerationResponse> generateText(
-        @RequestBody TextGenerationRequest request,
-        @RequestHeader(value = "X-Forwarded-For", required = false) String xForwardedFor,
-        @RequestHeader(value = "X-Real-IP", required = false) String xRealIP
+        @RequestBody TextGenerationRequest request
     ) {
-        // Get client IP - handle proxy headers
-        String userKey = xForwardedFor != null ? xForwardedFor.split(",")[0].trim() : 
-                        xRealIP != null ? xRealIP : "unknown";
-        
-        if (!rateLimiter.isAllowed(userKey)) {
-            TextGenerationResponse response = new TextGenerationResponse();
-            response.setError("Please wait 2 minutes before trying again.");
-            return ResponseEntity.status(429).body(response);
-        }
-        
         try {
             logger.info("Received request: {}", request);
             TextGenerationResponse response = claudeService.generateText(request);
@@ -57,4 +53,12 @@ public class ClaudeController {
             throw e;
         }
     }
-}
\ No newline at end of file
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("upstreamQuota", quotaGovernor.getStats("claude"));
+        stats.put("rateLimit", rateLimitFilter.getStats("text-claude"));
+        return ResponseEntity.ok(stats);
+    }
+}
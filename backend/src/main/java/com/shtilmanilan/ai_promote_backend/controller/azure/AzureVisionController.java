@@ -1,13 +1,30 @@
 package com.shtilmanilan.ai_promote_backend.controller.azure;
 
+import com.shtilmanilan.ai_promote_backend.config.RateLimitFilter;
+import com.shtilmanilan.ai_promote_backend.model.azure.AzureBatchItemResult;
 import com.shtilmanilan.ai_promote_backend.model.azure.AzureVisionResponse;
+import com.shtilmanilan.ai_promote_backend.service.azure.AzureVisionBatchService;
 import com.shtilmanilan.ai_promote_backend.service.azure.AzureVisionService;
-import com.shtilmanilan.ai_promote_backend.service.TokenBucketRateLimiter;
+import com.shtilmanilan.ai_promote_backend.service.azure.VisionFeature;
+import com.shtilmanilan.ai_promote_backend.service.image.ImageTooLargeException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/vision")
@@ -16,53 +33,185 @@ public class AzureVisionController {
 
     private static final Logger logger = LoggerFactory.getLogger(AzureVisionController.class);
     private final AzureVisionService azureVisionService;
-    
-    // Allow 5 requests initially, then 1 request every 10 seconds (6 per minute max)
-    private final TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(5, 10000);
+    private final AzureVisionBatchService batchService;
+
+    // Upper bound for streaming a whole batch back
+    private static final long BATCH_TIMEOUT_MILLIS = 5 * 60 * 1000;
+    private static final String BATCH_POLICY = "vision-batch";
+
+    // Rate limits are applied by RateLimitFilter, which also charges batch images beyond the first;
+    // its stats are reported here
+    private final RateLimitFilter rateLimitFilter;
+    // Batch size limit: the batch service's, unless a full batch would not fit the cost budgets
+    private final int maxBatchImages;
 
-    public AzureVisionController(AzureVisionService azureVisionService) {
+    public AzureVisionController(AzureVisionService azureVisionService, AzureVisionBatchService batchService,
+                                 RateLimitFilter rateLimitFilter) {
         this.azureVisionService = azureVisionService;
+        this.batchService = batchService;
+        this.rateLimitFilter = rateLimitFilter;
+        int budgetImages = rateLimitFilter.maxItems(BATCH_POLICY);
+        if (budgetImages < batchService.getMaxImages()) {
+            logger.warn("azure.vision.batch.max-images is {}, but the cost budgets fit only {} images per batch; "
+                + "limiting batches to {}", batchService.getMaxImages(), budgetImages, budgetImages);
+        }
+        this.maxBatchImages = Math.min(batchService.getMaxImages(), budgetImages);
     }
 
+    /**
+     * Base64 upload (text/plain or JSON string) - the original client contract
+     */
     @PostMapping(value = "/analyze", consumes = {MediaType.TEXT_PLAIN_VALUE, MediaType.APPLICATION_JSON_VALUE})
     public ResponseEntity<AzureVisionResponse> analyzeImage(
             @RequestBody String base64Image,
-            @RequestHeader(value = "X-Forwarded-For", required = false) String xForwardedFor,
-            @RequestHeader(value = "X-Real-IP", required = false) String xRealIP) {
-        
-        logger.info("Received image analysis request");
+            @RequestParam(value = "features", required = false) String features) {
         
-        // Get client IP for rate limiting
-        String userKey = xForwardedFor != null ? xForwardedFor.split(",")[0].trim() : 
-                        xRealIP != null ? xRealIP : "unknown";
+        logger.info("Received image analysis request ({} base64 chars)", base64Image.length());
         
-        if (!rateLimiter.isAllowed(userKey)) {
-            logger.warn("Rate limit exceeded for user: {}", userKey);
-            AzureVisionResponse errorResponse = new AzureVisionResponse();
-            errorResponse.setError("Too many requests. Please wait a moment before trying again.");
-            return ResponseEntity.status(429).body(errorResponse);
-        }
+        Set<VisionFeature> requestedFeatures = VisionFeature.parse(features);
         
         try {
-            // Log the first 100 characters of the base64 image to verify it's being received correctly
-            logger.info("Received base64 image (first 100 chars): {}", 
-                base64Image.length() > 100 ? base64Image.substring(0, 100) + "..." : base64Image);
-            
-            AzureVisionResponse response = azureVisionService.analyzeImage(base64Image);
+            AzureVisionResponse response = azureVisionService.analyzeImage(base64Image, requestedFeatures);
             logger.info("Successfully processed image analysis");
             return ResponseEntity.ok(response);
+        } catch (ImageTooLargeException e) {
+            return payloadTooLarge(e);
         } catch (Exception e) {
             logger.error("Error processing image analysis", e);
             throw e;
         }
     }
 
+    /**
+     * Raw binary upload - the body is streamed into pooled memory, never base64-encoded
+     */
+    @PostMapping(value = "/analyze", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<AzureVisionResponse> analyzeImageBinary(
+            InputStream imageStream,
+            @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, required = false) Long contentLength,
+            @RequestParam(value = "features", required = false) String features) throws IOException {
+        
+        logger.info("Received binary image analysis request ({} bytes)", contentLength);
+        
+        Set<VisionFeature> requestedFeatures = VisionFeature.parse(features);
+        
+        try {
+            AzureVisionResponse response = azureVisionService.analyzeImage(imageStream,
+                contentLength != null ? contentLength : -1, requestedFeatures);
+            logger.info("Successfully processed binary image analysis");
+            return ResponseEntity.ok(response);
+        } catch (ImageTooLargeException e) {
+            return payloadTooLarge(e);
+        }
+    }
+
+    /**
+     * Multipart upload - expects the file in the "image" part
+     */
+    @PostMapping(value = "/analyze", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<AzureVisionResponse> analyzeImageUpload(
+            @RequestParam("image") MultipartFile image,
+            @RequestParam(value = "features", required = false) String features) throws IOException {
+        
+        logger.info("Received multipart image analysis request ({} bytes)", image.getSize());
+        
+        Set<VisionFeature> requestedFeatures = VisionFeature.parse(features);
+        
+        try (InputStream imageStream = image.getInputStream()) {
+            AzureVisionResponse response = azureVisionService.analyzeImage(imageStream, image.getSize(), requestedFeatures);
+            logger.info("Successfully processed multipart image analysis");
+            return ResponseEntity.ok(response);
+        } catch (ImageTooLargeException e) {
+            return payloadTooLarge(e);
+        }
+    }
+
+    /**
+     * Batch upload - many "images" parts in one multipart request.
+     * Results stream back as newline-delimited JSON, one line per image in
+     * completion order. Every distinct image is charged against the cost
+     * budgets like a single analysis; duplicates and images whose analysis
+     * fell back are refunded. A batch is limited to what a full cost budget covers.
+     */
+    @PostMapping(value = "/analyze/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> analyzeBatch(
+            @RequestParam("images") List<MultipartFile> images,
+            @RequestParam(value = "features", required = false) String features,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        
+        logger.info("Received batch image analysis request ({} images)", images.size());
+        
+        Set<VisionFeature> requestedFeatures = VisionFeature.parse(features);
+        if (images.size() > maxBatchImages) {
+            throw new IllegalArgumentException("Batch exceeds the limit of " + maxBatchImages + " images");
+        }
+        // Admission paid for the first image; a rejection has already written the 429
+        if (!rateLimitFilter.chargeBudgets(request, response, BATCH_POLICY, images.size() - 1)) {
+            return null;
+        }
+        
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(BATCH_TIMEOUT_MILLIS);
+        batchService.analyzeBatch(images, requestedFeatures, item -> sendLine(emitter, item),
+                skipped -> rateLimitFilter.refundBudgets(request, BATCH_POLICY, skipped))
+            .whenComplete((done, error) -> {
+                if (error != null) {
+                    logger.error("Batch analysis failed", error);
+                    emitter.completeWithError(error);
+                } else {
+                    logger.info("Successfully processed batch of {} images", images.size());
+                    emitter.complete();
+                }
+            });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(emitter);
+    }
+
+    /**
+     * Write one NDJSON line; results arrive from several worker threads
+     */
+    private void sendLine(ResponseBodyEmitter emitter, AzureBatchItemResult item) {
+        synchronized (emitter) {
+            try {
+                emitter.send(item, MediaType.APPLICATION_JSON);
+                emitter.send("\n", MediaType.TEXT_PLAIN);
+            } catch (IOException | IllegalStateException e) {
+                // Client disconnected or timed out - remaining results are dropped
+                logger.warn("Could not stream batch result {}: {}", item.index(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Unknown names in ?features= are a client error
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<AzureVisionResponse> badRequest(IllegalArgumentException e) {
+        AzureVisionResponse errorResponse = new AzureVisionResponse();
+        errorResponse.setError(e.getMessage());
+        return ResponseEntity.badRequest().body(errorResponse);
+    }
+
+    private ResponseEntity<AzureVisionResponse> payloadTooLarge(ImageTooLargeException e) {
+        AzureVisionResponse errorResponse = new AzureVisionResponse();
+        errorResponse.setError(e.getMessage());
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(errorResponse);
+    }
+
     @GetMapping("/test")
     public String testEndpoint() {
         logger.info("Test endpoint called");
         return "Azure Vision API is working!";
     }
 
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(azureVisionService.getStats());
+        Map<String, Object> batchStats = new LinkedHashMap<>(batchService.getStats());
+        batchStats.put("maxImages", maxBatchImages);
+        stats.put("batch", batchStats);
+        stats.put("rateLimit", rateLimitFilter.getStats("vision", "vision-batch"));
+        return ResponseEntity.ok(stats);
+    }
+
     @GetMapping("/test-colors")
     public String testColorMappings() {
         logger.info("Testing color mappings...");
@@ -1,11 +1,17 @@
 package com.shtilmanilan.ai_promote_backend.controller.background;
 
+import com.shtilmanilan.ai_promote_backend.config.RateLimitFilter;
 import com.shtilmanilan.ai_promote_backend.model.background.BackgroundGenerationRequest;
 import com.shtilmanilan.ai_promote_backend.model.background.BackgroundOption;
 import com.shtilmanilan.ai_promote_backend.service.background.BackgroundGenerationService;
+import com.shtilmanilan.ai_promote_backend.service.background.BackgroundImageStore;
 import com.shtilmanilan.ai_promote_backend.service.background.ImagenBackgroundService;
+import com.shtilmanilan.ai_promote_backend.service.image.ImageBufferPool;
+import com.shtilmanilan.ai_promote_backend.service.image.PixelStatistics;
+import com.shtilmanilan.ai_promote_backend.service.image.TextRegionAnalyzer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.http.HttpHeaders;
@@ -42,6 +48,21 @@ public class BackgroundController {
     @Autowired
     private ImagenBackgroundService imagenBackgroundService;
 
+    @Autowired
+    private BackgroundImageStore imageStore;
+
+    @Autowired
+    private ImageBufferPool imageBufferPool;
+
+    @Autowired
+    private TextRegionAnalyzer textRegionAnalyzer;
+
+    @Autowired
+    private PixelStatistics pixelStatistics;
+
+    @Autowired
+    private RateLimitFilter rateLimitFilter;
+
     @Value("${background.images.path:C:/Users/ishti/JS-AI-PROMOTE/generated-backgrounds}")
     private String backgroundImagesPath;
 
@@ -121,12 +142,36 @@ public class BackgroundController {
         return ResponseEntity.ok(testResponse);
     }
 
+    /**
+     * Image store, buffer pool and image analysis statistics
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("imageStore", imageStore.getStats());
+        stats.put("bufferPool", imageBufferPool.getStats());
+        stats.put("textRegions", textRegionAnalyzer.getStats());
+        stats.put("pixelStatistics", pixelStatistics.getStats());
+        stats.put("rateLimit", rateLimitFilter.getStats("backgrounds-css", "backgrounds-images"));
+        stats.put("timestamp", java.time.LocalDateTime.now().toString());
+        return ResponseEntity.ok(stats);
+    }
+
     /**
      * Serve generated background images as HTTP resources
+     * Images still waiting for the write-behind flush are served from memory
      */
     @GetMapping("/images/{filename}")
     public ResponseEntity<Resource> getBackgroundImage(@PathVariable String filename) {
         try {
+            byte[] pendingImage = imageStore.getPendingImage(filename);
+            if (pendingImage != null) {
+                return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_PNG)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"")
+                    .body(new ByteArrayResource(pendingImage));
+            }
+
             Path imagePath = Paths.get(backgroundImagesPath).resolve(filename);
             Resource resource = new UrlResource(imagePath.toUri());
             
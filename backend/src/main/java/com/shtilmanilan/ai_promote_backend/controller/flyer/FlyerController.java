@@ -0,0 +1,159 @@
+package com.shtilmanilan.ai_promote_backend.controller.flyer;
+
+import com.shtilmanilan.ai_promote_backend.config.RateLimitFilter;
+import com.shtilmanilan.ai_promote_backend.model.flyer.FlyerComposeRequest;
+import com.shtilmanilan.ai_promote_backend.model.flyer.FlyerComposeResponse;
+import com.shtilmanilan.ai_promote_backend.model.flyer.FlyerRenderRequest;
+import com.shtilmanilan.ai_promote_backend.service.flyer.FlyerCompositionService;
+import com.shtilmanilan.ai_promote_backend.service.flyer.FlyerExportService;
+import com.shtilmanilan.ai_promote_backend.service.flyer.FlyerRenderer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Flyer Controller
+ *
+ * One-shot flyer pipeline: image analysis, promo text, CSS and Imagen
+ * backgrounds and the flyer config in a single request, plus server-side
+ * rendering of the finished flyer. Servlet threads are released while the
+ * work runs on the service pools.
+ *
+ * Endpoints:
+ * - POST /api/flyer/compose - Compose a complete flyer
+ * - POST /api/flyer/render - Render the final flyer as PNG or JPEG
+ * - POST /api/flyer/export - Print-resolution PNG or PDF, streamed
+ * - GET /api/flyer/stats - Pipeline and per-stage statistics
+ *
+ * @author AI-Promote Team
+ */
+@RestController
+@RequestMapping("/api/flyer")
+@CrossOrigin(origins = "*", allowedHeaders = "*", methods = {RequestMethod.GET, RequestMethod.POST, RequestMethod.OPTIONS})
+public class FlyerController {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlyerController.class);
+    private final FlyerCompositionService compositionService;
+    private final FlyerRenderer renderer;
+    private final FlyerExportService exportService;
+
+    private static final long RENDER_TIMEOUT_MILLIS = 60 * 1000;
+
+    // /compose is rate limited by RateLimitFilter; its stats are reported here
+    private final RateLimitFilter rateLimitFilter;
+
+    public FlyerController(FlyerCompositionService compositionService, FlyerRenderer renderer,
+                           FlyerExportService exportService, RateLimitFilter rateLimitFilter) {
+        this.compositionService = compositionService;
+        this.renderer = renderer;
+        this.exportService = exportService;
+        this.rateLimitFilter = rateLimitFilter;
+    }
+
+    @PostMapping("/compose")
+    public DeferredResult<ResponseEntity<FlyerComposeResponse>> compose(@RequestBody FlyerComposeRequest request) {
+
+        logger.info("Received flyer compose request: {}", request);
+        DeferredResult<ResponseEntity<FlyerComposeResponse>> result =
+            new DeferredResult<>(compositionService.getMaxComposeMillis(),
+                () -> ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build());
+
+        try {
+            compositionService.compose(request).thenAccept(response -> result.setResult(
+                response.getConfig() != null ? ResponseEntity.ok(response)
+                    : ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response)));
+        } catch (IllegalArgumentException e) {
+            result.setResult(ResponseEntity.badRequest().build());
+        } catch (RejectedExecutionException e) {
+            logger.warn("Flyer composition pool is saturated - rejecting request");
+            result.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+        }
+        return result;
+    }
+
+    /**
+     * Render the final flyer image on the server. No rate limit - rendering is
+     * local CPU work and the bounded render pool answers 503 when saturated.
+     */
+    @PostMapping("/render")
+    public DeferredResult<ResponseEntity<StreamingResponseBody>> render(@RequestBody FlyerRenderRequest request) {
+        logger.info("Received flyer render request: {}", request);
+        DeferredResult<ResponseEntity<StreamingResponseBody>> result = new DeferredResult<>(RENDER_TIMEOUT_MILLIS,
+            () -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).<StreamingResponseBody>build());
+
+        try {
+            MediaType contentType = "png".equalsIgnoreCase(request.getFormat()) || request.getFormat() == null
+                ? MediaType.IMAGE_PNG : MediaType.IMAGE_JPEG;
+            renderer.render(request).whenComplete((image, error) -> {
+                if (error != null) {
+                    logger.error("Flyer render failed", error);
+                    result.setResult(ResponseEntity.internalServerError().build());
+                    return;
+                }
+                StreamingResponseBody body = out -> {
+                    try (image) {
+                        image.writeTo(out);
+                    }
+                };
+                if (!result.setResult(ResponseEntity.ok()
+                        .contentType(contentType)
+                        .contentLength(image.size())
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"flyer." + contentType.getSubtype() + "\"")
+                        .body(body))) {
+                    // Request already timed out - nobody will stream the image
+                    image.release();
+                }
+            });
+        } catch (IllegalArgumentException e) {
+            result.setResult(ResponseEntity.badRequest().build());
+        } catch (RejectedExecutionException e) {
+            logger.warn("Flyer render pool is saturated - rejecting request");
+            result.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+        }
+        return result;
+    }
+
+    /**
+     * Print export (PNG or PDF, e.g. A4 at 300 dpi), streamed as tiles finish.
+     * Errors after the first bytes can only abort the download.
+     */
+    @PostMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestBody FlyerRenderRequest request) {
+        logger.info("Received flyer export request: {}", request);
+        FlyerExportService.Export export;
+        try {
+            export = exportService.prepare(request);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (RejectedExecutionException e) {
+            logger.warn("Flyer export rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+
+        boolean pdf = export.getFormat().equals("pdf");
+        return ResponseEntity.ok()
+            .contentType(pdf ? MediaType.APPLICATION_PDF : MediaType.IMAGE_PNG)
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"flyer-" + export.getWidth() + "x"
+                + export.getHeight() + (pdf ? ".pdf" : ".png") + "\"")
+            .body(export::writeTo);
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(compositionService.getStats());
+        stats.put("render", renderer.getStats());
+        stats.put("export", exportService.getStats());
+        stats.put("rateLimit", rateLimitFilter.getStats("flyer-compose"));
+        return ResponseEntity.ok(stats);
+    }
+}
@@ -0,0 +1,43 @@
+package com.shtilmanilan.ai_promote_backend.model.azure;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+/**
+ * Typed view of the Azure Computer Vision v3.1 analyze response.
+ * Only the fields the backend reads are modelled; everything else
+ * (tags, rectangles, landmark details, metadata, ...) is skipped by the
+ * parser without being materialised.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record AzureAnalyzeResult(
+        List<Category> categories,
+        ColorInfo color,
+        Description description,
+        List<DetectedObject> objects) {
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Category(String name, double score) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record ColorInfo(
+            String dominantColorForeground,
+            String dominantColorBackground,
+            List<String> dominantColors,
+            String accentColor) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Description(List<Caption> captions) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Caption(String text, double confidence) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record DetectedObject(String object, double confidence) {
+    }
+}
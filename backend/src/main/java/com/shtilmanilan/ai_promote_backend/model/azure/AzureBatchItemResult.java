@@ -0,0 +1,22 @@
+package com.shtilmanilan.ai_promote_backend.model.azure;
+
+/**
+ * One line of the batch analysis stream.
+ * duplicate is true when the result was shared from an identical image
+ * earlier in the same batch; error is set instead of result on failure.
+ */
+public record AzureBatchItemResult(
+        int index,
+        String filename,
+        boolean duplicate,
+        AzureVisionResponse result,
+        String error) {
+
+    public static AzureBatchItemResult success(int index, String filename, boolean duplicate, AzureVisionResponse result) {
+        return new AzureBatchItemResult(index, filename, duplicate, result, null);
+    }
+
+    public static AzureBatchItemResult failure(int index, String filename, String error) {
+        return new AzureBatchItemResult(index, filename, false, null, error);
+    }
+}
@@ -36,6 +36,7 @@ public class BackgroundOption {
     // ✅ TEXT READABILITY FIELDS
     private String textOverlay;       // Semi-transparent overlay for text areas
     private String blurEffect;        // Backdrop blur effect for text readability
+    private String textPosition;      // "top", "center", "bottom" - calmest area for the text block
     
     // ✅ AI-DECIDED TYPOGRAPHY FIELDS
     private String fontFamily;        // "Roboto, sans-serif", "Georgia, serif", etc.
@@ -201,6 +202,14 @@ public class BackgroundOption {
         this.blurEffect = blurEffect;
     }
 
+    public String getTextPosition() {
+        return textPosition;
+    }
+
+    public void setTextPosition(String textPosition) {
+        this.textPosition = textPosition;
+    }
+
     public String getPrimaryColor() {
         return primaryColor;
     }
@@ -244,6 +253,7 @@ public class BackgroundOption {
                 ", styleName='" + styleName + '\'' +
                 ", textOverlay='" + textOverlay + '\'' +
                 ", blurEffect='" + blurEffect + '\'' +
+                ", textPosition='" + textPosition + '\'' +
                 ", primaryColor='" + primaryColor + '\'' +
                 ", secondaryColor='" + secondaryColor + '\'' +
                 ", backgroundColor='" + backgroundColor + '\'' +
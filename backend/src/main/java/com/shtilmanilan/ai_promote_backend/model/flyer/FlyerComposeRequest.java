@@ -0,0 +1,136 @@
+package com.shtilmanilan.ai_promote_backend.model.flyer;
+
+/**
+ * Flyer Compose Request Model
+ *
+ * Everything the one-shot compose endpoint needs to build a flyer:
+ * the uploaded image plus the user's content and style choices.
+ *
+ * Features:
+ * - Base64 image (with or without a data URL prefix)
+ * - User's title and promotional text
+ * - Style preferences forwarded to background generation
+ * - Optional Imagen generation (the slowest and most expensive stage)
+ *
+ * @author AI-Promote Team
+ */
+public class FlyerComposeRequest {
+
+    private String image;
+    private String title;
+    private String promotionalText;
+    private String businessDescription;
+    private String targetAudience;
+    private String stylePreference;
+    private String colorScheme;
+    private String orientation = "portrait";
+    private String language = "English";
+    private boolean generateText = true;
+    private boolean generateImages = true;
+
+    // Default constructor
+    public FlyerComposeRequest() {
+    }
+
+    // Getters and Setters
+    public String getImage() {
+        return image;
+    }
+
+    public void setImage(String image) {
+        this.image = image;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getPromotionalText() {
+        return promotionalText;
+    }
+
+    public void setPromotionalText(String promotionalText) {
+        this.promotionalText = promotionalText;
+    }
+
+    public String getBusinessDescription() {
+        return businessDescription;
+    }
+
+    public void setBusinessDescription(String businessDescription) {
+        this.businessDescription = businessDescription;
+    }
+
+    public String getTargetAudience() {
+        return targetAudience;
+    }
+
+    public void setTargetAudience(String targetAudience) {
+        this.targetAudience = targetAudience;
+    }
+
+    public String getStylePreference() {
+        return stylePreference;
+    }
+
+    public void setStylePreference(String stylePreference) {
+        this.stylePreference = stylePreference;
+    }
+
+    public String getColorScheme() {
+        return colorScheme;
+    }
+
+    public void setColorScheme(String colorScheme) {
+        this.colorScheme = colorScheme;
+    }
+
+    public String getOrientation() {
+        return orientation;
+    }
+
+    public void setOrientation(String orientation) {
+        this.orientation = orientation;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public void setLanguage(String language) {
+        this.language = language;
+    }
+
+    public boolean isGenerateText() {
+        return generateText;
+    }
+
+    public void setGenerateText(boolean generateText) {
+        this.generateText = generateText;
+    }
+
+    public boolean isGenerateImages() {
+        return generateImages;
+    }
+
+    public void setGenerateImages(boolean generateImages) {
+        this.generateImages = generateImages;
+    }
+
+    @Override
+    public String toString() {
+        return "FlyerComposeRequest{" +
+                "title='" + title + '\'' +
+                ", promotionalText='" + promotionalText + '\'' +
+                ", orientation='" + orientation + '\'' +
+                ", language='" + language + '\'' +
+                ", imageChars=" + (image != null ? image.length() : 0) +
+                ", generateText=" + generateText +
+                ", generateImages=" + generateImages +
+                '}';
+    }
+}
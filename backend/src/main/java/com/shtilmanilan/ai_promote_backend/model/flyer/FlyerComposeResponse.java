@@ -0,0 +1,104 @@
+package com.shtilmanilan.ai_promote_backend.model.flyer;
+
+import com.shtilmanilan.ai_promote_backend.model.azure.AzureFlierConfig;
+import com.shtilmanilan.ai_promote_backend.model.azure.AzureVisionResponse;
+import com.shtilmanilan.ai_promote_backend.model.background.BackgroundOption;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flyer Compose Response Model
+ *
+ * Result of the compose pipeline: the flyer configuration together with
+ * the intermediate results the client previously fetched one by one.
+ *
+ * Features:
+ * - Complete AzureFlierConfig
+ * - Azure Vision analysis used to build it
+ * - Generated promotional text (falls back to the user's text)
+ * - CSS and Imagen background options
+ * - Per-stage timings and the stages that fell back
+ *
+ * @author AI-Promote Team
+ */
+public class FlyerComposeResponse {
+
+    private AzureFlierConfig config;
+    private AzureVisionResponse analysis;
+    private String generatedText;
+    private List<BackgroundOption> backgrounds;
+    private List<BackgroundOption> imageBackgrounds;
+    private Map<String, Long> stageMillis;
+    private List<String> fallbacks;
+    private long totalMillis;
+
+    // Default constructor
+    public FlyerComposeResponse() {
+    }
+
+    // Getters and Setters
+    public AzureFlierConfig getConfig() {
+        return config;
+    }
+
+    public void setConfig(AzureFlierConfig config) {
+        this.config = config;
+    }
+
+    public AzureVisionResponse getAnalysis() {
+        return analysis;
+    }
+
+    public void setAnalysis(AzureVisionResponse analysis) {
+        this.analysis = analysis;
+    }
+
+    public String getGeneratedText() {
+        return generatedText;
+    }
+
+    public void setGeneratedText(String generatedText) {
+        this.generatedText = generatedText;
+    }
+
+    public List<BackgroundOption> getBackgrounds() {
+        return backgrounds;
+    }
+
+    public void setBackgrounds(List<BackgroundOption> backgrounds) {
+        this.backgrounds = backgrounds;
+    }
+
+    public List<BackgroundOption> getImageBackgrounds() {
+        return imageBackgrounds;
+    }
+
+    public void setImageBackgrounds(List<BackgroundOption> imageBackgrounds) {
+        this.imageBackgrounds = imageBackgrounds;
+    }
+
+    public Map<String, Long> getStageMillis() {
+        return stageMillis;
+    }
+
+    public void setStageMillis(Map<String, Long> stageMillis) {
+        this.stageMillis = stageMillis;
+    }
+
+    public List<String> getFallbacks() {
+        return fallbacks;
+    }
+
+    public void setFallbacks(List<String> fallbacks) {
+        this.fallbacks = fallbacks;
+    }
+
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    public void setTotalMillis(long totalMillis) {
+        this.totalMillis = totalMillis;
+    }
+}
@@ -0,0 +1,123 @@
+package com.shtilmanilan.ai_promote_backend.model.flyer;
+
+import com.shtilmanilan.ai_promote_backend.model.azure.AzureFlierConfig;
+import com.shtilmanilan.ai_promote_backend.model.background.BackgroundOption;
+
+/**
+ * Flyer Render Request Model
+ *
+ * What the browser uses to compose the final flyer, sent to the server so
+ * it can produce the image itself (bulk and email use cases).
+ *
+ * Features:
+ * - Title and promotional text (Hebrew and other RTL text supported)
+ * - Chosen BackgroundOption: CSS gradient or generated image, text color,
+ *   overlay and typography
+ * - Optional AzureFlierConfig for orientation and text placement
+ * - Output size and format ("png" or "jpeg"; "png" or "pdf" for print export)
+ * - Print export: paper size (A5/A4/A3) and dpi instead of pixel size
+ *
+ * @author AI-Promote Team
+ */
+public class FlyerRenderRequest {
+
+    private String title;
+    private String promotionalText;
+    private BackgroundOption background;
+    private AzureFlierConfig config;
+    private Integer width;
+    private Integer height;
+    private String format = "png";
+    private String paperSize;
+    private Integer dpi;
+
+    // Default constructor
+    public FlyerRenderRequest() {
+    }
+
+    // Getters and Setters
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getPromotionalText() {
+        return promotionalText;
+    }
+
+    public void setPromotionalText(String promotionalText) {
+        this.promotionalText = promotionalText;
+    }
+
+    public BackgroundOption getBackground() {
+        return background;
+    }
+
+    public void setBackground(BackgroundOption background) {
+        this.background = background;
+    }
+
+    public AzureFlierConfig getConfig() {
+        return config;
+    }
+
+    public void setConfig(AzureFlierConfig config) {
+        this.config = config;
+    }
+
+    public Integer getWidth() {
+        return width;
+    }
+
+    public void setWidth(Integer width) {
+        this.width = width;
+    }
+
+    public Integer getHeight() {
+        return height;
+    }
+
+    public void setHeight(Integer height) {
+        this.height = height;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public String getPaperSize() {
+        return paperSize;
+    }
+
+    public void setPaperSize(String paperSize) {
+        this.paperSize = paperSize;
+    }
+
+    public Integer getDpi() {
+        return dpi;
+    }
+
+    public void setDpi(Integer dpi) {
+        this.dpi = dpi;
+    }
+
+    @Override
+    public String toString() {
+        return "FlyerRenderRequest{" +
+                "title='" + title + '\'' +
+                ", promotionalText='" + promotionalText + '\'' +
+                ", width=" + width +
+                ", height=" + height +
+                ", format='" + format + '\'' +
+                ", paperSize='" + paperSize + '\'' +
+                ", dpi=" + dpi +
+                '}';
+    }
+}
@@ -0,0 +1,384 @@
+package com.shtilmanilan.ai_promote_backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Provider Quota Governor
+ *
+ * Keeps outbound AI calls under each provider's rate limits instead of
+ * finding out from a 429. One quota is kept per provider and API key, with
+ * a requests-per-minute and a tokens-per-minute window. Before a call, the
+ * caller asks for a permit for its estimated tokens:
+ * - room in both windows: the permit is granted at once
+ * - room within max-wait: the caller is paced until the window resets
+ * - otherwise no permit, and the caller routes the work to its fallback
+ *   provider without paying for the failed round trip
+ *
+ * Limits start from configuration (upstream.<provider>.requests-per-minute
+ * and .tokens-per-minute) and are replaced by what the provider reports in
+ * its rate limit headers (x-ratelimit-* for Groq and OpenAI,
+ * anthropic-ratelimit-* for Claude) after every response. Calls still in
+ * flight are subtracted from the reported remainder, since the provider has
+ * not counted them yet. A 429 that slips through blocks the quota until the
+ * provider's Retry-After.
+ */
+@Component
+public class ProviderQuotaGovernor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProviderQuotaGovernor.class);
+
+    private static final long MINUTE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final long DEFAULT_RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // Groq and OpenAI reset values look like "1m30.5s", "7.66s" or "250ms"
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    private final Map<String, Quota> quotas = new ConcurrentHashMap<>();
+    private final Environment environment;
+    private final long maxWaitNanos;
+
+    public ProviderQuotaGovernor(Environment environment) {
+        this.environment = environment;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(
+            environment.getProperty("upstream.max-wait-ms", Long.class, 2000L));
+    }
+
+    /**
+     * The quota for provider and apiKey, created with the configured limits
+     * or the given defaults
+     */
+    public Quota quota(String provider, String apiKey, int requestsPerMinute, int tokensPerMinute) {
+        String keyId = keyId(apiKey);
+        return quotas.computeIfAbsent(provider + ":" + keyId, k -> {
+            String prefix = "upstream." + provider + ".";
+            return new Quota(provider, keyId,
+                environment.getProperty(prefix + "requests-per-minute", Integer.class, requestsPerMinute),
+                environment.getProperty(prefix + "tokens-per-minute", Integer.class, tokensPerMinute));
+        });
+    }
+
+    /**
+     * Rough token count for a call: about four characters per token of
+     * prompt, plus every output token the call may produce, which providers
+     * reserve up front
+     */
+    public static int estimateTokens(String prompt, int maxOutputTokens) {
+        int promptChars = prompt != null ? prompt.length() : 0;
+        return (promptChars + 3) / 4 + maxOutputTokens;
+    }
+
+    /**
+     * Per-key windows and counters for the providers given, or all of them
+     */
+    public Map<String, Object> getStats(String... providers) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (Quota quota : quotas.values()) {
+            if (providers.length == 0 || List.of(providers).contains(quota.provider)) {
+                stats.put(quota.provider + ":" + quota.keyId, quota.getStats());
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Identifies a key in stats and logs without revealing it
+     */
+    private static String keyId(String apiKey) {
+        return apiKey == null ? "none" : String.format("%08x", apiKey.hashCode());
+    }
+
+    /**
+     * One provider window: a limit per period, what is left of it, and when
+     * it is next full again
+     */
+    private static final class Window {
+        private long limit;
+        private long remaining;
+        private long resetAt;
+        private boolean reported;
+
+        Window(long limit, long now) {
+            this.limit = limit;
+            this.remaining = limit;
+            this.resetAt = now + MINUTE_NANOS;
+        }
+
+        /**
+         * Nanoseconds until amount fits, 0 if it fits now. A call larger than
+         * the whole limit waits for a full window.
+         */
+        long waitFor(long amount, long now) {
+            if (now - resetAt >= 0) {
+                remaining = limit;
+                resetAt = now + MINUTE_NANOS;
+            }
+            return remaining >= Math.min(amount, limit) ? 0 : resetAt - now;
+        }
+
+        void report(long limit, long remaining, long resetNanos, long inFlight, long now) {
+            this.limit = limit;
+            this.remaining = remaining - inFlight;
+            // The provider's reset is when the window is full again, not its length
+            this.resetAt = now + Math.max(0, resetNanos);
+            this.reported = true;
+        }
+
+        Map<String, Object> getStats(long now) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("limit", limit);
+            stats.put("remaining", Math.max(0, remaining));
+            stats.put("resetMillis", Math.max(0, TimeUnit.NANOSECONDS.toMillis(resetAt - now)));
+            stats.put("source", reported ? "provider" : "configured");
+            return stats;
+        }
+    }
+
+    /**
+     * Limits for one provider and API key
+     */
+    public final class Quota {
+        private final String provider;
+        private final String keyId;
+        private final Window requests;
+        private final Window tokens;
+        private long blockedUntil;
+        private long inFlightRequests;
+        private long inFlightTokens;
+
+        private long granted;
+        private long paced;
+        private long rerouted;
+        private long upstreamRejections;
+        private long totalWaitNanos;
+
+        Quota(String provider, String keyId, int requestsPerMinute, int tokensPerMinute) {
+            long now = System.nanoTime();
+            this.provider = provider;
+            this.keyId = keyId;
+            this.requests = new Window(requestsPerMinute, now);
+            this.tokens = new Window(tokensPerMinute, now);
+            this.blockedUntil = now;
+        }
+
+        /**
+         * A permit for a call of about estimatedTokens, waiting up to
+         * upstream.max-wait-ms for room. Null when the call would have to wait
+         * longer (or the thread is interrupted): route it elsewhere.
+         */
+        public Permit acquire(int estimatedTokens) {
+            long start = System.nanoTime();
+            long deadline = start + maxWaitNanos;
+            boolean waited = false;
+            while (true) {
+                long wait;
+                synchronized (this) {
+                    long now = System.nanoTime();
+                    wait = Math.max(Math.max(blockedUntil - now, 0),
+                        Math.max(requests.waitFor(1, now), tokens.waitFor(estimatedTokens, now)));
+                    if (wait == 0) {
+                        requests.remaining--;
+                        tokens.remaining -= estimatedTokens;
+                        inFlightRequests++;
+                        inFlightTokens += estimatedTokens;
+                        granted++;
+                        if (waited) {
+                            paced++;
+                            totalWaitNanos += now - start;
+                        }
+                        return new Permit(this, estimatedTokens);
+                    }
+                    if (now + wait - deadline > 0) {
+                        rerouted++;
+                        logger.info("{} quota exhausted for {} ms, not calling it", provider,
+                            TimeUnit.NANOSECONDS.toMillis(wait));
+                        return null;
+                    }
+                }
+                waited = true;
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    synchronized (this) {
+                        rerouted++;
+                    }
+                    return null;
+                }
+            }
+        }
+
+        private synchronized void complete(Permit permit, HttpHeaders headers, long usedTokens) {
+            long now = System.nanoTime();
+            inFlightRequests--;
+            inFlightTokens -= permit.estimatedTokens;
+            boolean reported = applyHeaders(headers, now);
+            if (!reported && usedTokens >= 0) {
+                // No provider view: settle the estimate against actual usage
+                tokens.remaining += permit.estimatedTokens - usedTokens;
+            }
+        }
+
+        private synchronized void fail(Permit permit, Exception e) {
+            long now = System.nanoTime();
+            inFlightRequests--;
+            inFlightTokens -= permit.estimatedTokens;
+            if (!(e instanceof HttpStatusCodeException statusException)) {
+                return;
+            }
+            HttpHeaders headers = statusException.getResponseHeaders();
+            applyHeaders(headers, now);
+            if (statusException.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value()) {
+                upstreamRejections++;
+                long retryNanos = headers != null ? parseReset(headers.getFirst(HttpHeaders.RETRY_AFTER)) : -1;
+                blockedUntil = now + (retryNanos >= 0 ? retryNanos : DEFAULT_RETRY_NANOS);
+                logger.warn("{} returned 429, holding calls for {} ms", provider,
+                    TimeUnit.NANOSECONDS.toMillis(blockedUntil - now));
+            }
+        }
+
+        /**
+         * Adopt the provider's reported limits, true if it reported any
+         */
+        private boolean applyHeaders(HttpHeaders headers, long now) {
+            if (headers == null) {
+                return false;
+            }
+            boolean requestsReported = report(requests, headers, "requests", inFlightRequests, now);
+            boolean tokensReported = report(tokens, headers, "tokens", inFlightTokens, now);
+            return requestsReported || tokensReported;
+        }
+
+        public synchronized Map<String, Object> getStats() {
+            long now = System.nanoTime();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("requests", requests.getStats(now));
+            stats.put("tokens", tokens.getStats(now));
+            stats.put("inFlight", inFlightRequests);
+            stats.put("granted", granted);
+            stats.put("paced", paced);
+            stats.put("totalWaitMillis", TimeUnit.NANOSECONDS.toMillis(totalWaitNanos));
+            stats.put("rerouted", rerouted);
+            stats.put("upstreamRejections", upstreamRejections);
+            return stats;
+        }
+    }
+
+    /**
+     * One granted call. Report how it went exactly once; later reports are
+     * ignored.
+     */
+    public static final class Permit {
+        private final Quota quota;
+        private final int estimatedTokens;
+        private boolean done;
+
+        private Permit(Quota quota, int estimatedTokens) {
+            this.quota = quota;
+            this.estimatedTokens = estimatedTokens;
+        }
+
+        /**
+         * The call succeeded. usedTokens is the provider's reported usage, or
+         * -1 if unknown.
+         */
+        public void complete(HttpHeaders headers, long usedTokens) {
+            if (claim()) {
+                quota.complete(this, headers, usedTokens);
+            }
+        }
+
+        public void fail(Exception e) {
+            if (claim()) {
+                quota.fail(this, e);
+            }
+        }
+
+        private synchronized boolean claim() {
+            boolean first = !done;
+            done = true;
+            return first;
+        }
+    }
+
+    private static boolean report(Window window, HttpHeaders headers, String kind, long inFlight, long now) {
+        String limit = first(headers, "x-ratelimit-limit-" + kind, "anthropic-ratelimit-" + kind + "-limit");
+        String remaining = first(headers, "x-ratelimit-remaining-" + kind, "anthropic-ratelimit-" + kind + "-remaining");
+        String reset = first(headers, "x-ratelimit-reset-" + kind, "anthropic-ratelimit-" + kind + "-reset");
+        if (limit == null || remaining == null) {
+            return false;
+        }
+        try {
+            long resetNanos = parseReset(reset);
+            window.report(Long.parseLong(limit.trim()), Long.parseLong(remaining.trim()),
+                resetNanos >= 0 ? resetNanos : MINUTE_NANOS, inFlight, now);
+            return true;
+        } catch (NumberFormatException e) {
+            logger.debug("Ignoring malformed rate limit headers: {} / {}", limit, remaining);
+            return false;
+        }
+    }
+
+    private static String first(HttpHeaders headers, String... names) {
+        for (String name : names) {
+            String value = headers.getFirst(name);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Nanoseconds until a reset given as seconds ("12"), a duration
+     * ("1m30.5s", "250ms") or an RFC 3339 instant; -1 if absent or unreadable
+     */
+    static long parseReset(String value) {
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+        String trimmed = value.trim();
+        try {
+            return (long) (Double.parseDouble(trimmed) * TimeUnit.SECONDS.toNanos(1));
+        } catch (NumberFormatException ignored) {
+            // not plain seconds
+        }
+        Matcher matcher = DURATION_PART.matcher(trimmed);
+        double nanos = 0;
+        int end = 0;
+        while (matcher.find() && matcher.start() == end) {
+            double amount = Double.parseDouble(matcher.group(1));
+            nanos += amount * switch (matcher.group(2)) {
+                case "h" -> 3_600_000_000_000L;
+                case "m" -> 60_000_000_000L;
+                case "s" -> 1_000_000_000L;
+                default -> 1_000_000L;
+            };
+            end = matcher.end();
+        }
+        if (end == trimmed.length()) {
+            return (long) nanos;
+        }
+        try {
+            return Math.max(0, Duration.between(Instant.now(), OffsetDateTime.parse(trimmed)).toNanos());
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
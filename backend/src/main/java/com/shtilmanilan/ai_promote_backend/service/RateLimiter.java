@@ -1,21 +1,341 @@
 package com.shtilmanilan.ai_promote_backend.service;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
+/**
+ * Per-key GCRA (Generic Cell Rate Algorithm) limiter.
+ *
+ * Each key stores a single long, its theoretical arrival time (TAT): the
+ * instant at which the key would be back to a full burst. A request is
+ * allowed if the TAT is no more than (burst - 1) emission intervals ahead of
+ * now, and then pushes the TAT one interval further. This is a token bucket
+ * without the token count, so the time until the next allowed request, the
+ * remaining burst and the full reset fall straight out of the TAT.
+ *
+ * Requests may cost more than one unit: a cost of n needs room for n
+ * intervals and advances the TAT by all of them, which turns the limiter
+ * into a weighted token budget. refund() gives units back.
+ *
+ * reserve() admits a request that is not due yet, provided it would be
+ * within a given delay: its units are taken now, at the future instant they
+ * become available, and the caller holds the request until then. Requests
+ * reserved later queue up behind it.
+ *
+ * The TATs live in a {@link Store}. The default one is a map in this JVM;
+ * {@link SharedMemoryRateLimitStore} keeps them in a memory-mapped file so
+ * several processes on one host enforce a single limit.
+ */
 public class RateLimiter {
-    private final ConcurrentHashMap<String, Long> lastRequestTime = new ConcurrentHashMap<>();
-    private final int MAX_REQUESTS_PER_MINUTE = 2;
-    private final long COOLDOWN_MILLIS = MAX_REQUESTS_PER_MINUTE *60 * 1000; 
+
+    public static final int DEFAULT_REQUESTS_PER_MINUTE = 6;
+    public static final int DEFAULT_BURST = 3;
+    public static final int DEFAULT_MAX_KEYS = 100_000;
+
+    private final int burst;
+    private final long emissionNanos;
+    private final long toleranceNanos;
+    private final Store store;
+
+    public RateLimiter() {
+        this(DEFAULT_REQUESTS_PER_MINUTE, DEFAULT_BURST);
+    }
+
+    public RateLimiter(int requestsPerMinute, int burst) {
+        this(requestsPerMinute, burst, DEFAULT_MAX_KEYS);
+    }
+
+    public RateLimiter(int requestsPerMinute, int burst, int maxKeys) {
+        this(requestsPerMinute, burst, maxKeys, System::nanoTime);
+    }
+
+    /**
+     * In-process store reading time from nanoClock instead of System.nanoTime()
+     */
+    RateLimiter(int requestsPerMinute, int burst, int maxKeys, LongSupplier nanoClock) {
+        this(requestsPerMinute, burst, maxKeys < 1 ? null : new MemoryStore(maxKeys,
+            burst * emissionNanos(requestsPerMinute), nanoClock));
+    }
+
+    public RateLimiter(int requestsPerMinute, int burst, Store store) {
+        if (requestsPerMinute < 1 || burst < 1 || store == null) {
+            throw new IllegalArgumentException("requestsPerMinute, burst and maxKeys must be positive");
+        }
+        this.burst = burst;
+        this.emissionNanos = emissionNanos(requestsPerMinute);
+        this.toleranceNanos = emissionNanos * (burst - 1);
+        this.store = store;
+    }
 
     public boolean isAllowed(String userKey) {
-        long now = System.currentTimeMillis();
-        Long lastTime = lastRequestTime.get(userKey);
-        
-        if (lastTime == null || now - lastTime >= COOLDOWN_MILLIS) {
-            lastRequestTime.put(userKey, now);
-            return true;
-        } else {
-            return false;
+        return tryAcquire(userKey).allowed();
+    }
+
+    public Decision tryAcquire(String userKey) {
+        return tryAcquire(userKey, 1);
+    }
+
+    /**
+     * Admit or reject a request costing cost units of the burst for userKey.
+     * A rejection only reads the stored TAT; an admission advances it by
+     * cost emission intervals with one compare-and-set.
+     */
+    public Decision tryAcquire(String userKey, int cost) {
+        return reserve(userKey, cost, 0);
+    }
+
+    /**
+     * Like tryAcquire(), but also admits a request that will be due within
+     * maxDelayNanos. The decision's retryAfterNanos is then how long the
+     * caller must hold the request before letting it proceed.
+     */
+    public Decision reserve(String userKey, int cost, long maxDelayNanos) {
+        if (cost < 1 || cost > burst) {
+            throw new IllegalArgumentException("cost must be between 1 and the burst (" + burst + ")");
+        }
+        long increment = cost * emissionNanos;
+        // Furthest the TAT may be ahead of now and still have room for this cost
+        long allowance = toleranceNanos + emissionNanos - increment;
+        long now = store.now();
+        Store.Slot slot = store.slot(userKey, now);
+        while (true) {
+            long stored = slot.get();
+            if (stored == Store.RETIRED) {
+                // Evicted or reused since we looked it up
+                slot = store.slot(userKey, now);
+                continue;
+            }
+            long arrival = Math.max(stored, now);
+            long delay = Math.max(0, arrival - now - allowance);
+            if (delay > maxDelayNanos) {
+                return denied(now, arrival, allowance);
+            }
+            // Loses to a concurrent request: re-read and decide again
+            if (slot.compareAndSet(stored, arrival + increment)) {
+                return allowed(now, arrival + increment, delay);
+            }
+        }
+    }
+
+    /**
+     * Give back cost units admitted earlier, e.g. when a later check turned
+     * the request away
+     */
+    public void refund(String userKey, int cost) {
+        long credit = cost * emissionNanos;
+        long now = store.now();
+        Store.Slot slot = store.slot(userKey, now);
+        while (true) {
+            long stored = slot.get();
+            if (stored == Store.RETIRED) {
+                slot = store.slot(userKey, now);
+            } else if (stored <= now || slot.compareAndSet(stored, stored - credit)) {
+                // Nothing left to give back once the TAT has passed
+                return;
+            }
+        }
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    public long getRequestsPerMinute() {
+        return TimeUnit.MINUTES.toNanos(1) / emissionNanos;
+    }
+
+    /**
+     * Limits and store statistics (tracked keys, evictions) for the stats endpoints
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requestsPerMinute", getRequestsPerMinute());
+        stats.put("burst", burst);
+        stats.putAll(store.getStats());
+        return stats;
+    }
+
+    private static long emissionNanos(int requestsPerMinute) {
+        return TimeUnit.MINUTES.toNanos(1) / Math.max(1, requestsPerMinute);
+    }
+
+    private Decision allowed(long now, long newArrival, long delay) {
+        long backlog = newArrival - now;
+        // Each emission interval of backlog (rounded up) is one request of the burst in use
+        int remaining = (int) Math.max(0, burst - (backlog + emissionNanos - 1) / emissionNanos);
+        return new Decision(true, burst, remaining, delay, backlog);
+    }
+
+    private Decision denied(long now, long arrival, long allowance) {
+        long backlog = arrival - now;
+        int remaining = (int) Math.max(0, burst - (backlog + emissionNanos - 1) / emissionNanos);
+        return new Decision(false, burst, remaining, backlog - allowance, backlog);
+    }
+
+    /**
+     * Where the TATs live. A slot that has never been used reads as 0, which
+     * is never ahead of now(), so it behaves like a full burst.
+     */
+    public interface Store {
+
+        /**
+         * Read from a slot that was evicted or handed to another key after it
+         * was looked up; the caller looks the key up again
+         */
+        long RETIRED = Long.MIN_VALUE;
+
+        /**
+         * Current time in the store's clock, nanoseconds, always positive
+         */
+        long now();
+
+        /**
+         * The slot for key, created if needed. May be shared with other keys
+         * when the store is full.
+         */
+        Slot slot(String key, long now);
+
+        Map<String, Object> getStats();
+
+        interface Slot {
+            long get();
+
+            boolean compareAndSet(long expected, long update);
+        }
+    }
+
+    /**
+     * TATs in a map in this JVM.
+     *
+     * A key whose TAT has passed is indistinguishable from one never seen, so
+     * entries are dropped by a lazy sweep (run on new keys, at most once per
+     * burst period). Past maxKeys tracked clients, new keys share one overflow
+     * slot until a sweep makes room.
+     */
+    private static final class MemoryStore implements Store {
+
+        private static final long MIN_SWEEP_NANOS = TimeUnit.SECONDS.toNanos(1);
+        private static final long MAX_SWEEP_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+        private final ConcurrentHashMap<String, Entry> theoreticalArrival = new ConcurrentHashMap<>();
+        private final int maxKeys;
+        private final long sweepIntervalNanos;
+        private final LongSupplier clock;
+        // Keeps now() positive, so a fresh slot's 0 is never ahead of it
+        private final long epoch;
+        private final Entry overflow = new Entry();
+
+        private final AtomicLong lastSweep = new AtomicLong();
+        private final AtomicLong sweeps = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+        private final AtomicLong overflowRequests = new AtomicLong();
+
+        MemoryStore(int maxKeys, long burstNanos, LongSupplier clock) {
+            this.maxKeys = maxKeys;
+            this.clock = clock;
+            this.epoch = clock.getAsLong() - 1;
+            // A TAT is at most one burst ahead of its last request, so nothing expires sooner than that
+            this.sweepIntervalNanos = Math.max(MIN_SWEEP_NANOS, Math.min(MAX_SWEEP_NANOS, burstNanos));
+        }
+
+        @Override
+        public long now() {
+            return clock.getAsLong() - epoch;
+        }
+
+        @Override
+        public Slot slot(String key, long now) {
+            // get() first: computeIfAbsent may lock the bin even when the key is present
+            Entry entry = theoreticalArrival.get(key);
+            if (entry != null) {
+                if (entry.get() != RETIRED) {
+                    return entry;
+                }
+                // Caught between a sweep's retire and its remove: finish the remove
+                theoreticalArrival.remove(key, entry);
+            }
+            if (now - lastSweep.get() >= sweepIntervalNanos) {
+                sweep(now, sweepIntervalNanos);
+            }
+            if (theoreticalArrival.size() >= maxKeys) {
+                // At the cap, sweep early rather than waiting out the interval
+                sweep(now, MIN_SWEEP_NANOS);
+                if (theoreticalArrival.size() >= maxKeys) {
+                    overflowRequests.incrementAndGet();
+                    return overflow;
+                }
+            }
+            return theoreticalArrival.computeIfAbsent(key, k -> new Entry());
+        }
+
+        @Override
+        public Map<String, Object> getStats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("store", "memory");
+            stats.put("liveKeys", theoreticalArrival.size());
+            stats.put("maxKeys", maxKeys);
+            stats.put("evictions", evictions.get());
+            stats.put("sweeps", sweeps.get());
+            stats.put("overflowRequests", overflowRequests.get());
+            return stats;
+        }
+
+        /**
+         * Drop every key whose TAT has passed. One thread sweeps at a time, and
+         * not more often than minInterval.
+         */
+        private void sweep(long now, long minInterval) {
+            long last = lastSweep.get();
+            if (now - last < minInterval || !lastSweep.compareAndSet(last, now)) {
+                return;
+            }
+            sweeps.incrementAndGet();
+            for (Map.Entry<String, Entry> mapping : theoreticalArrival.entrySet()) {
+                Entry entry = mapping.getValue();
+                // Retire first: a request that moves the TAT in between keeps the entry,
+                // and one holding the entry afterwards sees RETIRED and looks it up again
+                long arrival = entry.get();
+                if (arrival != RETIRED && arrival <= now && entry.compareAndSet(arrival, RETIRED)
+                        && theoreticalArrival.remove(mapping.getKey(), entry)) {
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+
+        private static final class Entry extends AtomicLong implements Slot {
+        }
+    }
+
+    /**
+     * Outcome of one request.
+     *
+     * @param limit           the burst size
+     * @param remaining       units that could be spent right now, after this request
+     * @param retryAfterNanos time until a request of the same cost would be allowed; when allowed,
+     *                        how long a reserved request must wait (0 for one admitted now)
+     * @param resetNanos      time until the key is back to a full burst
+     */
+    public record Decision(boolean allowed, int limit, int remaining, long retryAfterNanos, long resetNanos) {
+
+        /**
+         * Retry-After header value: whole seconds, rounded up so a client
+         * that waits exactly this long is admitted
+         */
+        public long retryAfterSeconds() {
+            return ceilSeconds(retryAfterNanos);
+        }
+
+        public long resetSeconds() {
+            return ceilSeconds(resetNanos);
+        }
+
+        private static long ceilSeconds(long nanos) {
+            long second = TimeUnit.SECONDS.toNanos(1);
+            return (nanos + second - 1) / second;
         }
     }
-}
\ No newline at end of file
+}
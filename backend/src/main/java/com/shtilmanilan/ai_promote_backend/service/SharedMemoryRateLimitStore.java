@@ -0,0 +1,235 @@
+package com.shtilmanilan.ai_promote_backend.service;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rate limiter TATs in a memory-mapped file, shared by every JVM on the host
+ * that maps the same file, so N backend instances enforce one limit instead
+ * of N. No network hop and no external store: an update is one CAS on the
+ * mapped page.
+ *
+ * Layout: a 64-byte header (magic, version, slot count, rate and burst the
+ * file was created for, and the overflow TAT) followed by a fixed
+ * open-addressing table of 16-byte slots, {key hash, TAT}. Keys are stored as
+ * 64-bit hashes. Lookups probe linearly from the hash's home slot for at most
+ * PROBE_LIMIT slots. A slot is claimed by CASing its key from 0; slots are
+ * never emptied again, so probe chains stay intact. When a key finds no free
+ * slot it takes over one whose TAT has passed (it is back to a full burst and
+ * forgets nothing): the TAT is CASed to RETIRED, the key rewritten, then the
+ * TAT reset. If every slot in the window is busy the key uses the shared
+ * overflow TAT.
+ *
+ * TATs are wall-clock nanoseconds, the one clock all processes share, so
+ * the file stays valid across restarts. Two processes inserting the same new
+ * key at the same moment may claim two slots; lookups settle on the first
+ * and the other expires and is reused.
+ */
+public final class SharedMemoryRateLimitStore implements RateLimiter.Store {
+
+    private static final long MAGIC = 0x52544c494d495453L;
+    private static final long VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int SLOT_BYTES = 16;
+    private static final int OVERFLOW_OFFSET = 56;
+    private static final int PROBE_LIMIT = 32;
+    private static final int MAX_SLOTS = 1 << 24;
+    private static final long EMPTY = 0;
+
+    // Slots are 8-byte aligned in a page-aligned mapping, as atomic access modes require
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final int mask;
+    private final RateLimiter.Store.Slot overflow = new Slot(OVERFLOW_OFFSET - 8, 0);
+
+    private final AtomicLong claims = new AtomicLong();
+    private final AtomicLong reclaims = new AtomicLong();
+    private final AtomicLong overflowRequests = new AtomicLong();
+
+    private SharedMemoryRateLimitStore(Path file, MappedByteBuffer buffer, int slots) {
+        this.file = file;
+        this.buffer = buffer;
+        this.mask = slots - 1;
+    }
+
+    /**
+     * Map file, creating and initializing it if needed. The first process
+     * creates it under a file lock; later ones check it was created for the
+     * same slot count, rate and burst.
+     *
+     * @param slots rounded up to a power of two
+     */
+    public static SharedMemoryRateLimitStore open(Path file, int slots, int requestsPerMinute, int burst)
+            throws IOException {
+        if (slots < 1 || slots > MAX_SLOTS) {
+            throw new IllegalArgumentException("slots must be between 1 and " + MAX_SLOTS);
+        }
+        int capacity = Math.max(PROBE_LIMIT, Integer.highestOneBit(slots - 1) << 1);
+        long size = HEADER_BYTES + (long) capacity * SLOT_BYTES;
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+
+        // The mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             FileLock lock = channel.lock()) {
+            boolean created = channel.size() == 0;
+            if (!created && channel.size() != size) {
+                throw new IllegalStateException(file + " holds a different number of slots, expected " + capacity);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (created) {
+                buffer.putLong(8, VERSION);
+                buffer.putLong(16, capacity);
+                buffer.putLong(24, requestsPerMinute);
+                buffer.putLong(32, burst);
+                buffer.putLong(0, MAGIC);
+                buffer.force();
+            } else if (buffer.getLong(0) != MAGIC || buffer.getLong(8) != VERSION
+                    || buffer.getLong(16) != capacity || buffer.getLong(24) != requestsPerMinute
+                    || buffer.getLong(32) != burst) {
+                throw new IllegalStateException(file + " was created for a different limit ("
+                    + buffer.getLong(24) + "/min, burst " + buffer.getLong(32) + ")");
+            }
+            return new SharedMemoryRateLimitStore(file, buffer, capacity);
+        }
+    }
+
+    @Override
+    public long now() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+
+    @Override
+    public RateLimiter.Store.Slot slot(String key, long now) {
+        long hash = hash(key);
+        int home = (int) hash & mask;
+        while (true) {
+            int expired = -1;
+            long expiredArrival = 0;
+            for (int i = 0; i < PROBE_LIMIT; i++) {
+                int index = (home + i) & mask;
+                int offset = HEADER_BYTES + index * SLOT_BYTES;
+                long owner = (long) LONGS.getVolatile(buffer, offset);
+                if (owner == EMPTY) {
+                    if (LONGS.compareAndSet(buffer, offset, EMPTY, hash)) {
+                        claims.incrementAndGet();
+                        return new Slot(offset, hash);
+                    }
+                    owner = (long) LONGS.getVolatile(buffer, offset);
+                }
+                long arrival = (long) LONGS.getVolatile(buffer, offset + 8);
+                if (arrival == RETIRED) {
+                    // Being handed to another key
+                    continue;
+                }
+                if (owner == hash) {
+                    return new Slot(offset, hash);
+                }
+                if (expired < 0 && arrival <= now) {
+                    expired = offset;
+                    expiredArrival = arrival;
+                }
+            }
+            if (expired < 0) {
+                overflowRequests.incrementAndGet();
+                return overflow;
+            }
+            if (LONGS.compareAndSet(buffer, expired + 8, expiredArrival, RETIRED)) {
+                LONGS.setVolatile(buffer, expired, hash);
+                // Any past instant reads as a full burst; now rather than 0 so that a
+                // stale CAS from the previous owner cannot match
+                LONGS.setVolatile(buffer, expired + 8, now);
+                reclaims.incrementAndGet();
+                return new Slot(expired, hash);
+            }
+            // Another process took it first - probe again
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        long now = now();
+        int used = 0;
+        int live = 0;
+        for (int index = 0; index <= mask; index++) {
+            int offset = HEADER_BYTES + index * SLOT_BYTES;
+            if ((long) LONGS.getVolatile(buffer, offset) != EMPTY) {
+                used++;
+                if ((long) LONGS.getVolatile(buffer, offset + 8) > now) {
+                    live++;
+                }
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("store", "shared:" + file);
+        stats.put("liveKeys", live);
+        stats.put("usedSlots", used);
+        stats.put("slots", mask + 1);
+        stats.put("claims", claims.get());
+        stats.put("reclaims", reclaims.get());
+        stats.put("overflowRequests", overflowRequests.get());
+        return stats;
+    }
+
+    /**
+     * 64-bit FNV-1a finished with the MurmurHash3 mixer; 0 marks an empty slot
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == EMPTY ? 1 : h;
+    }
+
+    /**
+     * A claimed slot. Reads as RETIRED once it has been handed to another key.
+     */
+    private final class Slot implements RateLimiter.Store.Slot {
+        private final int offset;
+        private final long hash;
+
+        Slot(int offset, long hash) {
+            this.offset = offset;
+            this.hash = hash;
+        }
+
+        @Override
+        public long get() {
+            long arrival = (long) LONGS.getVolatile(buffer, offset + 8);
+            // The overflow slot has no key
+            if (offset == OVERFLOW_OFFSET - 8 || (long) LONGS.getVolatile(buffer, offset) == hash) {
+                return arrival;
+            }
+            return RETIRED;
+        }
+
+        @Override
+        public boolean compareAndSet(long expected, long update) {
+            return LONGS.compareAndSet(buffer, offset + 8, expected, update);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.shtilmanilan.ai_promote_backend.service.azure;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Spaces outbound Azure Vision calls to stay under the subscription's
+ * transactions-per-second limit. Each caller reserves the next free slot
+ * with a single atomic update and sleeps until it arrives, so concurrent
+ * callers are released in order, 1/tps apart.
+ */
+public class AzureRequestPacer {
+
+    private final long intervalNanos;
+    private final AtomicLong nextSlot = new AtomicLong(System.nanoTime());
+
+    private final AtomicLong pacedCalls = new AtomicLong();
+    private final AtomicLong delayedCalls = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    public AzureRequestPacer(double maxTransactionsPerSecond) {
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / maxTransactionsPerSecond);
+    }
+
+    /**
+     * Block until this caller may send its request
+     */
+    public void acquire() throws InterruptedException {
+        long now = System.nanoTime();
+        long previous = nextSlot.getAndUpdate(slot -> Math.max(slot, now) + intervalNanos);
+        long slot = Math.max(previous, now);
+        pacedCalls.incrementAndGet();
+
+        long wait = slot - now;
+        if (wait <= 0) {
+            return;
+        }
+        delayedCalls.incrementAndGet();
+        totalWaitNanos.addAndGet(wait);
+        long deadline = slot;
+        while ((wait = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    public long getPacedCalls() {
+        return pacedCalls.get();
+    }
+
+    public long getDelayedCalls() {
+        return delayedCalls.get();
+    }
+
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get());
+    }
+}
@@ -0,0 +1,180 @@
+package com.shtilmanilan.ai_promote_backend.service.azure;
+
+import com.shtilmanilan.ai_promote_backend.model.azure.AzureBatchItemResult;
+import com.shtilmanilan.ai_promote_backend.service.image.ContentHash;
+import com.shtilmanilan.ai_promote_backend.service.image.ImageBufferPool;
+import com.shtilmanilan.ai_promote_backend.service.image.ImageTooLargeException;
+import com.shtilmanilan.ai_promote_backend.service.image.PooledBuffer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Azure Vision Batch Service
+ *
+ * Analyzes many uploaded images in one request. Identical images are
+ * analyzed once, the unique ones are dispatched to Azure on a small fixed
+ * pool (the pacer in {@link AzureVisionService} keeps the combined call
+ * rate under Azure's TPS limit), and each result is handed to the caller
+ * as soon as it completes.
+ */
+@Service
+public class AzureVisionBatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AzureVisionBatchService.class);
+    private static final String FALLBACK_ERROR = "Image analysis unavailable";
+
+    private final AzureVisionService azureVisionService;
+    private final ImageBufferPool imageBufferPool;
+    private final ExecutorService executor;
+    private final int maxImages;
+    private final long maxUploadBytes;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong imagesReceived = new AtomicLong();
+    private final AtomicLong duplicatesSkipped = new AtomicLong();
+    private final AtomicLong failedImages = new AtomicLong();
+
+    public AzureVisionBatchService(AzureVisionService azureVisionService,
+                                   ImageBufferPool imageBufferPool,
+                                   @Value("${azure.vision.batch.parallelism:4}") int parallelism,
+                                   @Value("${azure.vision.batch.max-images:50}") int maxImages,
+                                   @Value("${azure.vision.max-upload-bytes:16777216}") long maxUploadBytes) {
+        this.azureVisionService = azureVisionService;
+        this.imageBufferPool = imageBufferPool;
+        this.maxImages = maxImages;
+        this.maxUploadBytes = maxUploadBytes;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "azure-vision-batch-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("Azure Vision batch service initialized: parallelism {}, up to {} images per batch",
+            parallelism, maxImages);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public int getMaxImages() {
+        return maxImages;
+    }
+
+    /**
+     * Analyze a batch, reporting each image through onResult (called from
+     * worker threads, possibly concurrently). The future completes once every
+     * image has been reported. An image Azure could not analyze is reported,
+     * with each of its duplicates, as a failure rather than as default values.
+     *
+     * onSkipped receives the number of uploads that cost no billable Azure
+     * call. It is called once on the calling thread, before any analysis
+     * starts, for duplicates of an earlier upload and images that could not
+     * be read. It is then called from the worker threads with 1 for each
+     * distinct image whose analysis fell back. Its duplicates were already
+     * counted in the first call.
+     */
+    public CompletableFuture<Void> analyzeBatch(List<MultipartFile> images, Set<VisionFeature> features,
+                                                Consumer<AzureBatchItemResult> onResult, IntConsumer onSkipped) {
+        if (images.size() > maxImages) {
+            throw new IllegalArgumentException("Batch exceeds the limit of " + maxImages + " images");
+        }
+        batches.incrementAndGet();
+        imagesReceived.addAndGet(images.size());
+
+        // 1. Group identical uploads so each distinct image costs one analysis
+        Map<ContentHash, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < images.size(); i++) {
+            try (PooledBuffer image = readImage(images.get(i))) {
+                groups.computeIfAbsent(ContentHash.of(image.content()), hash -> new ArrayList<>()).add(i);
+            } catch (ImageTooLargeException | IOException e) {
+                reportFailure(images, i, e.getMessage(), onResult);
+            }
+        }
+        duplicatesSkipped.addAndGet(groups.values().stream().mapToInt(group -> group.size() - 1).sum());
+        logger.info("Batch of {} images: {} distinct", images.size(), groups.size());
+        onSkipped.accept(images.size() - groups.size());
+
+        // 2. Analyze the distinct images concurrently, streaming results as they finish
+        CompletableFuture<?>[] tasks = groups.values().stream()
+            .map(group -> CompletableFuture.runAsync(
+                () -> analyzeGroup(images, group, features, onResult, onSkipped), executor))
+            .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(tasks);
+    }
+
+    /**
+     * Batch statistics for the stats endpoint
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("batches", batches.get());
+        stats.put("imagesReceived", imagesReceived.get());
+        stats.put("duplicatesSkipped", duplicatesSkipped.get());
+        stats.put("failedImages", failedImages.get());
+        return stats;
+    }
+
+    private void analyzeGroup(List<MultipartFile> images, List<Integer> group, Set<VisionFeature> features,
+                              Consumer<AzureBatchItemResult> onResult, IntConsumer onSkipped) {
+        int first = group.get(0);
+        AzureVisionService.Analysis analysis;
+        try (PooledBuffer image = readImage(images.get(first))) {
+            analysis = azureVisionService.analyze(image, features);
+        } catch (ImageTooLargeException | IOException e) {
+            for (int index : group) {
+                reportFailure(images, index, e.getMessage(), onResult);
+            }
+            return;
+        }
+
+        // Default values in place of an analysis are a failure for every copy of the image
+        if (analysis.fallback()) {
+            onSkipped.accept(1);
+            for (int index : group) {
+                reportFailure(images, index, FALLBACK_ERROR, onResult);
+            }
+            return;
+        }
+        for (int index : group) {
+            onResult.accept(AzureBatchItemResult.success(index, images.get(index).getOriginalFilename(),
+                index != first, analysis.response()));
+        }
+    }
+
+    private PooledBuffer readImage(MultipartFile image) throws IOException {
+        if (image.getSize() > maxUploadBytes) {
+            throw new ImageTooLargeException(maxUploadBytes);
+        }
+        try (InputStream in = image.getInputStream()) {
+            return imageBufferPool.readFully(in, image.getSize(), maxUploadBytes);
+        }
+    }
+
+    private void reportFailure(List<MultipartFile> images, int index, String error, Consumer<AzureBatchItemResult> onResult) {
+        failedImages.incrementAndGet();
+        logger.warn("Batch image {} failed: {}", index, error);
+        onResult.accept(AzureBatchItemResult.failure(index, images.get(index).getOriginalFilename(), error));
+    }
+}
@@ -1,22 +1,45 @@
 package com.shtilmanilan.ai_promote_backend.service.azure;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.shtilmanilan.ai_promote_backend.model.azure.AzureAnalyzeResult;
 import com.shtilmanilan.ai_promote_backend.model.azure.AzureVisionResponse;
 import com.shtilmanilan.ai_promote_backend.model.azure.AzureFlierConfig;
 import com.shtilmanilan.ai_promote_backend.model.azure.AzureFlierInfo;
+import com.shtilmanilan.ai_promote_backend.service.cache.HammingIndex;
+import com.shtilmanilan.ai_promote_backend.service.cache.TtlCache;
+import com.shtilmanilan.ai_promote_backend.service.image.ContentHash;
+import com.shtilmanilan.ai_promote_backend.service.image.ImageBufferPool;
+import com.shtilmanilan.ai_promote_backend.service.image.ImageDecoder;
+import com.shtilmanilan.ai_promote_backend.service.image.ImageDownscaler;
+import com.shtilmanilan.ai_promote_backend.service.image.Palette;
+import com.shtilmanilan.ai_promote_backend.service.image.PaletteExtractor;
+import com.shtilmanilan.ai_promote_backend.service.image.ImageTooLargeException;
+import com.shtilmanilan.ai_promote_backend.service.image.PerceptualHash;
+import com.shtilmanilan.ai_promote_backend.service.image.PooledBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
+import org.springframework.http.StreamingHttpOutputMessage;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.RequestCallback;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 import jakarta.annotation.PostConstruct;
-import java.util.Base64;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class AzureVisionService {
@@ -29,7 +52,63 @@ public class AzureVisionService {
     @Value("${azure.vision.key}")
     private String key;
 
+    @Value("${azure.vision.max-upload-bytes:16777216}")
+    private long maxUploadBytes;
+
+    @Value("${azure.vision.near-duplicate.enabled:true}")
+    private boolean nearDuplicateEnabled;
+
+    @Value("${azure.vision.near-duplicate.max-distance:6}")
+    private int nearDuplicateMaxDistance;
+
+    @Value("${azure.vision.local-palette.enabled:true}")
+    private boolean localPaletteEnabled;
+
+    // Palette sampling is bounded, so a small decode is enough for colour-only requests
+    private static final int PALETTE_DECODE_EDGE = 512;
+
+    private static final Set<VisionFeature> COLOR_ONLY = EnumSet.of(VisionFeature.COLOR);
+    private static final int FULL_MASK = VisionFeature.mask(VisionFeature.ALL);
+
     private final RestTemplate restTemplate = new RestTemplate();
+    private final ObjectReader analyzeResultReader = new ObjectMapper().readerFor(AzureAnalyzeResult.class);
+    private final ImageBufferPool imageBufferPool;
+    private final ImageDownscaler imageDownscaler;
+    private final PaletteExtractor paletteExtractor;
+
+    private final int cacheMaxEntries;
+    private final long cacheTtlMinutes;
+
+    // Shared by single and batch requests so together they respect Azure's TPS limit
+    private final AzureRequestPacer requestPacer;
+
+    // Successful analyses keyed by image content and feature set; callers only ever get copies
+    private final TtlCache<CacheKey, AzureVisionResponse> resultCache;
+    // Same results keyed by perceptual hash (one index per feature set), for re-cropped or re-compressed copies
+    private final Map<Integer, HammingIndex<AzureVisionResponse>> nearDuplicateIndexes = new ConcurrentHashMap<>();
+    // Azure calls per visualFeatures query
+    private final Map<String, AtomicLong> azureQueries = new ConcurrentHashMap<>();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong nearDuplicateHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong latencySavedNanos = new AtomicLong();
+    private final AtomicLong azureCalls = new AtomicLong();
+    private final AtomicLong azureLatencyNanos = new AtomicLong();
+
+    public AzureVisionService(ImageBufferPool imageBufferPool,
+                              ImageDownscaler imageDownscaler,
+                              PaletteExtractor paletteExtractor,
+                              @Value("${azure.vision.cache.max-entries:256}") int cacheMaxEntries,
+                              @Value("${azure.vision.cache.ttl-minutes:30}") long cacheTtlMinutes,
+                              @Value("${azure.vision.max-tps:10}") double maxTransactionsPerSecond) {
+        this.imageBufferPool = imageBufferPool;
+        this.imageDownscaler = imageDownscaler;
+        this.paletteExtractor = paletteExtractor;
+        this.cacheMaxEntries = cacheMaxEntries;
+        this.cacheTtlMinutes = cacheTtlMinutes;
+        this.resultCache = new TtlCache<>(cacheMaxEntries, cacheTtlMinutes, TimeUnit.MINUTES);
+        this.requestPacer = new AzureRequestPacer(maxTransactionsPerSecond);
+    }
 
     @PostConstruct
     public void init() {
@@ -38,111 +117,356 @@ public class AzureVisionService {
         logger.info("Key: {}", key != null ? "***" : "null");
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Analyze a base64 image, optionally prefixed with a data URL header
+     */
     public AzureVisionResponse analyzeImage(String base64Image) {
-        logger.info("Starting image analysis...");
-        logger.info("Base64 image starts with: {}", base64Image.substring(0, Math.min(50, base64Image.length())));
+        return analyzeImage(base64Image, VisionFeature.ALL);
+    }
+
+    /**
+     * Analyze a base64 image for the requested features only
+     */
+    public AzureVisionResponse analyzeImage(String base64Image, Set<VisionFeature> features) {
+        logger.info("Starting image analysis ({} base64 chars)...", base64Image.length());
+
+        // Skip the data URL prefix if present (no substring copy of the payload)
+        int dataStart = base64Image.indexOf(',') + 1;
+        checkUploadSize((long) (base64Image.length() - dataStart) / 4 * 3);
 
+        PooledBuffer imageBuffer;
         try {
-            // Remove the data URL prefix if present
-            String imageData = base64Image.contains(",") 
-                ? base64Image.split(",")[1] 
-                : base64Image;
+            // Decode base64 straight into pooled off-heap memory
+            imageBuffer = imageBufferPool.decodeBase64(base64Image, dataStart);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid base64 image data: {}", e.getMessage());
+            return createFallbackResponse();
+        }
 
-            logger.info("Image data after processing: {}", imageData.substring(0, Math.min(50, imageData.length())));
+        try (imageBuffer) {
+            return analyzeImage(imageBuffer, features);
+        }
+    }
 
-            // Decode base64 to bytes
-            byte[] imageBytes = Base64.getDecoder().decode(imageData);
-            logger.info("Decoded image bytes length: {}", imageBytes.length);
+    /**
+     * Analyze a raw binary image upload (octet-stream body or multipart part).
+     * The stream is copied into pooled memory in small chunks and rejected as
+     * soon as it exceeds the configured maximum size.
+     */
+    public AzureVisionResponse analyzeImage(InputStream imageStream, long contentLength,
+                                            Set<VisionFeature> features) throws IOException {
+        logger.info("Starting binary image analysis ({} bytes declared)...", contentLength);
+        checkUploadSize(contentLength);
 
-            // Prepare headers
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-            headers.set("Ocp-Apim-Subscription-Key", key);
+        try (PooledBuffer imageBuffer = imageBufferPool.readFully(imageStream, contentLength, maxUploadBytes)) {
+            return analyzeImage(imageBuffer, features);
+        }
+    }
+
+    /**
+     * Full analysis of decoded image bytes. The caller keeps ownership of the buffer.
+     */
+    public AzureVisionResponse analyzeImage(PooledBuffer imageBuffer) {
+        return analyzeImage(imageBuffer, VisionFeature.ALL);
+    }
 
-            // Prepare request body
-            HttpEntity<byte[]> request = new HttpEntity<>(imageBytes, headers);
+    /**
+     * Analyze decoded image bytes for the requested features. The caller keeps
+     * ownership of the buffer. If Azure cannot be reached the result holds
+     * default values; use {@link #analyze} to tell the two apart.
+     */
+    public AzureVisionResponse analyzeImage(PooledBuffer imageBuffer, Set<VisionFeature> features) {
+        return analyze(imageBuffer, features).response();
+    }
+
+    /**
+     * Analyze decoded image bytes for the requested features, reporting
+     * whether the response is a fallback. The caller keeps ownership of the buffer.
+     *
+     * Colour-only requests are answered by the local palette engine. Otherwise
+     * Azure is asked for the smallest visualFeatures set that covers the
+     * request. Results are cached per feature set: identical bytes hit the
+     * result cache, near-identical images the perceptual-hash index, and a
+     * cached full analysis satisfies any narrower request. Cached results are
+     * never handed out: every caller gets its own copy to modify. Fallbacks
+     * are never cached, so a later call may still succeed.
+     */
+    public Analysis analyze(PooledBuffer imageBuffer, Set<VisionFeature> features) {
+        if (features.isEmpty()) {
+            throw new IllegalArgumentException("No vision features requested");
+        }
+        if (localPaletteEnabled && features.equals(COLOR_ONLY)) {
+            AzureVisionResponse local = analyzeColorsLocally(imageBuffer);
+            if (local != null) {
+                return new Analysis(local, false);
+            }
+        }
+
+        int featureMask = VisionFeature.mask(features);
+        ContentHash contentHash = ContentHash.of(imageBuffer.content());
+        AzureVisionResponse cached = findCached(contentHash, featureMask);
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            latencySavedNanos.addAndGet(averageAzureLatencyNanos());
+            logger.info("Serving cached analysis for image {} ({} bytes)",
+                Long.toHexString(contentHash.hash()), contentHash.length());
+            return new Analysis(copyOf(cached), false);
+        }
+
+        // One subsampled decode feeds the perceptual hash, the palette and the downscaler
+        BufferedImage decoded = decodeForAnalysis(imageBuffer);
+        // A colour-only request only gets here when the local engine failed it; Azure then has
+        // to supply the colours, or the query would ask it for nothing
+        boolean localColors = localPaletteEnabled && decoded != null && features.contains(VisionFeature.COLOR)
+            && !features.equals(COLOR_ONLY);
+        Long perceptualHash = nearDuplicateEnabled && decoded != null ? PerceptualHash.dHash(decoded) : null;
+        if (perceptualHash != null) {
+            HammingIndex.Match<AzureVisionResponse> match = findNearDuplicate(perceptualHash, featureMask);
+            if (match != null) {
+                nearDuplicateHits.incrementAndGet();
+                latencySavedNanos.addAndGet(averageAzureLatencyNanos());
+                // Reuse Azure's scene analysis, but colours come from this image's own palette
+                AzureVisionResponse result = copyOf(match.value());
+                if (localColors) {
+                    result.setColors(toColors(paletteExtractor.extract(decoded)));
+                }
+                resultCache.put(new CacheKey(contentHash, featureMask), result);
+                logger.info("Serving analysis of a near-duplicate image (distance {} bits)", match.distance());
+                return new Analysis(copyOf(result), false);
+            }
+        }
+        cacheMisses.incrementAndGet();
+
+        String visualFeatures = VisionFeature.toAzureQuery(features, localColors);
+        azureQueries.computeIfAbsent(visualFeatures, k -> new AtomicLong()).incrementAndGet();
+
+        try (PooledBuffer upload = imageDownscaler.downscale(imageBuffer, decoded)) {
+            logger.info("Decoded image bytes length: {}, uploading {}", imageBuffer.size(), upload.size());
+            requestPacer.acquire();
+            long start = System.nanoTime();
 
             // Build URL with parameters - replace deprecated fromHttpUrl with fromUriString
             String cleanEndpoint = endpoint.replace("\"", "");
             String url = UriComponentsBuilder.fromUriString(cleanEndpoint)
                 .path("/vision/v3.1/analyze")
-                .queryParam("visualFeatures", "Categories,Description,Color,Objects")
-                .queryParam("details", "Landmarks")
+                .queryParam("visualFeatures", visualFeatures)
                 .queryParam("language", "en")
                 .toUriString();
 
             logger.info("Making request to URL: {}", url);
 
-            // Make the API call with proper type casting
-            Map<String, Object> response = restTemplate.postForObject(
+            // Make the API call, streaming the image body from the pooled buffer and
+            // parsing the response straight off the socket into typed records
+            AzureAnalyzeResult analysis = restTemplate.execute(
                 url,
-                request,
-                Map.class
+                HttpMethod.POST,
+                imageUploadCallback(upload),
+                response -> analyzeResultReader.readValue(response.getBody())
             );
 
+            azureCalls.incrementAndGet();
+            azureLatencyNanos.addAndGet(System.nanoTime() - start);
+
             logger.info("Received response from Azure Vision API");
-            logger.info("Raw Azure response: {}", response);
+            logger.debug("Azure response: {}", analysis);
             
-            // Process the response
-            return processResponse(response);
+            // Process the response; only real results are cached, never the fallback
+            AzureVisionResponse result = processResponse(analysis);
+            if (localColors) {
+                // Exact palette colours instead of Azure's colour names mapped through the hex table
+                result.setColors(toColors(paletteExtractor.extract(decoded)));
+            }
+            resultCache.put(new CacheKey(contentHash, featureMask), result);
+            if (perceptualHash != null) {
+                nearDuplicateIndex(featureMask).put(perceptualHash, result);
+            }
+            return new Analysis(copyOf(result), false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while waiting for an Azure request slot");
+            return new Analysis(createFallbackResponse(), true);
         } catch (Exception e) {
             logger.error("Error in analyzeImage: {}", e.getMessage(), e);
-            
-            // Create a fallback response with default values
-            logger.warn("Creating fallback response due to Azure API error");
-            AzureVisionResponse fallback = new AzureVisionResponse();
-            fallback.setSceneType("general");
-            fallback.setDescription("Image analysis unavailable");
-            fallback.setBusinessType("general business");
-            fallback.setObjects(new String[]{"general"});
-            
-            // Create default colors
-            AzureVisionResponse.Colors defaultColors = new AzureVisionResponse.Colors();
-            defaultColors.setPrimary("#2196F3");
-            defaultColors.setSecondary("#FF9800");
-            defaultColors.setAccent("#4CAF50");
-            defaultColors.setBackground("#FFFFFF");
-            defaultColors.setDominantColors(java.util.Arrays.asList("#2196F3", "#FF9800", "#4CAF50"));
-            fallback.setColors(defaultColors);
-            
-            return fallback;
+            return new Analysis(createFallbackResponse(), true);
+        }
+    }
+
+    /**
+     * Colour-only analysis by the local palette engine - no Azure call and
+     * fast enough not to need caching. Null if the image cannot be decoded.
+     */
+    private AzureVisionResponse analyzeColorsLocally(PooledBuffer imageBuffer) {
+        try {
+            BufferedImage image = ImageDecoder.decode(imageBuffer, PALETTE_DECODE_EDGE);
+            if (image == null) {
+                logger.warn("Unsupported image format for local colour analysis");
+                return null;
+            }
+            AzureVisionResponse result = new AzureVisionResponse();
+            result.setColors(toColors(paletteExtractor.extract(image)));
+            return result;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Local colour analysis failed: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Cached result for this feature set, or a cached full analysis which covers it
+     */
+    private AzureVisionResponse findCached(ContentHash contentHash, int featureMask) {
+        AzureVisionResponse cached = resultCache.get(new CacheKey(contentHash, featureMask));
+        if (cached == null && featureMask != FULL_MASK) {
+            cached = resultCache.get(new CacheKey(contentHash, FULL_MASK));
+        }
+        return cached;
+    }
+
+    private HammingIndex.Match<AzureVisionResponse> findNearDuplicate(long perceptualHash, int featureMask) {
+        HammingIndex.Match<AzureVisionResponse> match =
+            nearDuplicateIndex(featureMask).findNearest(perceptualHash, nearDuplicateMaxDistance);
+        if (match == null && featureMask != FULL_MASK) {
+            match = nearDuplicateIndex(FULL_MASK).findNearest(perceptualHash, nearDuplicateMaxDistance);
+        }
+        return match;
+    }
+
+    private HammingIndex<AzureVisionResponse> nearDuplicateIndex(int featureMask) {
+        return nearDuplicateIndexes.computeIfAbsent(featureMask,
+            mask -> new HammingIndex<>(cacheMaxEntries, cacheTtlMinutes, TimeUnit.MINUTES));
+    }
+
+    /**
+     * Subsampled decode at the downscaler's size, or null if the image cannot be
+     * decoded locally (Azure may still accept it, so it is uploaded unchanged)
+     */
+    private BufferedImage decodeForAnalysis(PooledBuffer imageBuffer) {
+        try {
+            return ImageDecoder.decode(imageBuffer, imageDownscaler.getDecodeEdge());
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Could not decode image locally: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Deep copy, so a caller changing its result cannot change a cached one
+     */
+    private static AzureVisionResponse copyOf(AzureVisionResponse source) {
+        AzureVisionResponse copy = new AzureVisionResponse();
+        copy.setSceneType(source.getSceneType());
+        copy.setObjects(source.getObjects() != null ? source.getObjects().clone() : null);
+        copy.setAtmosphere(source.getAtmosphere());
+        copy.setLighting(source.getLighting());
+        copy.setDescription(source.getDescription());
+        copy.setBusinessType(source.getBusinessType());
+        copy.setError(source.getError());
+        AzureVisionResponse.Colors colors = source.getColors();
+        if (colors != null) {
+            AzureVisionResponse.Colors colorsCopy = new AzureVisionResponse.Colors();
+            colorsCopy.setPrimary(colors.getPrimary());
+            colorsCopy.setSecondary(colors.getSecondary());
+            colorsCopy.setAccent(colors.getAccent());
+            colorsCopy.setBackground(colors.getBackground());
+            colorsCopy.setDominantColors(colors.getDominantColors() != null
+                ? new ArrayList<>(colors.getDominantColors()) : null);
+            colorsCopy.setSemanticColors(colors.getSemanticColors());
+            copy.setColors(colorsCopy);
+        }
+        return copy;
+    }
+
+    private AzureVisionResponse.Colors toColors(Palette palette) {
+        AzureVisionResponse.Colors colors = new AzureVisionResponse.Colors();
+        colors.setPrimary(palette.primary().hex());
+        colors.setSecondary(palette.secondary().hex());
+        colors.setAccent(palette.accent().hex());
+        colors.setBackground(palette.background().hex());
+        colors.setDominantColors(palette.hexColors());
+        logger.info("🎨 Local palette - Primary: {}, Secondary: {}, Accent: {}, Background: {}",
+            colors.getPrimary(), colors.getSecondary(), colors.getAccent(), colors.getBackground());
+        return colors;
+    }
+
+    private long averageAzureLatencyNanos() {
+        long calls = azureCalls.get();
+        return calls == 0 ? 0 : azureLatencyNanos.get() / calls;
+    }
+
+    private void checkUploadSize(long imageBytes) {
+        if (imageBytes > maxUploadBytes) {
+            logger.warn("Rejecting image of {} bytes (limit {})", imageBytes, maxUploadBytes);
+            throw new ImageTooLargeException(maxUploadBytes);
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private AzureVisionResponse processResponse(Map<String, Object> response) {
+    private AzureVisionResponse createFallbackResponse() {
+        // Create a fallback response with default values
+        logger.warn("Creating fallback response due to Azure API error");
+        AzureVisionResponse fallback = new AzureVisionResponse();
+        fallback.setSceneType("general");
+        fallback.setDescription("Image analysis unavailable");
+        fallback.setBusinessType("general business");
+        fallback.setObjects(new String[]{"general"});
+        
+        // Create default colors
+        AzureVisionResponse.Colors defaultColors = new AzureVisionResponse.Colors();
+        defaultColors.setPrimary("#2196F3");
+        defaultColors.setSecondary("#FF9800");
+        defaultColors.setAccent("#4CAF50");
+        defaultColors.setBackground("#FFFFFF");
+        defaultColors.setDominantColors(java.util.Arrays.asList("#2196F3", "#FF9800", "#4CAF50"));
+        fallback.setColors(defaultColors);
+        
+        return fallback;
+    }
+
+    /**
+     * Write the image to the Azure request body without copying it onto the heap
+     */
+    private RequestCallback imageUploadCallback(PooledBuffer imageBuffer) {
+        return request -> {
+            HttpHeaders headers = request.getHeaders();
+            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+            headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+            headers.setContentLength(imageBuffer.size());
+            headers.set("Ocp-Apim-Subscription-Key", key);
+
+            if (request instanceof StreamingHttpOutputMessage streamingRequest) {
+                streamingRequest.setBody(imageBuffer::writeTo);
+            } else {
+                imageBuffer.writeTo(request.getBody());
+            }
+        };
+    }
+
+    private AzureVisionResponse processResponse(AzureAnalyzeResult response) {
         AzureVisionResponse result = new AzureVisionResponse();
         
         // Process categories
-        if (response.containsKey("categories")) {
-            List<Map<String, Object>> categories = (List<Map<String, Object>>) response.get("categories");
-            if (!categories.isEmpty()) {
-                Map<String, Object> firstCategory = categories.get(0);
-                result.setSceneType((String) firstCategory.get("name"));
-            }
+        if (response.categories() != null && !response.categories().isEmpty()) {
+            result.setSceneType(response.categories().get(0).name());
         }
 
         // Process objects
-        if (response.containsKey("objects")) {
-            List<Map<String, Object>> objects = (List<Map<String, Object>>) response.get("objects");
-            result.setObjects(objects.stream()
-                .map(obj -> (String) obj.get("object"))
+        if (response.objects() != null) {
+            result.setObjects(response.objects().stream()
+                .map(AzureAnalyzeResult.DetectedObject::object)
                 .toArray(String[]::new));
         }
 
         // SIMPLIFIED COLORS - Trust Azure Vision, simple fallbacks only
-        if (response.containsKey("color")) {
-            Map<String, Object> colorData = (Map<String, Object>) response.get("color");
+        if (response.color() != null) {
+            AzureAnalyzeResult.ColorInfo colorData = response.color();
             AzureVisionResponse.Colors colors = new AzureVisionResponse.Colors();
             
-            logger.info("🎨 Processing Azure color data: {}", colorData);
+            logger.debug("🎨 Processing Azure color data: {}", colorData);
             
             // Get Azure's color analysis
-            String foregroundColor = (String) colorData.get("dominantColorForeground");
-            String backgroundColor = (String) colorData.get("dominantColorBackground");
-            List<String> dominantColorNames = (List<String>) colorData.get("dominantColors");
-            String accentColor = (String) colorData.get("accentColor");
+            String foregroundColor = colorData.dominantColorForeground();
+            String backgroundColor = colorData.dominantColorBackground();
+            List<String> dominantColorNames = colorData.dominantColors();
+            String accentColor = colorData.accentColor();
             
             // Convert color names to hex
             List<String> dominantColorsHex = new ArrayList<>();
@@ -168,11 +492,10 @@ public class AzureVisionService {
         }
 
         // Process description
-        if (response.containsKey("description")) {
-            Map<String, Object> description = (Map<String, Object>) response.get("description");
-            List<Map<String, Object>> captions = (List<Map<String, Object>>) description.get("captions");
+        if (response.description() != null) {
+            List<AzureAnalyzeResult.Caption> captions = response.description().captions();
             if (captions != null && !captions.isEmpty()) {
-                result.setDescription((String) captions.get(0).get("text"));
+                result.setDescription(captions.get(0).text());
             }
         }
 
@@ -218,6 +541,43 @@ public class AzureVisionService {
         return "general business";
     }
     
+    /**
+     * Analysis pipeline statistics for the stats endpoint
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new java.util.LinkedHashMap<>();
+
+        long hits = cacheHits.get() + nearDuplicateHits.get();
+        long lookups = hits + cacheMisses.get();
+        Map<String, Object> cache = new java.util.LinkedHashMap<>();
+        cache.put("entries", resultCache.size());
+        cache.put("hits", hits);
+        cache.put("exactHits", cacheHits.get());
+        cache.put("nearDuplicateHits", nearDuplicateHits.get());
+        cache.put("nearDuplicateEntries", nearDuplicateIndexes.values().stream().mapToInt(HammingIndex::size).sum());
+        cache.put("nearDuplicateRebuilds", nearDuplicateIndexes.values().stream().mapToLong(HammingIndex::getRebuilds).sum());
+        cache.put("misses", lookups - hits);
+        cache.put("hitRate", lookups == 0 ? 0.0 : (double) hits / lookups);
+        cache.put("evictions", resultCache.getEvictions());
+        cache.put("latencySavedMillis", TimeUnit.NANOSECONDS.toMillis(latencySavedNanos.get()));
+        cache.put("avgAzureLatencyMillis", TimeUnit.NANOSECONDS.toMillis(averageAzureLatencyNanos()));
+        stats.put("resultCache", cache);
+
+        Map<String, Object> queries = new java.util.TreeMap<>();
+        azureQueries.forEach((query, count) -> queries.put(query, count.get()));
+        stats.put("azureQueries", queries);
+
+        Map<String, Object> pacing = new java.util.LinkedHashMap<>();
+        pacing.put("pacedCalls", requestPacer.getPacedCalls());
+        pacing.put("delayedCalls", requestPacer.getDelayedCalls());
+        pacing.put("totalWaitMillis", requestPacer.getTotalWaitMillis());
+        stats.put("pacing", pacing);
+        stats.put("downscaler", imageDownscaler.getStats());
+        stats.put("palette", paletteExtractor.getStats());
+        stats.put("bufferPool", imageBufferPool.getStats());
+        return stats;
+    }
+
     /**
      * Debug method to test color name mappings
      */
@@ -316,4 +676,14 @@ public class AzureVisionService {
 
         return config;
     }
-} 
\ No newline at end of file
+
+    /**
+     * Result of {@link #analyze}; fallback is true when Azure could not be
+     * reached and response holds default values instead of an analysis
+     */
+    public record Analysis(AzureVisionResponse response, boolean fallback) {
+    }
+
+    private record CacheKey(ContentHash content, int features) {
+    }
+}
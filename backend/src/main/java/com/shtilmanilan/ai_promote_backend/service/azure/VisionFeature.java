@@ -0,0 +1,88 @@
+package com.shtilmanilan.ai_promote_backend.service.azure;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Parts of an {@link com.shtilmanilan.ai_promote_backend.model.azure.AzureVisionResponse}
+ * a caller can ask for, and the Azure Vision visualFeatures each one needs.
+ * Requesting fewer features lets Azure skip work and shrinks its response.
+ */
+public enum VisionFeature {
+
+    CATEGORIES(List.of("Categories")),       // sceneType
+    DESCRIPTION(List.of("Description")),     // description
+    COLOR(List.of("Color")),                 // colors (answered locally when possible)
+    OBJECTS(List.of("Objects")),             // objects
+    BUSINESS_TYPE(List.of("Categories", "Objects")); // derived from scene type and objects
+
+    public static final Set<VisionFeature> ALL = Collections.unmodifiableSet(EnumSet.allOf(VisionFeature.class));
+
+    // Azure's canonical order, so equal feature sets always build the same query
+    private static final List<String> AZURE_ORDER = List.of("Categories", "Description", "Color", "Objects");
+
+    private final List<String> azureFeatures;
+
+    VisionFeature(List<String> azureFeatures) {
+        this.azureFeatures = azureFeatures;
+    }
+
+    /**
+     * Parse a comma-separated list such as "color,businessType".
+     * Blank means everything; unknown names and lists naming no feature,
+     * such as ",", are rejected.
+     */
+    public static Set<VisionFeature> parse(String features) {
+        if (features == null || features.isBlank()) {
+            return ALL;
+        }
+        EnumSet<VisionFeature> parsed = EnumSet.noneOf(VisionFeature.class);
+        for (String name : features.split(",")) {
+            String normalized = name.trim().replace("_", "").replace("-", "").toLowerCase(Locale.ROOT);
+            VisionFeature match = null;
+            for (VisionFeature feature : values()) {
+                String candidate = feature.name().replace("_", "").toLowerCase(Locale.ROOT);
+                // Singular and plural both accepted: color/colors, object/objects
+                if (candidate.equals(normalized) || (candidate + "s").equals(normalized)
+                        || candidate.equals(normalized + "s")) {
+                    match = feature;
+                }
+            }
+            if (match == null) {
+                throw new IllegalArgumentException("Unknown vision feature: " + name.trim());
+            }
+            parsed.add(match);
+        }
+        if (parsed.isEmpty()) {
+            throw new IllegalArgumentException("No vision features in: " + features);
+        }
+        return parsed;
+    }
+
+    /**
+     * Bit mask of a feature set, for cache keys
+     */
+    public static int mask(Set<VisionFeature> features) {
+        int mask = 0;
+        for (VisionFeature feature : features) {
+            mask |= 1 << feature.ordinal();
+        }
+        return mask;
+    }
+
+    /**
+     * Smallest visualFeatures value covering the set; Color is left out when
+     * colours are produced locally. Empty if Azure is not needed at all.
+     */
+    public static String toAzureQuery(Set<VisionFeature> features, boolean localColors) {
+        Set<String> needed = features.stream()
+            .filter(feature -> !(feature == COLOR && localColors))
+            .flatMap(feature -> feature.azureFeatures.stream())
+            .collect(Collectors.toSet());
+        return AZURE_ORDER.stream().filter(needed::contains).collect(Collectors.joining(","));
+    }
+}
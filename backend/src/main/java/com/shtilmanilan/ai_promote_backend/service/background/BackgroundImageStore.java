@@ -0,0 +1,369 @@
+package com.shtilmanilan.ai_promote_backend.service.background;
+
+import com.shtilmanilan.ai_promote_backend.service.image.PooledBuffer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background Image Store
+ *
+ * Write-behind persistence for generated background images.
+ * Images are published to an in-memory hot cache immediately and flushed to
+ * disk by a single writer thread, so disk latency never blocks generation.
+ *
+ * Features:
+ * - Hot cache serving of images that are not yet on disk
+ * - Images stay in pooled off-heap buffers until flushed
+ * - AsynchronousFileChannel writes issued concurrently per batch
+ * - One fsync pass per batch instead of per image
+ * - Synchronous write when the queue is full (backpressure)
+ * - Failed writes retried with exponential backoff, then given up; images
+ *   awaiting a retry are capped in memory, oldest dropped first
+ *
+ * @author AI-Promote Team
+ */
+@Service
+public class BackgroundImageStore {
+
+    @Value("${background.images.path:C:/Users/ishti/JS-AI-PROMOTE/generated-backgrounds}")
+    private String backgroundImagesPath;
+
+    @Value("${background.images.flush-batch-size:16}")
+    private int flushBatchSize;
+
+    @Value("${background.images.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${background.images.max-write-attempts:5}")
+    private int maxWriteAttempts;
+
+    @Value("${background.images.max-pending-mb:128}")
+    private long maxPendingMegabytes;
+
+    private static final long RETRY_BASE_DELAY_MILLIS = 1_000;
+    private static final long RETRY_MAX_DELAY_MILLIS = 60_000;
+
+    // Images accepted but not yet durable on disk, keyed by filename
+    private final Map<String, PooledBuffer> pendingImages = new ConcurrentHashMap<>();
+    // Failed writes so far per pending image, and those images oldest first
+    private final Map<String, Integer> failedWrites = new ConcurrentHashMap<>();
+    private final Queue<String> retryOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingBytes = new AtomicLong();
+
+    private final AtomicLong imagesFlushed = new AtomicLong();
+    private final AtomicLong batchesFlushed = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private final AtomicLong synchronousWrites = new AtomicLong();
+    private final AtomicLong maxBatchFlushMillis = new AtomicLong();
+    private final AtomicLong writeRetries = new AtomicLong();
+    private final AtomicLong imagesDropped = new AtomicLong();
+
+    private BlockingQueue<String> writeQueue;
+    private Thread writerThread;
+    private ScheduledExecutorService retryScheduler;
+    private volatile boolean running = true;
+
+    @PostConstruct
+    public void init() {
+        writeQueue = new ArrayBlockingQueue<>(queueCapacity);
+        writerThread = new Thread(this::runWriter, "background-image-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "background-image-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        System.out.println("💾 Background image store started (batch size " + flushBatchSize + ")");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        retryScheduler.shutdownNow();
+        try {
+            writerThread.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Anything the writer could not reach before stopping is flushed here
+        if (!pendingImages.isEmpty()) {
+            writeBatch(new ArrayList<>(pendingImages.keySet()));
+        }
+    }
+
+    /**
+     * Publish an image to the hot cache and schedule it for persistence.
+     * Takes ownership of one reference to the buffer, released once the
+     * image is on disk. Returns as soon as the image can be served.
+     */
+    public void store(String filename, PooledBuffer image) {
+        pendingBytes.addAndGet(image.capacity());
+        PooledBuffer previous = pendingImages.put(filename, image);
+        if (previous != null) {
+            pendingBytes.addAndGet(-previous.capacity());
+            previous.release();
+        }
+        failedWrites.remove(filename);
+        retryOrder.remove(filename);
+        enforcePendingLimit();
+
+        if (!writeQueue.offer(filename)) {
+            // Writer is saturated - persist on the caller's thread rather than grow unbounded
+            synchronousWrites.incrementAndGet();
+            writeBatch(List.of(filename));
+        }
+    }
+
+    /**
+     * Copy of an image that has not been flushed to disk yet, or null if it is
+     * already durable (or unknown) and should be served from the filesystem.
+     */
+    public byte[] getPendingImage(String filename) {
+        PooledBuffer image = pendingImages.get(filename);
+        if (image == null || !image.tryRetain()) {
+            return null;
+        }
+        try {
+            return image.toByteArray();
+        } finally {
+            image.release();
+        }
+    }
+
+    /**
+     * Open a stored image for reading, from the hot cache if it has not been
+     * flushed yet, otherwise from disk. The caller must close the stream.
+     */
+    public InputStream openImage(String filename) throws IOException {
+        PooledBuffer image = pendingImages.get(filename);
+        if (image != null && image.tryRetain()) {
+            return new FilterInputStream(image.inputStream()) {
+                private boolean closed;
+
+                @Override
+                public void close() {
+                    if (!closed) {
+                        closed = true;
+                        image.release();
+                    }
+                }
+            };
+        }
+        return Files.newInputStream(Paths.get(backgroundImagesPath, filename));
+    }
+
+    /**
+     * Store statistics for the stats endpoint
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pendingImages", pendingImages.size());
+        stats.put("pendingBytes", pendingBytes.get());
+        stats.put("queuedWrites", writeQueue.size());
+        stats.put("imagesFlushed", imagesFlushed.get());
+        stats.put("batchesFlushed", batchesFlushed.get());
+        stats.put("flushFailures", flushFailures.get());
+        stats.put("writeRetries", writeRetries.get());
+        stats.put("imagesDropped", imagesDropped.get());
+        stats.put("synchronousWrites", synchronousWrites.get());
+        stats.put("maxBatchFlushMillis", maxBatchFlushMillis.get());
+        return stats;
+    }
+
+    private void runWriter() {
+        List<String> batch = new ArrayList<>(flushBatchSize);
+        while (running || !writeQueue.isEmpty()) {
+            try {
+                String first = writeQueue.poll(500, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                writeQueue.drainTo(batch, flushBatchSize - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.err.println("❌ Background image writer error: " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Write a batch of images: issue every write, wait for all of them,
+     * then fsync and evict from the hot cache.
+     */
+    private void writeBatch(List<String> filenames) {
+        long start = System.nanoTime();
+        List<PendingWrite> writes = new ArrayList<>(filenames.size());
+
+        // 1. Issue all writes so the OS can overlap them
+        for (String filename : filenames) {
+            PooledBuffer image = pendingImages.get(filename);
+            if (image == null || !image.tryRetain()) {
+                continue;
+            }
+            try {
+                Path imagePath = Paths.get(backgroundImagesPath, filename);
+                AsynchronousFileChannel channel = AsynchronousFileChannel.open(imagePath,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                // Direct buffer - the kernel reads straight from off-heap memory
+                ByteBuffer buffer = image.content();
+                writes.add(new PendingWrite(filename, image, channel, buffer, channel.write(buffer, 0)));
+            } catch (IOException e) {
+                System.err.println("❌ Failed to open " + filename + " for writing: " + e.getMessage());
+                writeFailed(filename, image);
+                image.release();
+            }
+        }
+
+        // 2. Wait for completion, finishing any partial writes
+        for (PendingWrite write : writes) {
+            try {
+                write.future.get();
+                while (write.buffer.hasRemaining()) {
+                    write.channel.write(write.buffer, write.buffer.position()).get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                write.failed = true;
+            } catch (ExecutionException e) {
+                write.failed = true;
+            }
+        }
+
+        // 3. One fsync pass for the whole batch, then release the memory
+        for (PendingWrite write : writes) {
+            try (AsynchronousFileChannel channel = write.channel) {
+                if (!write.failed) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                write.failed = true;
+            }
+
+            if (write.failed) {
+                System.err.println("❌ Failed to persist background image: " + write.filename);
+                writeFailed(write.filename, write.image);
+            } else {
+                if (failedWrites.remove(write.filename) != null) {
+                    retryOrder.remove(write.filename);
+                }
+                removePending(write.filename, write.image);
+                imagesFlushed.incrementAndGet();
+            }
+            write.image.release();
+        }
+
+        batchesFlushed.incrementAndGet();
+        maxBatchFlushMillis.accumulateAndGet(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), Math::max);
+    }
+
+    /**
+     * Keep serving a failed image from memory and schedule another write,
+     * backing off exponentially; give it up after maxWriteAttempts
+     */
+    private void writeFailed(String filename, PooledBuffer image) {
+        flushFailures.incrementAndGet();
+        if (pendingImages.get(filename) != image) {
+            // Replaced or dropped meanwhile - nothing of this image left to persist
+            return;
+        }
+        int failures = failedWrites.merge(filename, 1, Integer::sum);
+        if (failures == 1) {
+            retryOrder.add(filename);
+        }
+        if (failures >= maxWriteAttempts || !running) {
+            drop(filename, image, "after " + failures + " failed writes");
+            return;
+        }
+
+        long delay = Math.min(RETRY_MAX_DELAY_MILLIS, RETRY_BASE_DELAY_MILLIS << Math.min(failures - 1, 16));
+        writeRetries.incrementAndGet();
+        try {
+            retryScheduler.schedule(() -> retry(filename), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down; shutdown() makes the last attempt
+        }
+        enforcePendingLimit();
+    }
+
+    private void retry(String filename) {
+        if (pendingImages.containsKey(filename) && !writeQueue.offer(filename)) {
+            writeBatch(List.of(filename));
+        }
+    }
+
+    /**
+     * Only images waiting for a retry linger in memory, so past the limit the
+     * ones that have been failing longest are given up
+     */
+    private void enforcePendingLimit() {
+        long limit = maxPendingMegabytes << 20;
+        while (pendingBytes.get() > limit) {
+            String oldest = retryOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            PooledBuffer image = pendingImages.get(oldest);
+            if (image != null) {
+                drop(oldest, image, "to stay under the " + maxPendingMegabytes + " MB pending image limit");
+            }
+        }
+    }
+
+    private void drop(String filename, PooledBuffer image, String reason) {
+        failedWrites.remove(filename);
+        retryOrder.remove(filename);
+        if (removePending(filename, image)) {
+            imagesDropped.incrementAndGet();
+            System.err.println("❌ Dropped background image " + filename + " " + reason);
+        }
+    }
+
+    private boolean removePending(String filename, PooledBuffer image) {
+        if (!pendingImages.remove(filename, image)) {
+            return false;
+        }
+        pendingBytes.addAndGet(-image.capacity());
+        image.release();
+        return true;
+    }
+
+    private static class PendingWrite {
+        final String filename;
+        final PooledBuffer image;
+        final AsynchronousFileChannel channel;
+        final ByteBuffer buffer;
+        final Future<Integer> future;
+        boolean failed;
+
+        PendingWrite(String filename, PooledBuffer image, AsynchronousFileChannel channel,
+                     ByteBuffer buffer, Future<Integer> future) {
+            this.filename = filename;
+            this.image = image;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.future = future;
+        }
+    }
+}
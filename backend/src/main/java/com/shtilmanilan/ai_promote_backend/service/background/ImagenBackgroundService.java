@@ -1,13 +1,28 @@
 package com.shtilmanilan.ai_promote_backend.service.background;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.shtilmanilan.ai_promote_backend.model.background.BackgroundGenerationRequest;
 import com.shtilmanilan.ai_promote_backend.model.background.BackgroundOption;
+import com.shtilmanilan.ai_promote_backend.service.image.ImageBufferPool;
+import com.shtilmanilan.ai_promote_backend.service.image.ImageStatistics;
+import com.shtilmanilan.ai_promote_backend.service.image.Palette;
+import com.shtilmanilan.ai_promote_backend.service.image.PaletteExtractor;
+import com.shtilmanilan.ai_promote_backend.service.image.PixelStatistics;
+import com.shtilmanilan.ai_promote_backend.service.image.PooledBuffer;
+import com.shtilmanilan.ai_promote_backend.service.image.PooledBufferOutputStream;
+import com.shtilmanilan.ai_promote_backend.service.image.TextRegionAnalyzer;
+import com.shtilmanilan.ai_promote_backend.service.image.TextRegions;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -18,8 +33,8 @@ import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import javax.imageio.ImageIO;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 import java.awt.Color;
 
 /**
@@ -30,11 +45,14 @@ import java.awt.Color;
  * 
  * Features:
  * - Real PNG image generation via Imagen 3.0
- * - Smart image brightness analysis
+ * - Smart image brightness analysis over every pixel (SIMD kernels)
  * - Automatic text color optimization
+ * - Text-safe region detection with WCAG contrast check
+ * - Local palette extraction for primary/secondary/background colors
  * - Business-specific visual prompting
  * - Parallel image generation for speed
- * - Filesystem caching with HTTP serving
+ * - Streaming base64 decoding of Imagen responses into pooled off-heap buffers
+ * - Write-behind filesystem caching with HTTP serving
  * 
  * Cost: ~$0.04 per image ($0.12 for 3 backgrounds)
  * 
@@ -55,7 +73,26 @@ public class ImagenBackgroundService {
     @Value("${background.images.path:C:/Users/ishti/JS-AI-PROMOTE/generated-backgrounds}")
     private String backgroundImagesPath;
 
+    @Autowired
+    private BackgroundImageStore imageStore;
+
+    @Autowired
+    private ImageBufferPool imageBufferPool;
+
+    @Autowired
+    private PaletteExtractor paletteExtractor;
+
+    @Autowired
+    private TextRegionAnalyzer textRegionAnalyzer;
+
+    @Autowired
+    private PixelStatistics pixelStatistics;
+
     private final RestTemplate restTemplate = new RestTemplate();
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    // A 1024x1024 Imagen PNG is typically 1-2 MB
+    private static final int EXPECTED_IMAGE_BYTES = 2 * 1024 * 1024;
 
     /**
      * Generate 3 background images using Google Imagen 3.0
@@ -124,11 +161,17 @@ public class ImagenBackgroundService {
             String url = "https://generativelanguage.googleapis.com/v1beta/models/imagen-3.0-generate-002:predict?key=" + geminiApiKey;
             
             HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-            @SuppressWarnings("unchecked")
-            Map<String, Object> response = restTemplate.postForObject(url, entity, Map.class);
             
-            // Parse response and save image
-            return parseImagenResponse(response, imageNumber, prompt, request);
+            // Stream the image out of the response body instead of binding it to a Map
+            PooledBuffer image = restTemplate.execute(url, HttpMethod.POST,
+                restTemplate.httpEntityCallback(entity), this::extractImage);
+            
+            // Save image and analyze it
+            try {
+                return createImageBackground(image, imageNumber, prompt, request);
+            } finally {
+                image.release();
+            }
             
         } catch (Exception e) {
             System.err.println("❌ Imagen generation failed for image " + imageNumber + ": " + e.getMessage());
@@ -325,34 +368,44 @@ public class ImagenBackgroundService {
     }
 
     /**
-     * Parse Imagen response and save image to filesystem
+     * Extract the first prediction's image from the Imagen response stream.
+     * The base64 field is decoded while it is read, so the encoded string,
+     * the response Map and an intermediate copy are never materialized.
      */
-    @SuppressWarnings("unchecked")
-    private BackgroundOption parseImagenResponse(Map<String, Object> response, int imageNumber, String prompt, BackgroundGenerationRequest request) {
-        try {
-            List<Map<String, Object>> predictions = (List<Map<String, Object>>) response.get("predictions");
-            
-            if (predictions == null || predictions.isEmpty()) {
-                throw new RuntimeException("No predictions in Imagen response");
+    private PooledBuffer extractImage(ClientHttpResponse response) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(response.getBody())) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.FIELD_NAME && "bytesBase64Encoded".equals(parser.currentName())) {
+                    if (parser.nextToken() != JsonToken.VALUE_STRING) {
+                        break;
+                    }
+                    try (PooledBufferOutputStream imageOut = new PooledBufferOutputStream(imageBufferPool, EXPECTED_IMAGE_BYTES)) {
+                        parser.readBinaryValue(imageOut);
+                        return imageOut.toPooledBuffer();
+                    }
+                }
             }
-            
-            Map<String, Object> prediction = predictions.get(0);
-            String base64Image = (String) prediction.get("bytesBase64Encoded");
-            
-            if (base64Image == null || base64Image.isEmpty()) {
+        }
+        throw new RuntimeException("No image data in Imagen response");
+    }
+
+    /**
+     * Hand the decoded image to the write-behind store and build its BackgroundOption.
+     * The caller keeps its own reference to the image and releases it afterwards.
+     */
+    private BackgroundOption createImageBackground(PooledBuffer image, int imageNumber, String prompt, BackgroundGenerationRequest request) {
+        try {
+            if (image.size() == 0) {
                 throw new RuntimeException("No image data in Imagen response");
             }
             
-            // Decode base64 image
-            byte[] imageBytes = Base64.getDecoder().decode(base64Image);
-            
             // Generate unique filename
             String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
             String filename = String.format("background_%s_%d.png", timestamp, imageNumber);
-            Path imagePath = Paths.get(backgroundImagesPath, filename);
             
-            // Save image to filesystem
-            Files.write(imagePath, imageBytes);
+            // Publish to the hot cache - the disk write happens off the request path
+            imageStore.store(filename, image.retain());
             // Use HTTP URL instead of file:// URL for browser compatibility
             String imageUrl = "http://localhost:8081/api/backgrounds/images/" + filename;
             
@@ -363,8 +416,13 @@ public class ImagenBackgroundService {
             background.setName("AI Generated Background " + imageNumber);
             background.setBackgroundImage(imageUrl);
             
-            // Analyze image for optimal text colors
-            String[] styleAnalysis = analyzeGeneratedBackgroundForTextColors(imageBytes, request, imageNumber);
+            // Decode once for all analysis passes
+            BufferedImage decoded = decodeImage(image);
+            
+            // Find where the text will sit, then pick text colors for that area
+            ImageStatistics statistics = decoded != null ? pixelStatistics.analyze(decoded) : null;
+            TextRegions textRegions = decoded != null ? textRegionAnalyzer.analyze(decoded) : null;
+            String[] styleAnalysis = analyzeGeneratedBackgroundForTextColors(statistics, textRegions, request, imageNumber);
             String aiTextColor = styleAnalysis[0];
             String aiAccentColor = styleAnalysis[1];
             String aiFontFamily = styleAnalysis[2];
@@ -373,6 +431,18 @@ public class ImagenBackgroundService {
             
             background.setTextColor(aiTextColor);
             background.setAccentColor(aiAccentColor);
+            if (textRegions != null) {
+                background.setContrastRatio(Math.round(textRegions.contrastRatio(Color.decode(aiTextColor)) * 100) / 100.0);
+                background.setTextPosition(textRegions.textPosition());
+            }
+            
+            // Palette of the actual generated image
+            if (decoded != null) {
+                Palette palette = paletteExtractor.extract(decoded);
+                background.setPrimaryColor(palette.primary().hex());
+                background.setSecondaryColor(palette.secondary().hex());
+                background.setBackgroundColor(palette.background().hex());
+            }
             
             // Add AI-decided typography to response
             background.setFontFamily(aiFontFamily);
@@ -392,7 +462,7 @@ public class ImagenBackgroundService {
             return background;
             
         } catch (Exception e) {
-            System.err.println("❌ Failed to parse Imagen response: " + e.getMessage());
+            System.err.println("❌ Failed to process Imagen image: " + e.getMessage());
             throw new RuntimeException("Failed to process generated image", e);
         }
     }
@@ -475,17 +545,36 @@ public class ImagenBackgroundService {
         return fallback;
     }
 
+    /**
+     * Decode the generated image, or null if it cannot be read (analysis then uses safe defaults)
+     */
+    private BufferedImage decodeImage(PooledBuffer imageData) {
+        try {
+            return ImageIO.read(new MemoryCacheImageInputStream(imageData.inputStream()));
+        } catch (IOException e) {
+            System.err.println("❌ Error decoding generated background: " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Analyze the actual generated background image for optimal text colors
      * This replaces guessing based on input colors with real image analysis
      */
-    private String[] analyzeGeneratedBackgroundForTextColors(byte[] imageBytes, BackgroundGenerationRequest request, int backgroundNumber) {
+    private String[] analyzeGeneratedBackgroundForTextColors(ImageStatistics statistics, TextRegions textRegions,
+                                                             BackgroundGenerationRequest request, int backgroundNumber) {
         try {
             System.out.println("🔍 Analyzing actual generated background " + backgroundNumber + " for optimal text colors...");
             
             // 1. Analyze the ACTUAL generated background image
-            String actualBackgroundBrightness = analyzeImageBrightness(imageBytes);
-            String dominantBackgroundColor = extractDominantColor(imageBytes);
+            if (statistics == null) {
+                throw new IOException("Unsupported image format");
+            }
+            // Judge brightness where the text will sit rather than over the whole image
+            String actualBackgroundBrightness = textRegions != null
+                ? brightnessCategory(textRegions.brightnessPercent())
+                : analyzeImageBrightness(statistics);
+            String dominantBackgroundColor = extractDominantColor(statistics);
             
             System.out.println("📊 Background " + backgroundNumber + " analysis: brightness=" + actualBackgroundBrightness + 
                              ", dominant=" + dominantBackgroundColor);
@@ -533,7 +622,22 @@ public class ImagenBackgroundService {
                     System.out.println("❓ Unknown brightness → Using safe dark text");
             }
             
-            // 3. Keep existing typography logic for variety
+            // 3. Make sure the chosen text reads on its region (WCAG AA), otherwise flip to the other extreme
+            if (textRegions != null) {
+                double contrast = textRegions.contrastRatio(Color.decode(textColor));
+                if (contrast < TextRegions.WCAG_AA) {
+                    boolean lightText = TextRegions.relativeLuminance(Color.decode(textColor).getRGB()) > 0.5;
+                    String alternative = lightText ? "#1A1A1A" : "#FFFFFF";
+                    if (textRegions.contrastRatio(Color.decode(alternative)) > contrast) {
+                        System.out.println("⚠️ Text contrast " + String.format("%.2f", contrast) + ":1 is below AA → Using " + alternative);
+                        textColor = alternative;
+                        accentColor = lightText ? chooseDarkAccent(dominantBackgroundColor, request)
+                                                : chooseLightAccent(dominantBackgroundColor, request);
+                    }
+                }
+            }
+            
+            // 4. Keep existing typography logic for variety
             String fontFamily = getFontFamilyForSlot(backgroundNumber);
             float fontSize = getFontSizeForSlot(backgroundNumber);
             float bodyFontSize = getBodyFontSizeForSlot(backgroundNumber);
@@ -553,108 +657,42 @@ public class ImagenBackgroundService {
     /**
      * Analyze the brightness of the generated background image with more nuanced results
      */
-    private String analyzeImageBrightness(byte[] imageBytes) {
-        try {
-            BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageBytes));
-            
-            int width = image.getWidth();
-            int height = image.getHeight();
-            
-            // Sample pixels from different areas of the image
-            long totalBrightness = 0;
-            int sampleCount = 0;
-            
-            // Sample every 50th pixel to get a good representation without being too slow
-            for (int y = 0; y < height; y += 50) {
-                for (int x = 0; x < width; x += 50) {
-                    int rgb = image.getRGB(x, y);
-                    Color color = new Color(rgb);
-                    
-                    // Calculate luminance using standard formula
-                    double luminance = (0.299 * color.getRed() + 0.587 * color.getGreen() + 0.114 * color.getBlue()) / 255.0;
-                    totalBrightness += (luminance * 100); // Convert to 0-100 scale
-                    sampleCount++;
-                }
-            }
-            
-            double averageBrightness = (double) totalBrightness / sampleCount;
-            
-            System.out.println("🔍 Image brightness analysis: " + String.format("%.1f", averageBrightness) + "% brightness");
-            
-            // More nuanced brightness categories
-            if (averageBrightness > 75.0) {
-                return "very-light";
-            } else if (averageBrightness > 55.0) {
-                return "light";
-            } else if (averageBrightness > 35.0) {
-                return "medium";
-            } else if (averageBrightness > 15.0) {
-                return "dark";
-            } else {
-                return "very-dark";
-            }
-            
-        } catch (Exception e) {
-            System.err.println("❌ Error analyzing image brightness: " + e.getMessage());
-            return "light"; // Default to light (safer for dark text)
-        }
+    private String analyzeImageBrightness(ImageStatistics statistics) {
+        // Mean luma over every pixel, already on the 0-100 scale
+        double averageBrightness = statistics.brightnessPercent();
+        
+        System.out.println("🔍 Image brightness analysis: " + String.format("%.1f", averageBrightness) + "% brightness");
+        
+        return brightnessCategory(averageBrightness);
     }
 
     /**
-     * Extract the dominant color from the generated background image
+     * More nuanced brightness categories for a 0-100 brightness value
      */
-    private String extractDominantColor(byte[] imageBytes) {
-        try {
-            BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageBytes));
-            
-            // Count color frequencies (simplified approach)
-            Map<Integer, Integer> colorCounts = new HashMap<>();
-            
-            int width = image.getWidth();
-            int height = image.getHeight();
-            
-            // Sample every 100th pixel for performance
-            for (int y = 0; y < height; y += 100) {
-                for (int x = 0; x < width; x += 100) {
-                    int rgb = image.getRGB(x, y);
-                    
-                    // Group similar colors by reducing precision
-                    int groupedRgb = groupSimilarColors(rgb);
-                    colorCounts.put(groupedRgb, colorCounts.getOrDefault(groupedRgb, 0) + 1);
-                }
-            }
-            
-            // Find most frequent color
-            int dominantRgb = colorCounts.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse(0xFFFFFF); // Default to white
-            
-            Color dominantColor = new Color(dominantRgb);
-            String hexColor = String.format("#%02X%02X%02X", 
-                dominantColor.getRed(), dominantColor.getGreen(), dominantColor.getBlue());
-            
-            System.out.println("🎨 Dominant color extracted: " + hexColor);
-            return hexColor;
-            
-        } catch (Exception e) {
-            System.err.println("❌ Error extracting dominant color: " + e.getMessage());
-            return "#CCCCCC"; // Default to neutral gray
+    private String brightnessCategory(double averageBrightness) {
+        if (averageBrightness > 75.0) {
+            return "very-light";
+        } else if (averageBrightness > 55.0) {
+            return "light";
+        } else if (averageBrightness > 35.0) {
+            return "medium";
+        } else if (averageBrightness > 15.0) {
+            return "dark";
+        } else {
+            return "very-dark";
         }
     }
 
     /**
-     * Group similar colors together by reducing color precision
+     * Extract the dominant color from the generated background image
      */
-    private int groupSimilarColors(int rgb) {
-        Color color = new Color(rgb);
-        
-        // Reduce precision by grouping into 32-step increments (256/8 = 32)
-        int r = (color.getRed() / 32) * 32;
-        int g = (color.getGreen() / 32) * 32;
-        int b = (color.getBlue() / 32) * 32;
+    private String extractDominantColor(ImageStatistics statistics) {
+        // Most populated bin of the full-resolution histogram; similar colors are
+        // grouped into 32-step increments per channel (256/8 = 32)
+        String hexColor = String.format("#%06X", statistics.dominantColor());
         
-        return new Color(r, g, b).getRGB();
+        System.out.println("🎨 Dominant color extracted: " + hexColor);
+        return hexColor;
     }
 
     /**
@@ -0,0 +1,144 @@
+package com.shtilmanilan.ai_promote_backend.service.cache;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nearest-neighbour index over 64-bit hashes under Hamming distance, backed
+ * by a BK-tree. Entries expire after a fixed time-to-live and the tree is
+ * rebuilt from its newest live entries once it grows past maxEntries.
+ */
+public class HammingIndex<V> {
+
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    private Node<V> root;
+    // Insertion order, oldest first - used to pick survivors on rebuild
+    private ArrayDeque<Node<V>> nodes = new ArrayDeque<>();
+    private long rebuilds;
+
+    public HammingIndex(int maxEntries, long ttl, TimeUnit unit) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    /**
+     * Closest live value within maxDistance bits of the hash, or null
+     */
+    public synchronized Match<V> findNearest(long hash, int maxDistance) {
+        if (root == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        Node<V> best = null;
+        int bestDistance = maxDistance + 1;
+
+        ArrayDeque<Node<V>> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node<V> node = pending.pop();
+            int distance = Long.bitCount(node.hash ^ hash);
+            if (distance < bestDistance && now - node.expiresAt <= 0) {
+                best = node;
+                bestDistance = distance;
+            }
+            // Triangle inequality: only children at |d - r| .. d + r can hold a match
+            int radius = Math.min(maxDistance, bestDistance - 1);
+            for (int d = Math.max(0, distance - radius); d <= Math.min(64, distance + radius); d++) {
+                Node<V> child = node.children[d];
+                if (child != null) {
+                    pending.push(child);
+                }
+            }
+        }
+        return best == null ? null : new Match<>(best.value, bestDistance);
+    }
+
+    public synchronized void put(long hash, V value) {
+        Node<V> node = new Node<>(hash, value, System.nanoTime() + ttlNanos);
+        if (insert(node)) {
+            nodes.addLast(node);
+        }
+        if (nodes.size() > maxEntries) {
+            rebuild();
+        }
+    }
+
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    public synchronized long getRebuilds() {
+        return rebuilds;
+    }
+
+    /**
+     * Insert into the tree; an identical hash just refreshes the existing node
+     */
+    private boolean insert(Node<V> node) {
+        if (root == null) {
+            root = node;
+            return true;
+        }
+        Node<V> current = root;
+        while (true) {
+            int distance = Long.bitCount(current.hash ^ node.hash);
+            if (distance == 0) {
+                current.value = node.value;
+                current.expiresAt = node.expiresAt;
+                return false;
+            }
+            Node<V> child = current.children[distance];
+            if (child == null) {
+                current.children[distance] = node;
+                return true;
+            }
+            current = child;
+        }
+    }
+
+    /**
+     * BK-trees cannot delete cheaply, so drop expired and oldest entries by rebuilding
+     */
+    private void rebuild() {
+        long now = System.nanoTime();
+        List<Node<V>> survivors = new ArrayList<>(nodes.size());
+        for (Node<V> node : nodes) {
+            if (now - node.expiresAt <= 0) {
+                survivors.add(node);
+            }
+        }
+        int keep = Math.min(survivors.size(), maxEntries * 3 / 4);
+        survivors = survivors.subList(survivors.size() - keep, survivors.size());
+
+        root = null;
+        nodes = new ArrayDeque<>(keep);
+        for (Node<V> old : survivors) {
+            Node<V> node = new Node<>(old.hash, old.value, old.expiresAt);
+            if (insert(node)) {
+                nodes.addLast(node);
+            }
+        }
+        rebuilds++;
+    }
+
+    public record Match<V>(V value, int distance) {
+    }
+
+    private static final class Node<V> {
+        final long hash;
+        V value;
+        long expiresAt;
+        @SuppressWarnings("unchecked")
+        final Node<V>[] children = new Node[65];
+
+        Node(long hash, V value, long expiresAt) {
+            this.hash = hash;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.shtilmanilan.ai_promote_backend.model.ai.TextGenerationRequest;
 import com.shtilmanilan.ai_promote_backend.model.ai.TextGenerationResponse;
+import com.shtilmanilan.ai_promote_backend.service.ProviderQuotaGovernor;
 import com.shtilmanilan.ai_promote_backend.service.groq.GroqService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -26,15 +27,19 @@ import java.util.Map;
 public class ClaudeServiceImpl implements ClaudeService {
     
     private static final Logger logger = LoggerFactory.getLogger(ClaudeServiceImpl.class);
+    private static final int MAX_TOKENS = 150;
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final RestTemplate restTemplate = new RestTemplate();
     private final String apiKey;
     private final GroqService groqService;
+    private final ProviderQuotaGovernor.Quota quota;
     
     @Autowired
-    public ClaudeServiceImpl(@Qualifier("claudeApiKey") String claudeApiKey, GroqService groqService) {
+    public ClaudeServiceImpl(@Qualifier("claudeApiKey") String claudeApiKey, GroqService groqService,
+                             ProviderQuotaGovernor quotaGovernor) {
         this.apiKey = claudeApiKey;
         this.groqService = groqService;
+        this.quota = quotaGovernor.quota("claude", claudeApiKey, 50, 20000);
         logger.info("Claude service initialized with API key: {}", apiKey != null ? "present" : "missing");
     }
     
@@ -46,6 +51,14 @@ public class ClaudeServiceImpl implements ClaudeService {
                 return groqService.generateText(request);
             }
             
+            // Reroute before the call rather than after a 429
+            ProviderQuotaGovernor.Permit permit = quota.acquire(
+                ProviderQuotaGovernor.estimateTokens(request.getPrompt(), MAX_TOKENS));
+            if (permit == null) {
+                logger.info("Claude quota exhausted, falling back to Groq");
+                return groqService.generateText(request);
+            }
+            
             try {
                 // Set up headers
                 HttpHeaders headers = new HttpHeaders();
@@ -56,7 +69,7 @@ public class ClaudeServiceImpl implements ClaudeService {
                 // Build request body
                 Map<String, Object> requestBody = new HashMap<>();
                 requestBody.put("model", "claude-3-opus-20240229");
-                requestBody.put("max_tokens", 150);
+                requestBody.put("max_tokens", MAX_TOKENS);
                 requestBody.put("temperature", request.getTemperature());
                 
                 List<Map<String, String>> messages = new ArrayList<>();
@@ -83,6 +96,9 @@ public class ClaudeServiceImpl implements ClaudeService {
                     logger.error("Error parsing Claude API response: {}", e.getMessage());
                     throw new RuntimeException("Error parsing Claude API response", e);
                 }
+                JsonNode usage = responseNode.path("usage");
+                permit.complete(response.getHeaders(), usage.isMissingNode() ? -1
+                    : usage.path("input_tokens").asLong() + usage.path("output_tokens").asLong());
                 
                 String generatedText = responseNode
                     .path("content")
@@ -95,6 +111,7 @@ public class ClaudeServiceImpl implements ClaudeService {
                 textResponse.setGeneratedText(generatedText);
                 return textResponse;
             } catch (Exception e) {
+                permit.fail(e);
                 logger.error("Claude API error: {}", e.getMessage());
                 
                 // Check for rate limit error
@@ -0,0 +1,399 @@
+package com.shtilmanilan.ai_promote_backend.service.flyer;
+
+import java.awt.*;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Translates the CSS the background services emit (hex/rgba colors and
+ * linear/radial gradients, possibly layered) into Java2D paints, so a
+ * BackgroundOption renders on the server the way the browser shows it.
+ *
+ * Only the subset the generators produce is supported; anything else
+ * parses to null and the caller falls back to a solid color.
+ */
+public final class CssPaints {
+
+    private static final Map<String, Color> NAMED_COLORS = Map.ofEntries(
+        Map.entry("transparent", new Color(0, 0, 0, 0)),
+        Map.entry("white", Color.WHITE),
+        Map.entry("black", Color.BLACK),
+        Map.entry("gray", new Color(0x808080)),
+        Map.entry("grey", new Color(0x808080)),
+        Map.entry("red", new Color(0xFF0000)),
+        Map.entry("green", new Color(0x008000)),
+        Map.entry("blue", new Color(0x0000FF)),
+        Map.entry("yellow", new Color(0xFFFF00)),
+        Map.entry("orange", new Color(0xFFA500)),
+        Map.entry("purple", new Color(0x800080)),
+        Map.entry("pink", new Color(0xFFC0CB)),
+        Map.entry("brown", new Color(0xA52A2A)),
+        Map.entry("teal", new Color(0x008080)),
+        Map.entry("navy", new Color(0x000080)),
+        Map.entry("gold", new Color(0xFFD700)),
+        Map.entry("beige", new Color(0xF5F5DC))
+    );
+
+    private CssPaints() {
+    }
+
+    /**
+     * One layer of a CSS background, sized for a concrete canvas
+     */
+    public interface Layer {
+        Paint toPaint(int width, int height);
+    }
+
+    /**
+     * Parse a CSS color (#rgb, #rgba, #rrggbb, #rrggbbaa, rgb(), rgba() or a
+     * basic named color). Returns null when the value is not understood.
+     */
+    public static Color parseColor(String css) {
+        if (css == null) {
+            return null;
+        }
+        String value = css.trim().toLowerCase(Locale.ROOT);
+        try {
+            if (value.startsWith("#")) {
+                return parseHex(value.substring(1));
+            }
+            if (value.startsWith("rgb")) {
+                int open = value.indexOf('(');
+                int close = value.lastIndexOf(')');
+                if (open < 0 || close < open) {
+                    return null;
+                }
+                String[] parts = value.substring(open + 1, close).split("[,\\s/]+");
+                if (parts.length < 3) {
+                    return null;
+                }
+                int alpha = 255;
+                if (parts.length > 3) {
+                    String a = parts[3];
+                    alpha = a.endsWith("%")
+                        ? Math.round(Float.parseFloat(a.substring(0, a.length() - 1)) * 2.55f)
+                        : Math.round(Float.parseFloat(a) * 255);
+                }
+                return new Color(channel(parts[0]), channel(parts[1]), channel(parts[2]), clamp(alpha));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return NAMED_COLORS.get(value);
+    }
+
+    /**
+     * Parse a CSS background value into layers, bottom layer first (CSS lists
+     * the top layer first). Returns an empty list when nothing is understood.
+     */
+    public static List<Layer> parseBackground(String css) {
+        List<Layer> layers = new ArrayList<>();
+        if (css == null || css.isBlank()) {
+            return layers;
+        }
+        List<String> parts = splitTopLevel(css.trim());
+        for (int i = parts.size() - 1; i >= 0; i--) {
+            Layer layer = parseLayer(parts.get(i).trim());
+            if (layer != null) {
+                layers.add(layer);
+            }
+        }
+        return layers;
+    }
+
+    private static Layer parseLayer(String css) {
+        String lower = css.toLowerCase(Locale.ROOT);
+        int open = lower.indexOf('(');
+        if (open < 0 || !lower.endsWith(")")) {
+            Color color = parseColor(css);
+            return color == null ? null : (width, height) -> color;
+        }
+
+        String function = lower.substring(0, open).trim();
+        List<String> arguments = splitTopLevel(css.substring(open + 1, css.length() - 1));
+        if (arguments.isEmpty()) {
+            return null;
+        }
+
+        boolean linear = function.equals("linear-gradient") || function.equals("repeating-linear-gradient");
+        boolean radial = function.equals("radial-gradient") || function.equals("repeating-radial-gradient");
+        if (!linear && !radial) {
+            return null;
+        }
+
+        // Optional leading geometry argument (angle, "to ..." or "circle at ...")
+        String first = arguments.get(0).trim().toLowerCase(Locale.ROOT);
+        String geometry = null;
+        if (parseColor(firstWord(first)) == null) {
+            geometry = first;
+            arguments = arguments.subList(1, arguments.size());
+        }
+
+        List<Stop> stops = parseStops(arguments);
+        if (stops.isEmpty()) {
+            return null;
+        }
+        if (stops.size() == 1) {
+            Color only = stops.get(0).color;
+            return (width, height) -> only;
+        }
+
+        float[] fractions = new float[stops.size()];
+        Color[] colors = new Color[stops.size()];
+        for (int i = 0; i < stops.size(); i++) {
+            fractions[i] = stops.get(i).position;
+            colors[i] = stops.get(i).color;
+        }
+
+        if (linear) {
+            double angle = linearAngle(geometry);
+            return (width, height) -> linearPaint(angle, fractions, colors, width, height);
+        }
+        float[] center = radialCenter(geometry);
+        return (width, height) -> radialPaint(center, fractions, colors, width, height);
+    }
+
+    /**
+     * CSS gradient line: 0deg points up, angles turn clockwise, and the line is
+     * long enough that the corners get the first and last colors exactly
+     */
+    private static Paint linearPaint(double angleDegrees, float[] fractions, Color[] colors, int width, int height) {
+        double angle = Math.toRadians(angleDegrees);
+        double dx = Math.sin(angle);
+        double dy = -Math.cos(angle);
+        double halfLength = (Math.abs(width * dx) + Math.abs(height * dy)) / 2;
+        double cx = width / 2.0;
+        double cy = height / 2.0;
+        Point2D start = new Point2D.Double(cx - dx * halfLength, cy - dy * halfLength);
+        Point2D end = new Point2D.Double(cx + dx * halfLength, cy + dy * halfLength);
+        if (start.distance(end) < 1e-6) {
+            return colors[0];
+        }
+        return new LinearGradientPaint(start, end, fractions, colors);
+    }
+
+    private static Paint radialPaint(float[] center, float[] fractions, Color[] colors, int width, int height) {
+        double cx = center[0] * width;
+        double cy = center[1] * height;
+        // farthest-corner, the CSS default size
+        double radius = Math.max(
+            Math.max(Math.hypot(cx, cy), Math.hypot(width - cx, cy)),
+            Math.max(Math.hypot(cx, height - cy), Math.hypot(width - cx, height - cy)));
+        return new RadialGradientPaint(new Point2D.Double(cx, cy), (float) Math.max(radius, 1), fractions, colors);
+    }
+
+    private static double linearAngle(String geometry) {
+        if (geometry == null) {
+            return 180;
+        }
+        try {
+            if (geometry.endsWith("deg")) {
+                return Double.parseDouble(geometry.substring(0, geometry.length() - 3).trim());
+            }
+            if (geometry.endsWith("turn")) {
+                return Double.parseDouble(geometry.substring(0, geometry.length() - 4).trim()) * 360;
+            }
+            if (geometry.endsWith("rad")) {
+                return Math.toDegrees(Double.parseDouble(geometry.substring(0, geometry.length() - 3).trim()));
+            }
+        } catch (NumberFormatException e) {
+            return 180;
+        }
+        if (geometry.startsWith("to ")) {
+            boolean top = geometry.contains("top");
+            boolean bottom = geometry.contains("bottom");
+            boolean left = geometry.contains("left");
+            boolean right = geometry.contains("right");
+            double x = right ? 1 : left ? -1 : 0;
+            double y = bottom ? 1 : top ? -1 : 0;
+            return Math.toDegrees(Math.atan2(x, -y));
+        }
+        return 180;
+    }
+
+    private static float[] radialCenter(String geometry) {
+        float[] center = {0.5f, 0.5f};
+        if (geometry == null) {
+            return center;
+        }
+        int at = geometry.indexOf(" at ");
+        String position = at >= 0 ? geometry.substring(at + 4) : geometry.startsWith("at ") ? geometry.substring(3) : null;
+        if (position == null) {
+            return center;
+        }
+        String[] words = position.trim().split("\\s+");
+        for (int i = 0; i < words.length && i < 2; i++) {
+            String word = words[i];
+            switch (word) {
+                case "left" -> center[0] = 0;
+                case "right" -> center[0] = 1;
+                case "top" -> center[1] = 0;
+                case "bottom" -> center[1] = 1;
+                case "center" -> { }
+                default -> {
+                    if (word.endsWith("%")) {
+                        try {
+                            center[i] = Float.parseFloat(word.substring(0, word.length() - 1)) / 100f;
+                        } catch (NumberFormatException ignored) {
+                            // keep the default
+                        }
+                    }
+                }
+            }
+        }
+        return center;
+    }
+
+    /**
+     * Color stops with CSS position rules: missing positions are spread evenly
+     * and positions never go backwards. Java2D also needs strictly increasing
+     * fractions, so equal positions are nudged apart.
+     */
+    private static List<Stop> parseStops(List<String> arguments) {
+        List<Stop> stops = new ArrayList<>();
+        for (String argument : arguments) {
+            String text = argument.trim();
+            int split = colorEnd(text);
+            Color color = parseColor(text.substring(0, split));
+            if (color == null) {
+                continue;
+            }
+            float position = Float.NaN;
+            String rest = text.substring(split).trim();
+            if (rest.endsWith("%")) {
+                try {
+                    position = Float.parseFloat(rest.substring(0, rest.length() - 1).trim()) / 100f;
+                } catch (NumberFormatException ignored) {
+                    // treat as unpositioned
+                }
+            }
+            stops.add(new Stop(color, position));
+        }
+        if (stops.isEmpty()) {
+            return stops;
+        }
+
+        if (Float.isNaN(stops.get(0).position)) {
+            stops.get(0).position = 0;
+        }
+        Stop last = stops.get(stops.size() - 1);
+        if (Float.isNaN(last.position)) {
+            last.position = 1;
+        }
+        for (int i = 1; i < stops.size(); i++) {
+            if (Float.isNaN(stops.get(i).position)) {
+                int next = i;
+                while (Float.isNaN(stops.get(next).position)) {
+                    next++;
+                }
+                float from = stops.get(i - 1).position;
+                float to = stops.get(next).position;
+                for (int j = i; j < next; j++) {
+                    stops.get(j).position = from + (to - from) * (j - i + 1) / (next - i + 1);
+                }
+            }
+        }
+
+        float previous = -1;
+        for (Stop stop : stops) {
+            float position = Math.min(1, Math.max(0, stop.position));
+            if (position <= previous) {
+                position = Math.min(1, previous + 1e-4f);
+            }
+            stop.position = position;
+            previous = position;
+        }
+        // A nudged tail can pile up at 1.0 - drop those duplicates
+        List<Stop> distinct = new ArrayList<>();
+        for (Stop stop : stops) {
+            if (distinct.isEmpty() || stop.position > distinct.get(distinct.size() - 1).position) {
+                distinct.add(stop);
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * Index just past the color token at the start of a stop
+     */
+    private static int colorEnd(String stop) {
+        int paren = stop.indexOf('(');
+        int space = stop.indexOf(' ');
+        if (paren >= 0 && (space < 0 || paren < space)) {
+            int close = stop.indexOf(')', paren);
+            return close < 0 ? stop.length() : close + 1;
+        }
+        return space < 0 ? stop.length() : space;
+    }
+
+    private static String firstWord(String text) {
+        return text.substring(0, colorEnd(text));
+    }
+
+    /**
+     * Split on commas that are not nested inside parentheses
+     */
+    private static List<String> splitTopLevel(String css) {
+        List<String> parts = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < css.length(); i++) {
+            char c = css.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                parts.add(css.substring(start, i));
+                start = i + 1;
+            }
+        }
+        parts.add(css.substring(start));
+        return parts;
+    }
+
+    private static Color parseHex(String hex) {
+        int length = hex.length();
+        if (length == 3 || length == 4) {
+            StringBuilder expanded = new StringBuilder(length * 2);
+            for (int i = 0; i < length; i++) {
+                expanded.append(hex.charAt(i)).append(hex.charAt(i));
+            }
+            hex = expanded.toString();
+            length = hex.length();
+        }
+        if (length != 6 && length != 8) {
+            return null;
+        }
+        long value = Long.parseLong(hex, 16);
+        if (length == 6) {
+            return new Color((int) value);
+        }
+        return new Color((int) (value >>> 24) & 0xFF, (int) (value >>> 16) & 0xFF, (int) (value >>> 8) & 0xFF,
+            (int) value & 0xFF);
+    }
+
+    private static int channel(String value) {
+        if (value.endsWith("%")) {
+            return clamp(Math.round(Float.parseFloat(value.substring(0, value.length() - 1)) * 2.55f));
+        }
+        return clamp(Math.round(Float.parseFloat(value)));
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+
+    private static class Stop {
+        final Color color;
+        float position;
+
+        Stop(Color color, float position) {
+            this.color = color;
+            this.position = position;
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package com.shtilmanilan.ai_promote_backend.service.flyer;
+
+import com.shtilmanilan.ai_promote_backend.model.ai.TextGenerationRequest;
+import com.shtilmanilan.ai_promote_backend.model.ai.TextGenerationResponse;
+import com.shtilmanilan.ai_promote_backend.model.azure.AzureFlierConfig;
+import com.shtilmanilan.ai_promote_backend.model.azure.AzureFlierInfo;
+import com.shtilmanilan.ai_promote_backend.model.azure.AzureVisionResponse;
+import com.shtilmanilan.ai_promote_backend.model.background.BackgroundGenerationRequest;
+import com.shtilmanilan.ai_promote_backend.model.background.BackgroundOption;
+import com.shtilmanilan.ai_promote_backend.model.flyer.FlyerComposeRequest;
+import com.shtilmanilan.ai_promote_backend.model.flyer.FlyerComposeResponse;
+import com.shtilmanilan.ai_promote_backend.service.azure.AzureVisionService;
+import com.shtilmanilan.ai_promote_backend.service.background.BackgroundGenerationService;
+import com.shtilmanilan.ai_promote_backend.service.background.ImagenBackgroundService;
+import com.shtilmanilan.ai_promote_backend.service.groq.GroqService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Flyer Composition Service
+ *
+ * Runs the whole flyer pipeline for one request as a dependency graph
+ * instead of the client's sequence of round trips:
+ *
+ *   analysis ──┬── CSS backgrounds
+ *              ├── Imagen backgrounds
+ *   text ──────┴── flyer config (needs analysis + text)
+ *
+ * Promo text only depends on the user's input, so it starts alongside the
+ * analysis; background generation starts as soon as the colors are known.
+ *
+ * Features:
+ * - Stages run on a bounded pool shared by all compose requests
+ * - Each stage has its own timeout, counted from when its inputs are ready;
+ *   a stage that times out is interrupted so it stops waiting on pacing or quota
+ * - A failed, slow or rejected stage falls back instead of failing the flyer
+ * - Per-stage timings in the response and aggregate stats
+ */
+@Service
+public class FlyerCompositionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlyerCompositionService.class);
+
+    private static final String STAGE_ANALYSIS = "analysis";
+    private static final String STAGE_TEXT = "text";
+    private static final String STAGE_CSS = "cssBackgrounds";
+    private static final String STAGE_IMAGEN = "imagenBackgrounds";
+    private static final String STAGE_CONFIG = "config";
+
+    private final AzureVisionService azureVisionService;
+    private final GroqService groqService;
+    private final BackgroundGenerationService backgroundGenerationService;
+    private final ImagenBackgroundService imagenBackgroundService;
+    private final ThreadPoolExecutor executor;
+
+    private final long analysisTimeoutMillis;
+    private final long textTimeoutMillis;
+    private final long cssTimeoutMillis;
+    private final long imagenTimeoutMillis;
+
+    private final AtomicLong composed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalMillis = new AtomicLong();
+    private final Map<String, StageStats> stageStats = new LinkedHashMap<>();
+
+    public FlyerCompositionService(AzureVisionService azureVisionService,
+                                   GroqService groqService,
+                                   BackgroundGenerationService backgroundGenerationService,
+                                   ImagenBackgroundService imagenBackgroundService,
+                                   @Value("${flyer.compose.parallelism:8}") int parallelism,
+                                   @Value("${flyer.compose.queue-capacity:64}") int queueCapacity,
+                                   @Value("${flyer.compose.analysis-timeout-seconds:30}") long analysisTimeoutSeconds,
+                                   @Value("${flyer.compose.text-timeout-seconds:20}") long textTimeoutSeconds,
+                                   @Value("${flyer.compose.css-timeout-seconds:30}") long cssTimeoutSeconds,
+                                   @Value("${flyer.compose.imagen-timeout-seconds:90}") long imagenTimeoutSeconds) {
+        this.azureVisionService = azureVisionService;
+        this.groqService = groqService;
+        this.backgroundGenerationService = backgroundGenerationService;
+        this.imagenBackgroundService = imagenBackgroundService;
+        this.analysisTimeoutMillis = TimeUnit.SECONDS.toMillis(analysisTimeoutSeconds);
+        this.textTimeoutMillis = TimeUnit.SECONDS.toMillis(textTimeoutSeconds);
+        this.cssTimeoutMillis = TimeUnit.SECONDS.toMillis(cssTimeoutSeconds);
+        this.imagenTimeoutMillis = TimeUnit.SECONDS.toMillis(imagenTimeoutSeconds);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, "flyer-compose-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.executor.allowCoreThreadTimeOut(true);
+
+        for (String stage : List.of(STAGE_ANALYSIS, STAGE_TEXT, STAGE_CSS, STAGE_IMAGEN, STAGE_CONFIG)) {
+            stageStats.put(stage, new StageStats());
+        }
+        logger.info("Flyer composition service initialized: {} threads, queue {}", parallelism, queueCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Start composing a flyer. The returned future always completes normally
+     * unless the pool is saturated, in which case RejectedExecutionException
+     * is thrown before any work starts. Stages that start later, once their
+     * inputs are ready, fall back if the pool is saturated by then.
+     */
+    public CompletableFuture<FlyerComposeResponse> compose(FlyerComposeRequest request) {
+        if (request.getImage() == null || request.getImage().isBlank()) {
+            throw new IllegalArgumentException("An image is required");
+        }
+
+        long start = System.nanoTime();
+        Map<String, Long> timings = new ConcurrentHashMap<>();
+        Set<String> fallbacks = ConcurrentHashMap.newKeySet();
+
+        CompletableFuture<AzureVisionResponse> analysis;
+        CompletableFuture<String> text;
+        try {
+            analysis = submitStage(STAGE_ANALYSIS, analysisTimeoutMillis, timings, fallbacks,
+                () -> azureVisionService.analyzeImage(request.getImage()),
+                error -> failedAnalysis());
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw e;
+        }
+        try {
+            text = request.isGenerateText()
+                ? submitStage(STAGE_TEXT, textTimeoutMillis, timings, fallbacks,
+                    () -> generatePromotionalText(request),
+                    error -> request.getPromotionalText())
+                : CompletableFuture.completedFuture(request.getPromotionalText());
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            // The request is turned away, so its analysis is not needed either
+            analysis.cancel(true);
+            throw e;
+        }
+
+        // Backgrounds only need the colors, not the generated text
+        CompletableFuture<BackgroundGenerationRequest> backgroundRequest =
+            analysis.thenApply(result -> toBackgroundRequest(request, result));
+
+        CompletableFuture<List<BackgroundOption>> cssBackgrounds = backgroundRequest.thenCompose(input ->
+            stage(STAGE_CSS, cssTimeoutMillis, timings, fallbacks,
+                () -> backgroundGenerationService.generateBackgrounds(input),
+                error -> backgroundGenerationService.generateFallbackBackgrounds(input)));
+
+        CompletableFuture<List<BackgroundOption>> imageBackgrounds = request.isGenerateImages()
+            ? backgroundRequest.thenCompose(input ->
+                stage(STAGE_IMAGEN, imagenTimeoutMillis, timings, fallbacks,
+                    () -> imagenBackgroundService.generateBackgroundImages(input),
+                    error -> List.<BackgroundOption>of()))
+            : CompletableFuture.completedFuture(List.of());
+
+        CompletableFuture<AzureFlierConfig> config = analysis.thenCombine(text, (result, promotionalText) -> {
+            long stageStart = System.nanoTime();
+            AzureFlierConfig flierConfig = azureVisionService.generateFlierConfig(new AzureFlierInfo(
+                request.getTitle(),
+                promotionalText != null ? promotionalText : request.getPromotionalText(),
+                request.getOrientation(),
+                result));
+            record(STAGE_CONFIG, stageStart, timings, false);
+            return flierConfig;
+        });
+
+        return CompletableFuture.allOf(config, cssBackgrounds, imageBackgrounds)
+            .handle((ignored, error) -> {
+                FlyerComposeResponse response = new FlyerComposeResponse();
+                long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                if (error != null) {
+                    // Only the config stage can fail here - every other stage has a fallback
+                    failed.incrementAndGet();
+                    logger.error("Flyer composition failed", error);
+                    response.setFallbacks(List.of(STAGE_CONFIG));
+                } else {
+                    response.setConfig(config.join());
+                    response.setBackgrounds(cssBackgrounds.join());
+                    response.setImageBackgrounds(imageBackgrounds.join());
+                    response.setFallbacks(new ArrayList<>(fallbacks));
+                    composed.incrementAndGet();
+                }
+                response.setAnalysis(analysis.join());
+                response.setGeneratedText(text.join());
+                response.setStageMillis(new TreeMap<>(timings));
+                response.setTotalMillis(elapsed);
+                totalMillis.addAndGet(elapsed);
+                logger.info("Flyer composed in {} ms (stages {}, fallbacks {})", elapsed, timings, fallbacks);
+                return response;
+            });
+    }
+
+    /**
+     * Upper bound on how long one compose request can take, for the async request timeout
+     */
+    public long getMaxComposeMillis() {
+        return analysisTimeoutMillis + Math.max(cssTimeoutMillis, imagenTimeoutMillis) + TimeUnit.SECONDS.toMillis(5);
+    }
+
+    /**
+     * Composition statistics for the stats endpoint
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long completed = composed.get();
+        stats.put("composed", completed);
+        stats.put("failed", failed.get());
+        stats.put("rejected", rejected.get());
+        stats.put("avgTotalMillis", completed > 0 ? totalMillis.get() / completed : 0);
+        stats.put("activeThreads", executor.getActiveCount());
+        stats.put("queuedStages", executor.getQueue().size());
+
+        Map<String, Object> stages = new LinkedHashMap<>();
+        stageStats.forEach((name, stage) -> stages.put(name, stage.toMap()));
+        stats.put("stages", stages);
+        return stats;
+    }
+
+    /**
+     * Submit a stage whose inputs just became ready. It runs on whichever
+     * thread completed them, where a rejection has no caller to reach, so a
+     * saturated pool counts as busy and the stage falls back at once.
+     */
+    private <T> CompletableFuture<T> stage(String name, long timeoutMillis, Map<String, Long> timings,
+                                           Set<String> fallbacks, Supplier<T> work,
+                                           Function<Throwable, T> fallback) {
+        try {
+            return submitStage(name, timeoutMillis, timings, fallbacks, work, fallback);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            logger.warn("Flyer stage '{}' rejected - composition pool is busy, using fallback", name);
+            fallbacks.add(name);
+            record(name, System.nanoTime(), timings, true);
+            return CompletableFuture.completedFuture(fallback.apply(e));
+        }
+    }
+
+    /**
+     * Submit one stage to the pool with a timeout that starts now, replacing
+     * any failure or timeout with the fallback value. A timed-out or
+     * cancelled stage is interrupted rather than left holding a pool thread.
+     * Throws RejectedExecutionException if the pool is saturated.
+     */
+    private <T> CompletableFuture<T> submitStage(String name, long timeoutMillis, Map<String, Long> timings,
+                                                 Set<String> fallbacks, Supplier<T> work,
+                                                 Function<Throwable, T> fallback) {
+        long stageStart = System.nanoTime();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            try {
+                result.complete(work.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        CompletableFuture<T> handled = result
+            .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+            .handle((value, error) -> {
+                if (error == null && value != null) {
+                    record(name, stageStart, timings, false);
+                    return value;
+                }
+                if (error instanceof CompletionException && error.getCause() != null) {
+                    error = error.getCause();
+                }
+                if (error instanceof TimeoutException) {
+                    task.cancel(true);
+                }
+                logger.warn("Flyer stage '{}' {} - using fallback", name,
+                    error instanceof TimeoutException ? "timed out after " + timeoutMillis + " ms"
+                        : error != null ? "failed: " + error.getMessage() : "returned nothing");
+                fallbacks.add(name);
+                record(name, stageStart, timings, true);
+                return fallback.apply(error);
+            });
+        // Cancelling the stage (a rejected request) stops its work too
+        handled.whenComplete((value, error) -> {
+            if (handled.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return handled;
+    }
+
+    private void record(String name, long stageStart, Map<String, Long> timings, boolean fellBack) {
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stageStart);
+        timings.put(name, elapsed);
+        stageStats.get(name).record(elapsed, fellBack);
+    }
+
+    private String generatePromotionalText(FlyerComposeRequest request) {
+        String subject = request.getPromotionalText() != null && !request.getPromotionalText().isBlank()
+            ? request.getPromotionalText() : request.getTitle();
+        if (subject == null || subject.isBlank()) {
+            return null;
+        }
+
+        // Same prompt the client sends to /api/v1/groq/generate
+        TextGenerationRequest textRequest = new TextGenerationRequest();
+        textRequest.setPrompt("Hebrew".equalsIgnoreCase(request.getLanguage())
+            ? "כתוב טקסט פרסומי ושיווקי קצר בשתי שורות עבור: " + subject
+            : "Write a short promotional text in two lines for: " + subject);
+        textRequest.setTemperature(0.7);
+
+        TextGenerationResponse response = groqService.generateText(textRequest);
+        if (response == null || response.getError() != null) {
+            throw new IllegalStateException(response != null ? response.getError() : "no response");
+        }
+        return response.getGeneratedText();
+    }
+
+    private BackgroundGenerationRequest toBackgroundRequest(FlyerComposeRequest request, AzureVisionResponse analysis) {
+        BackgroundGenerationRequest backgroundRequest = new BackgroundGenerationRequest(
+            analysis.getBusinessType() != null ? analysis.getBusinessType() : "general",
+            request.getTargetAudience(),
+            request.getColorScheme(),
+            request.getStylePreference());
+        backgroundRequest.setTitle(request.getTitle());
+        backgroundRequest.setPromotionalText(request.getPromotionalText());
+        backgroundRequest.setBusinessDescription(request.getBusinessDescription() != null
+            ? request.getBusinessDescription() : analysis.getDescription());
+
+        AzureVisionResponse.Colors colors = analysis.getColors();
+        if (colors != null) {
+            Map<String, String> palette = new LinkedHashMap<>();
+            putIfPresent(palette, "primary", colors.getPrimary());
+            putIfPresent(palette, "secondary", colors.getSecondary());
+            putIfPresent(palette, "accent", colors.getAccent());
+            putIfPresent(palette, "background", colors.getBackground());
+            backgroundRequest.setColorPalette(palette.isEmpty() ? null : palette);
+
+            Map<String, Object> azureColors = new LinkedHashMap<>(palette);
+            if (colors.getDominantColors() != null) {
+                azureColors.put("dominantColors", colors.getDominantColors());
+            }
+            backgroundRequest.setAzureColors(azureColors);
+        }
+        return backgroundRequest;
+    }
+
+    private static void putIfPresent(Map<String, String> map, String key, String value) {
+        if (value != null && !value.isBlank()) {
+            map.put(key, value);
+        }
+    }
+
+    private static AzureVisionResponse failedAnalysis() {
+        AzureVisionResponse response = new AzureVisionResponse();
+        response.setError("Image analysis unavailable");
+        return response;
+    }
+
+    private static class StageStats {
+        final AtomicLong runs = new AtomicLong();
+        final AtomicLong fallbacks = new AtomicLong();
+        final AtomicLong totalMillis = new AtomicLong();
+        final AtomicLong maxMillis = new AtomicLong();
+
+        void record(long millis, boolean fellBack) {
+            runs.incrementAndGet();
+            if (fellBack) {
+                fallbacks.incrementAndGet();
+            }
+            totalMillis.addAndGet(millis);
+            maxMillis.accumulateAndGet(millis, Math::max);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            long count = runs.get();
+            map.put("runs", count);
+            map.put("fallbacks", fallbacks.get());
+            map.put("avgMillis", count > 0 ? totalMillis.get() / count : 0);
+            map.put("maxMillis", maxMillis.get());
+            return map;
+        }
+    }
+}
@@ -0,0 +1,498 @@
+package com.shtilmanilan.ai_promote_backend.service.flyer;
+
+import com.shtilmanilan.ai_promote_backend.model.flyer.FlyerRenderRequest;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+/**
+ * Flyer Export Service
+ *
+ * Print-resolution export (A4/A3 at 300 dpi is ~3500x5000 px) without ever
+ * holding the full image. The flyer is cut into horizontal tiles that are
+ * rendered, PNG-filtered and deflated in parallel; the results are written
+ * to the client in order as soon as each one is ready.
+ *
+ * Features:
+ * - Memory per export bounded by the tiles in flight, not the page size
+ * - Tiles compressed independently (pigz style) so deflate runs in parallel
+ * - Streaming PNG (IDAT per tile) or single-page PDF output
+ * - Background image and gradients upscaled per tile through the clip
+ */
+@Service
+public class FlyerExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlyerExportService.class);
+
+    public static final int MAX_EDGE = 10000;
+    private static final int MIN_DPI = 72;
+    private static final int MAX_DPI = 600;
+
+    // zlib header for a 32K window; the level bits are advisory only
+    private static final byte[] ZLIB_HEADER = {0x78, (byte) 0x9C};
+    private static final int ADLER_BASE = 65521;
+    // An export not being written this long after prepare() gives its slot back
+    private static final long WRITE_START_TIMEOUT_SECONDS = 60;
+
+    private static final Map<String, double[]> PAPER_SIZES_MM = Map.of(
+        "A5", new double[]{148, 210},
+        "A4", new double[]{210, 297},
+        "A3", new double[]{297, 420});
+
+    private final FlyerRenderer renderer;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore exportSlots;
+    private final int maxConcurrent;
+    private final int tileRows;
+    private final int compressionLevel;
+    private final int tilesInFlight;
+
+    private final AtomicLong exports = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong tiles = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong exportNanos = new AtomicLong();
+    private final AtomicLong maxExportMillis = new AtomicLong();
+
+    public FlyerExportService(FlyerRenderer renderer,
+                              @Value("${flyer.export.threads:0}") int threads,
+                              @Value("${flyer.export.max-concurrent:2}") int maxConcurrent,
+                              @Value("${flyer.export.tile-rows:128}") int tileRows,
+                              @Value("${flyer.export.compression-level:6}") int compressionLevel) {
+        this.renderer = renderer;
+        this.tileRows = tileRows;
+        this.compressionLevel = compressionLevel;
+        this.maxConcurrent = maxConcurrent;
+        this.exportSlots = new Semaphore(maxConcurrent);
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        // Enough tiles queued to keep every thread busy while the writer drains the oldest
+        this.tilesInFlight = poolSize + 2;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "flyer-export-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.executor.allowCoreThreadTimeOut(true);
+        logger.info("Flyer export service initialized: {} threads, {} rows per tile, {} concurrent exports",
+            poolSize, tileRows, maxConcurrent);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Validate the request, take an export slot and resolve fonts, layout and
+     * background up front, so errors surface before the response starts. The
+     * returned export holds the slot until {@link Export#writeTo(OutputStream)}
+     * finishes, or until it expires unwritten.
+     *
+     * @throws RejectedExecutionException if every export slot is taken
+     */
+    public Export prepare(FlyerRenderRequest request) {
+        String format = request.getFormat() == null ? "png" : request.getFormat().toLowerCase(Locale.ROOT);
+        if (!format.equals("png") && !format.equals("pdf")) {
+            throw new IllegalArgumentException("Export format must be png or pdf");
+        }
+        int dpi = request.getDpi() != null ? request.getDpi() : 300;
+        if (dpi < MIN_DPI || dpi > MAX_DPI) {
+            throw new IllegalArgumentException("dpi must be between " + MIN_DPI + " and " + MAX_DPI);
+        }
+        Dimension size = resolveSize(request, dpi);
+
+        // Taken now, so a saturated service is refused before the response starts
+        if (!exportSlots.tryAcquire()) {
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("Too many exports in progress");
+        }
+        Export export;
+        try {
+            export = new Export(renderer.prepare(request, size.width, size.height), format, dpi);
+        } catch (RuntimeException e) {
+            exportSlots.release();
+            throw e;
+        }
+        // Nothing may ever write the body (client gone, async timeout); the slot must not leak then.
+        // The timer holds only the state, not the prepared flyer and its rasters
+        AtomicInteger state = export.state;
+        CompletableFuture.delayedExecutor(WRITE_START_TIMEOUT_SECONDS, TimeUnit.SECONDS).execute(() -> expire(state));
+        return export;
+    }
+
+    /**
+     * Export statistics for the stats endpoint
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long count = exports.get();
+        stats.put("exports", count);
+        stats.put("failures", failures.get());
+        stats.put("rejected", rejected.get());
+        stats.put("expired", expired.get());
+        stats.put("activeExports", maxConcurrent - exportSlots.availablePermits());
+        stats.put("tiles", tiles.get());
+        stats.put("bytesWritten", bytesWritten.get());
+        stats.put("avgExportMillis", count > 0 ? TimeUnit.NANOSECONDS.toMillis(exportNanos.get() / count) : 0);
+        stats.put("maxExportMillis", maxExportMillis.get());
+        stats.put("tileRows", tileRows);
+        stats.put("tilesInFlightPerExport", tilesInFlight);
+        return stats;
+    }
+
+    private Dimension resolveSize(FlyerRenderRequest request, int dpi) {
+        int width;
+        int height;
+        if (request.getPaperSize() != null) {
+            double[] millimeters = PAPER_SIZES_MM.get(request.getPaperSize().toUpperCase(Locale.ROOT));
+            if (millimeters == null) {
+                throw new IllegalArgumentException("Unsupported paper size: " + request.getPaperSize());
+            }
+            width = (int) Math.round(millimeters[0] / 25.4 * dpi);
+            height = (int) Math.round(millimeters[1] / 25.4 * dpi);
+            String orientation = request.getConfig() != null && request.getConfig().layout != null
+                ? request.getConfig().layout.orientation : null;
+            if ("landscape".equalsIgnoreCase(orientation)) {
+                int swap = width;
+                width = height;
+                height = swap;
+            }
+        } else {
+            width = request.getWidth() != null ? request.getWidth() : 0;
+            height = request.getHeight() != null ? request.getHeight() : 0;
+            if (width <= 0 || height <= 0) {
+                throw new IllegalArgumentException("Export needs a paperSize or an explicit width and height");
+            }
+        }
+        if (width > MAX_EDGE || height > MAX_EDGE) {
+            throw new IllegalArgumentException("Export size must be at most " + MAX_EDGE + " px per edge");
+        }
+        return new Dimension(width, height);
+    }
+
+    /**
+     * Render, filter and compress rows [top, top + rows) of the flyer.
+     * Every tile but the last ends on a byte-aligned sync flush, so the raw
+     * deflate segments concatenate into one valid stream.
+     */
+    private EncodedTile encodeTile(PreparedFlyer flyer, int top, int rows, boolean last) {
+        int width = flyer.getWidth();
+        BufferedImage tile = new BufferedImage(width, rows, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = tile.createGraphics();
+        try {
+            g.translate(0, -top);
+            g.clipRect(0, top, width, rows);
+            flyer.paint(g);
+        } finally {
+            g.dispose();
+        }
+        int[] pixels = ((DataBufferInt) tile.getRaster().getDataBuffer()).getData();
+
+        int stride = width * 3;
+        byte[] previous = new byte[stride];
+        byte[] current = new byte[stride];
+        byte[] filtered = new byte[stride + 1];
+        Adler32 adler = new Adler32();
+        Deflater deflater = new Deflater(compressionLevel, true);
+        CompressedBytes output = new CompressedBytes(Math.max(4096, rows * stride / 8));
+        try {
+            for (int y = 0; y < rows; y++) {
+                int rowStart = y * width;
+                for (int x = 0, i = 0; x < width; x++) {
+                    int rgb = pixels[rowStart + x];
+                    current[i++] = (byte) (rgb >> 16);
+                    current[i++] = (byte) (rgb >> 8);
+                    current[i++] = (byte) rgb;
+                }
+                filterRow(current, y > 0 ? previous : null, filtered);
+                adler.update(filtered, 0, filtered.length);
+                deflater.setInput(filtered, 0, filtered.length);
+                while (!deflater.needsInput()) {
+                    output.deflate(deflater, Deflater.NO_FLUSH);
+                }
+                byte[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    output.deflate(deflater, Deflater.NO_FLUSH);
+                }
+            } else {
+                // SYNC_FLUSH is done once a call leaves spare room in the output buffer
+                while (output.deflate(deflater, Deflater.SYNC_FLUSH)) {
+                    // keep draining
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+        tiles.incrementAndGet();
+        return new EncodedTile(output.bytes, output.length, adler.getValue(), (long) rows * (stride + 1));
+    }
+
+    /**
+     * PNG adaptive filtering: pick the filter with the smallest sum of
+     * absolute residuals. Up and Paeth need the row above, which the first
+     * row of a tile does not have, so it chooses between None and Sub only.
+     */
+    private static void filterRow(byte[] row, byte[] above, byte[] out) {
+        int length = row.length;
+        long sumNone = 0;
+        long sumSub = 0;
+        long sumUp = 0;
+        long sumPaeth = 0;
+        for (int i = 0; i < length; i++) {
+            int value = row[i] & 0xFF;
+            int left = i >= 3 ? row[i - 3] & 0xFF : 0;
+            sumNone += Math.abs((byte) value);
+            sumSub += Math.abs((byte) (value - left));
+            if (above != null) {
+                int up = above[i] & 0xFF;
+                int upLeft = i >= 3 ? above[i - 3] & 0xFF : 0;
+                sumUp += Math.abs((byte) (value - up));
+                sumPaeth += Math.abs((byte) (value - paeth(left, up, upLeft)));
+            }
+        }
+
+        int filter = 0;
+        long best = sumNone;
+        if (sumSub < best) {
+            filter = 1;
+            best = sumSub;
+        }
+        if (above != null) {
+            if (sumUp < best) {
+                filter = 2;
+                best = sumUp;
+            }
+            if (sumPaeth < best) {
+                filter = 4;
+            }
+        }
+
+        out[0] = (byte) filter;
+        for (int i = 0; i < length; i++) {
+            int value = row[i] & 0xFF;
+            int left = i >= 3 ? row[i - 3] & 0xFF : 0;
+            int residual = switch (filter) {
+                case 1 -> value - left;
+                case 2 -> value - (above[i] & 0xFF);
+                case 4 -> value - paeth(left, above[i] & 0xFF, i >= 3 ? above[i - 3] & 0xFF : 0);
+                default -> value;
+            };
+            out[i + 1] = (byte) residual;
+        }
+    }
+
+    private static int paeth(int left, int up, int upLeft) {
+        int estimate = left + up - upLeft;
+        int distanceLeft = Math.abs(estimate - left);
+        int distanceUp = Math.abs(estimate - up);
+        int distanceUpLeft = Math.abs(estimate - upLeft);
+        if (distanceLeft <= distanceUp && distanceLeft <= distanceUpLeft) {
+            return left;
+        }
+        return distanceUp <= distanceUpLeft ? up : upLeft;
+    }
+
+    /**
+     * Adler-32 of two concatenated byte ranges from their separate checksums
+     * (zlib's adler32_combine)
+     */
+    static long combineAdler(long first, long second, long secondLength) {
+        long remainder = secondLength % ADLER_BASE;
+        long sum1 = first & 0xFFFF;
+        long sum2 = (remainder * sum1) % ADLER_BASE;
+        sum1 += (second & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((first >> 16) & 0xFFFF) + ((second >> 16) & 0xFFFF) + ADLER_BASE - remainder;
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= ((long) ADLER_BASE << 1)) {
+            sum2 -= ((long) ADLER_BASE << 1);
+        }
+        if (sum2 >= ADLER_BASE) {
+            sum2 -= ADLER_BASE;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    /**
+     * Give an export's slot back if writing never started
+     */
+    private void expire(AtomicInteger exportState) {
+        if (exportState.compareAndSet(Export.PENDING, Export.DONE)) {
+            expired.incrementAndGet();
+            logger.warn("Flyer export was never written - releasing its slot");
+            exportSlots.release();
+        }
+    }
+
+    /**
+     * A prepared export, bound to one response
+     */
+    public class Export {
+        private static final int PENDING = 0;
+        private static final int WRITING = 1;
+        private static final int DONE = 2;
+
+        private final PreparedFlyer flyer;
+        private final String format;
+        private final int dpi;
+        // Whoever moves the export out of PENDING releases its slot
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        private Export(PreparedFlyer flyer, String format, int dpi) {
+            this.flyer = flyer;
+            this.format = format;
+            this.dpi = dpi;
+        }
+
+        public String getFormat() {
+            return format;
+        }
+
+        public int getWidth() {
+            return flyer.getWidth();
+        }
+
+        public int getHeight() {
+            return flyer.getHeight();
+        }
+
+        /**
+         * Stream the encoded flyer, once. Tiles are submitted ahead of the
+         * writer up to a fixed window, so at most that many rasters exist at
+         * a time. The export slot is released when this returns.
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            if (!state.compareAndSet(PENDING, WRITING)) {
+                throw new IOException("Export already written or expired");
+            }
+
+            long start = System.nanoTime();
+            CountingOutputStream counted = new CountingOutputStream(out);
+            ArrayDeque<Future<EncodedTile>> window = new ArrayDeque<>();
+            try {
+                TiledImageWriter writer = format.equals("pdf")
+                    ? new PdfStreamWriter(counted, flyer.getWidth(), flyer.getHeight(), dpi)
+                    : new PngStreamWriter(counted, flyer.getWidth(), flyer.getHeight(), dpi);
+                writer.begin();
+                writer.write(ZLIB_HEADER, 0, ZLIB_HEADER.length);
+
+                int height = flyer.getHeight();
+                int tileCount = (height + tileRows - 1) / tileRows;
+                int submitted = 0;
+                while (submitted < tileCount && window.size() < tilesInFlight) {
+                    window.add(submitTile(submitted++, tileCount));
+                }
+
+                long adler = 1;
+                for (int index = 0; index < tileCount; index++) {
+                    EncodedTile tile = await(window.poll());
+                    if (submitted < tileCount) {
+                        window.add(submitTile(submitted++, tileCount));
+                    }
+                    writer.write(tile.data, 0, tile.length);
+                    writer.flush();
+                    adler = combineAdler(adler, tile.adler, tile.rawLength);
+                }
+
+                byte[] checksum = {(byte) (adler >>> 24), (byte) (adler >>> 16), (byte) (adler >>> 8), (byte) adler};
+                writer.write(checksum, 0, checksum.length);
+                writer.finish();
+
+                long elapsed = System.nanoTime() - start;
+                exports.incrementAndGet();
+                exportNanos.addAndGet(elapsed);
+                maxExportMillis.accumulateAndGet(TimeUnit.NANOSECONDS.toMillis(elapsed), Math::max);
+                logger.info("Exported {}x{} {} in {} ms ({} tiles, {} bytes)", flyer.getWidth(), height,
+                    format, TimeUnit.NANOSECONDS.toMillis(elapsed), tileCount, counted.getCount());
+            } catch (IOException | RuntimeException e) {
+                failures.incrementAndGet();
+                window.forEach(future -> future.cancel(true));
+                throw e;
+            } finally {
+                bytesWritten.addAndGet(counted.getCount());
+                state.set(DONE);
+                exportSlots.release();
+            }
+        }
+
+        private Future<EncodedTile> submitTile(int index, int tileCount) {
+            int top = index * tileRows;
+            int rows = Math.min(tileRows, flyer.getHeight() - top);
+            return executor.submit(() -> encodeTile(flyer, top, rows, index == tileCount - 1));
+        }
+    }
+
+    private static EncodedTile await(Future<EncodedTile> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Tile rendering failed", e.getCause());
+        }
+    }
+
+    private record EncodedTile(byte[] data, int length, long adler, long rawLength) {
+    }
+
+    /**
+     * Growable output buffer for one tile's deflate segment
+     */
+    private static class CompressedBytes {
+        byte[] bytes;
+        int length;
+
+        CompressedBytes(int initialCapacity) {
+            bytes = new byte[initialCapacity];
+        }
+
+        /**
+         * Run one deflate call into the spare capacity. Returns true when the
+         * call filled it completely, meaning more output may be pending.
+         */
+        boolean deflate(Deflater deflater, int flush) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            int space = bytes.length - length;
+            int count = deflater.deflate(bytes, length, space, flush);
+            length += count;
+            return count == space;
+        }
+    }
+
+}
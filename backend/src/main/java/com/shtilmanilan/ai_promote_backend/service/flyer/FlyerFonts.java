@@ -0,0 +1,109 @@
+package com.shtilmanilan.ai_promote_backend.service.flyer;
+
+import java.awt.*;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared font resolution for the renderer.
+ *
+ * CSS font stacks ("Roboto, sans-serif") are resolved once against the
+ * installed families, and derived Font instances are reused across
+ * renders - creating a Font and its strike is far more expensive than
+ * the map lookup.
+ */
+class FlyerFonts {
+
+    // Font sizes are bucketed so nearly identical sizes share an instance
+    private static final float SIZE_STEP = 0.5f;
+    private static final int MAX_FONTS = 512;
+
+    private final Map<String, String> familyByStack = new ConcurrentHashMap<>();
+    private final Map<FontKey, Font> fonts = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile TreeSet<String> installedFamilies;
+
+    /**
+     * Font for the given CSS stack, style and pixel size that can display the
+     * whole text, falling back to the logical fonts (which cover Hebrew) if
+     * the preferred family cannot.
+     */
+    Font font(String cssStack, int style, float size, String text) {
+        String family = familyByStack.computeIfAbsent(cssStack == null ? "" : cssStack, this::resolveFamily);
+        Font font = derive(family, style, size);
+        if (text != null && font.canDisplayUpTo(text) != -1) {
+            font = derive(family.equals(Font.SERIF) ? Font.SERIF : Font.SANS_SERIF, style, size);
+        }
+        return font;
+    }
+
+    int size() {
+        return fonts.size();
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    private Font derive(String family, int style, float size) {
+        float bucketed = Math.max(SIZE_STEP, Math.round(size / SIZE_STEP) * SIZE_STEP);
+        FontKey key = new FontKey(family, style, bucketed);
+        Font font = fonts.get(key);
+        if (font != null) {
+            hits.incrementAndGet();
+            return font;
+        }
+        misses.incrementAndGet();
+        if (fonts.size() >= MAX_FONTS) {
+            // Sizes are effectively unbounded input - start over rather than grow forever
+            fonts.clear();
+        }
+        return fonts.computeIfAbsent(key, k -> new Font(k.family, k.style, 1).deriveFont(k.size));
+    }
+
+    private String resolveFamily(String cssStack) {
+        for (String candidate : cssStack.split(",")) {
+            String name = candidate.trim().replace("\"", "").replace("'", "");
+            String lower = name.toLowerCase(Locale.ROOT);
+            switch (lower) {
+                case "serif":
+                    return Font.SERIF;
+                case "sans-serif":
+                case "system-ui":
+                case "cursive":
+                case "fantasy":
+                    return Font.SANS_SERIF;
+                case "monospace":
+                    return Font.MONOSPACED;
+                default:
+                    String installed = installedFamilies().ceiling(name);
+                    if (installed != null && installed.equalsIgnoreCase(name)) {
+                        return installed;
+                    }
+            }
+        }
+        return Font.SANS_SERIF;
+    }
+
+    private TreeSet<String> installedFamilies() {
+        TreeSet<String> families = installedFamilies;
+        if (families == null) {
+            families = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+            families.addAll(List.of(GraphicsEnvironment.getLocalGraphicsEnvironment().getAvailableFontFamilyNames()));
+            installedFamilies = families;
+        }
+        return families;
+    }
+
+    private record FontKey(String family, int style, float size) {
+    }
+}
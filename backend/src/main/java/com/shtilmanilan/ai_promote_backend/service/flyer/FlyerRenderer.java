@@ -0,0 +1,585 @@
+package com.shtilmanilan.ai_promote_backend.service.flyer;
+
+import com.shtilmanilan.ai_promote_backend.model.azure.AzureFlierConfig;
+import com.shtilmanilan.ai_promote_backend.model.background.BackgroundOption;
+import com.shtilmanilan.ai_promote_backend.model.flyer.FlyerRenderRequest;
+import com.shtilmanilan.ai_promote_backend.service.background.BackgroundImageStore;
+import com.shtilmanilan.ai_promote_backend.service.cache.TtlCache;
+import com.shtilmanilan.ai_promote_backend.service.image.ImageBufferPool;
+import com.shtilmanilan.ai_promote_backend.service.image.ImageDecoder;
+import com.shtilmanilan.ai_promote_backend.service.image.PooledBuffer;
+import com.shtilmanilan.ai_promote_backend.service.image.PooledBufferOutputStream;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineBreakMeasurer;
+import java.awt.font.TextAttribute;
+import java.awt.font.TextLayout;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.text.AttributedString;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Flyer Renderer
+ *
+ * Server-side Java2D compositing of the final flyer: the chosen background
+ * (generated image or CSS gradient) with the title and promotional text on
+ * top, laid out the way the browser preview does it.
+ *
+ * Features:
+ * - Shared font cache and a cache of shaped, line-broken text layouts
+ * - Bidirectional text (Hebrew) through TextLayout's bidi shaping
+ * - Decoded generated backgrounds cached in a draw-friendly pixel format
+ * - CSS gradients rasterized once at reduced size and upscaled
+ * - Shared backgrounds kept pre-scaled to the output size
+ * - Rendering on a bounded CPU pool sized to the core count
+ * - Flyers per second per core (CPU time based) in the stats
+ */
+@Service
+public class FlyerRenderer {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlyerRenderer.class);
+
+    public static final int MAX_EDGE = 4096;
+
+    // The frontend preview is ~400 CSS px wide; rem sizes are scaled from it
+    private static final float PREVIEW_WIDTH = 400f;
+    private static final float REM_PX = 16f;
+    private static final float DEFAULT_TITLE_REM = 2.5f;
+    private static final float DEFAULT_BODY_REM = 1.2f;
+
+    // Layouts are measured with the same hints PreparedFlyer paints with
+    private static final FontRenderContext FONT_RENDER_CONTEXT = new FontRenderContext(null, true, true);
+    private static final Pattern SAFE_FILENAME = Pattern.compile("[A-Za-z0-9._-]+");
+    private static final String DEFAULT_TEXT_COLOR = "#333333";
+    private static final int GRADIENT_RASTER_EDGE = 512;
+    private static final long PRESCALE_MAX_PIXELS = 4L << 20;
+    // Lower deflate effort: ~30% faster than the default at nearly the same size
+    private static final float PNG_COMPRESSION_QUALITY = 0.75f;
+
+    private final ImageBufferPool bufferPool;
+    private final BackgroundImageStore imageStore;
+    private final ThreadPoolExecutor executor;
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    private final FlyerFonts fonts = new FlyerFonts();
+    private final TtlCache<LayoutKey, List<TextLayout>> layoutCache;
+    private final TtlCache<String, BufferedImage> backgroundCache;
+    private final TtlCache<GradientKey, BufferedImage> gradientCache = new TtlCache<>(32, 10, TimeUnit.MINUTES);
+    private final TtlCache<ScaledKey, BufferedImage> scaledCache;
+
+    private final AtomicLong renders = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong prepareNanos = new AtomicLong();
+    private final AtomicLong paintNanos = new AtomicLong();
+    private final AtomicLong encodeNanos = new AtomicLong();
+    private final AtomicLong cpuNanos = new AtomicLong();
+    private final AtomicLong layoutHits = new AtomicLong();
+    private final AtomicLong layoutMisses = new AtomicLong();
+    private final AtomicLong backgroundHits = new AtomicLong();
+    private final AtomicLong backgroundMisses = new AtomicLong();
+    private final AtomicLong gradientHits = new AtomicLong();
+    private final AtomicLong gradientMisses = new AtomicLong();
+    private final AtomicLong scaledHits = new AtomicLong();
+    private final AtomicLong scaledMisses = new AtomicLong();
+
+    public FlyerRenderer(ImageBufferPool bufferPool,
+                         BackgroundImageStore imageStore,
+                         @Value("${flyer.render.threads:0}") int threads,
+                         @Value("${flyer.render.queue-capacity:64}") int queueCapacity,
+                         @Value("${flyer.render.layout-cache-entries:1024}") int layoutCacheEntries,
+                         @Value("${flyer.render.background-cache-entries:8}") int backgroundCacheEntries,
+                         @Value("${flyer.render.scaled-cache-entries:6}") int scaledCacheEntries) {
+        this.bufferPool = bufferPool;
+        this.imageStore = imageStore;
+        this.layoutCache = new TtlCache<>(layoutCacheEntries, 60, TimeUnit.MINUTES);
+        this.backgroundCache = new TtlCache<>(backgroundCacheEntries, 10, TimeUnit.MINUTES);
+        this.scaledCache = new TtlCache<>(scaledCacheEntries, 10, TimeUnit.MINUTES);
+
+        // Rendering is pure CPU work - more threads than cores only adds contention
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, "flyer-render-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.executor.allowCoreThreadTimeOut(true);
+        logger.info("Flyer renderer initialized: {} threads, queue {}", poolSize, queueCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Render and encode a flyer on the render pool. The caller owns the
+     * returned buffer. Invalid requests throw IllegalArgumentException and a
+     * saturated pool throws RejectedExecutionException before any work starts.
+     */
+    public CompletableFuture<PooledBuffer> render(FlyerRenderRequest request) {
+        Dimension size = resolveSize(request);
+        String format = resolveFormat(request.getFormat());
+        try {
+            return CompletableFuture.supplyAsync(() -> renderNow(request, size, format), executor);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Output size: explicit width/height, else derived from the config orientation
+     */
+    public Dimension resolveSize(FlyerRenderRequest request) {
+        String orientation = request.getConfig() != null && request.getConfig().layout != null
+            ? request.getConfig().layout.orientation : null;
+        int defaultWidth = 1080;
+        int defaultHeight = "landscape".equalsIgnoreCase(orientation) ? 810
+            : "square".equalsIgnoreCase(orientation) ? 1080 : 1350;
+
+        int width = request.getWidth() != null ? request.getWidth() : defaultWidth;
+        int height = request.getHeight() != null ? request.getHeight()
+            : request.getWidth() != null ? Math.round(width * (float) defaultHeight / defaultWidth) : defaultHeight;
+        if (width <= 0 || height <= 0 || width > MAX_EDGE || height > MAX_EDGE) {
+            throw new IllegalArgumentException("Flyer size must be between 1 and " + MAX_EDGE + " px per edge");
+        }
+        return new Dimension(width, height);
+    }
+
+    /**
+     * Resolve everything for one output size. The result is immutable and can
+     * be painted repeatedly, for example tile by tile.
+     */
+    public PreparedFlyer prepare(FlyerRenderRequest request, int width, int height) {
+        BackgroundOption background = request.getBackground() != null ? request.getBackground() : new BackgroundOption();
+        AzureFlierConfig config = request.getConfig();
+
+        Color baseColor = firstColor(background.getBackgroundColor(), background.getPrimaryColor(),
+            config != null && config.colorPalette != null ? config.colorPalette.background : null, "#FFFFFF");
+
+        String imageReference = background.getBackgroundImage();
+        BufferedImage backgroundImage = loadBackgroundImage(imageReference, Math.max(width, height));
+        boolean shared = backgroundImage != null && !imageReference.startsWith("data:");
+        List<Paint> layers = new ArrayList<>();
+        if (backgroundImage == null) {
+            backgroundImage = gradientRaster(background.getBackgroundCSS(), baseColor, width, height);
+            shared = backgroundImage != null;
+            // Patterns can have hard edges, so they are painted at full resolution
+            for (CssPaints.Layer layer : CssPaints.parseBackground(background.getPatternCSS())) {
+                layers.add(layer.toPaint(width, height));
+            }
+        }
+
+        if (shared) {
+            backgroundImage = scaledToCover(backgroundImage, width, height);
+        }
+
+        String title = request.getTitle() != null ? request.getTitle()
+            : config != null && config.content != null ? config.content.title : null;
+        String body = request.getPromotionalText() != null ? request.getPromotionalText()
+            : config != null && config.content != null ? config.content.promotionalText : null;
+        Color textColor = firstColor(background.getTextColor(),
+            config != null && config.colorPalette != null ? config.colorPalette.text : null, DEFAULT_TEXT_COLOR);
+
+        // Text block: title then body, shrunk until it fits 80% of the height
+        float remPx = REM_PX * width / PREVIEW_WIDTH;
+        float titleSize = rem(background.getFontSize(), DEFAULT_TITLE_REM) * remPx;
+        float bodySize = rem(background.getBodyFontSize(), DEFAULT_BODY_REM) * remPx;
+        float wrapWidth = width * 0.8f;
+        List<TextLayout> titleLines;
+        List<TextLayout> bodyLines;
+        float gap;
+        float blockHeight;
+        int attempts = 0;
+        while (true) {
+            titleLines = layoutText(title, fonts.font(background.getFontFamily(), Font.BOLD, titleSize, title), wrapWidth);
+            bodyLines = layoutText(body, fonts.font(background.getFontFamily(), Font.PLAIN, bodySize, body), wrapWidth);
+            gap = titleLines.isEmpty() || bodyLines.isEmpty() ? 0 : bodySize * 0.6f;
+            blockHeight = linesHeight(titleLines) + gap + linesHeight(bodyLines);
+            if (blockHeight <= height * 0.8f || ++attempts >= 6) {
+                break;
+            }
+            titleSize *= 0.85f;
+            bodySize *= 0.85f;
+        }
+
+        String textPosition = config != null && config.layout != null && config.layout.textPosition != null
+            ? config.layout.textPosition : background.getTextPosition();
+        String alignment = config != null && config.layout != null ? config.layout.textAlignment : null;
+        float margin = height * 0.08f;
+        float top = "top".equalsIgnoreCase(textPosition) ? margin
+            : "bottom".equalsIgnoreCase(textPosition) ? height - margin - blockHeight
+            : (height - blockHeight) / 2;
+
+        List<PreparedFlyer.PlacedLine> placed = new ArrayList<>(titleLines.size() + bodyLines.size());
+        float y = place(titleLines, top, width, alignment, textColor, placed);
+        place(bodyLines, y + gap, width, alignment, textColor, placed);
+
+        RoundRectangle2D overlay = null;
+        Color overlayColor = CssPaints.parseColor(background.getTextOverlay());
+        if (overlayColor != null && overlayColor.getAlpha() > 0 && !placed.isEmpty()) {
+            float minX = Float.MAX_VALUE;
+            float maxX = -Float.MAX_VALUE;
+            for (PreparedFlyer.PlacedLine line : placed) {
+                minX = Math.min(minX, line.x());
+                maxX = Math.max(maxX, line.x() + line.layout().getVisibleAdvance());
+            }
+            float padding = width * 0.04f;
+            float arc = width * 0.03f;
+            overlay = new RoundRectangle2D.Float(minX - padding, top - padding,
+                maxX - minX + 2 * padding, blockHeight + 2 * padding, arc, arc);
+        }
+
+        return new PreparedFlyer(width, height, baseColor, layers, backgroundImage, overlay, overlayColor, placed);
+    }
+
+    /**
+     * Rendering statistics for the stats endpoint
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long count = renders.get();
+        stats.put("renders", count);
+        stats.put("failures", failures.get());
+        stats.put("rejected", rejected.get());
+        stats.put("avgPrepareMillis", averageMillis(prepareNanos, count));
+        stats.put("avgPaintMillis", averageMillis(paintNanos, count));
+        stats.put("avgEncodeMillis", averageMillis(encodeNanos, count));
+        long cpu = cpuNanos.get();
+        stats.put("flyersPerSecondPerCore", cpu > 0 ? Math.round(count * 1e9 / cpu * 10) / 10.0 : 0);
+        stats.put("threads", executor.getMaximumPoolSize());
+        stats.put("activeThreads", executor.getActiveCount());
+        stats.put("queuedRenders", executor.getQueue().size());
+
+        Map<String, Object> caches = new LinkedHashMap<>();
+        caches.put("fonts", Map.of("entries", fonts.size(), "hits", fonts.getHits(), "misses", fonts.getMisses()));
+        caches.put("layouts", Map.of("entries", layoutCache.size(), "hits", layoutHits.get(),
+            "misses", layoutMisses.get(), "evictions", layoutCache.getEvictions()));
+        caches.put("backgrounds", Map.of("entries", backgroundCache.size(), "hits", backgroundHits.get(),
+            "misses", backgroundMisses.get()));
+        caches.put("gradients", Map.of("entries", gradientCache.size(), "hits", gradientHits.get(),
+            "misses", gradientMisses.get()));
+        caches.put("scaledBackgrounds", Map.of("entries", scaledCache.size(), "hits", scaledHits.get(),
+            "misses", scaledMisses.get()));
+        stats.put("caches", caches);
+        return stats;
+    }
+
+    private PooledBuffer renderNow(FlyerRenderRequest request, Dimension size, String format) {
+        long cpuStart = currentThreadCpuTime();
+        try {
+            long start = System.nanoTime();
+            PreparedFlyer flyer = prepare(request, size.width, size.height);
+            long prepared = System.nanoTime();
+
+            BufferedImage image = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = image.createGraphics();
+            try {
+                flyer.paint(g);
+            } finally {
+                g.dispose();
+            }
+            long painted = System.nanoTime();
+
+            PooledBuffer encoded = encode(image, format);
+            long done = System.nanoTime();
+
+            prepareNanos.addAndGet(prepared - start);
+            paintNanos.addAndGet(painted - prepared);
+            encodeNanos.addAndGet(done - painted);
+            cpuNanos.addAndGet(currentThreadCpuTime() - cpuStart);
+            renders.incrementAndGet();
+            return encoded;
+        } catch (IOException e) {
+            failures.incrementAndGet();
+            throw new CompletionException(e);
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            throw e;
+        }
+    }
+
+    private PooledBuffer encode(BufferedImage image, String format) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        try (PooledBufferOutputStream out = new PooledBufferOutputStream(bufferPool,
+                image.getWidth() * image.getHeight() / 4)) {
+            // Memory-cached stream - the default ImageIO streams spill to temp files
+            try (ImageOutputStream imageOut = new MemoryCacheImageOutputStream(out)) {
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality("jpeg".equals(format) ? 0.9f : PNG_COMPRESSION_QUALITY);
+                writer.setOutput(imageOut);
+                writer.write(null, new IIOImage(image, null, null), param);
+            }
+            return out.toPooledBuffer();
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Shaped lines for one text and font, wrapped to the given width.
+     * Explicit newlines start new paragraphs; each paragraph's base direction
+     * comes from its first strong character, so Hebrew lines run right to left.
+     */
+    private List<TextLayout> layoutText(String text, Font font, float wrapWidth) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        LayoutKey key = new LayoutKey(text, font, Math.round(wrapWidth));
+        List<TextLayout> cached = layoutCache.get(key);
+        if (cached != null) {
+            layoutHits.incrementAndGet();
+            return cached;
+        }
+        layoutMisses.incrementAndGet();
+
+        List<TextLayout> lines = new ArrayList<>();
+        for (String paragraph : text.split("\\R")) {
+            String stripped = paragraph.strip();
+            if (stripped.isEmpty()) {
+                continue;
+            }
+            AttributedString attributed = new AttributedString(stripped);
+            attributed.addAttribute(TextAttribute.FONT, font);
+            LineBreakMeasurer measurer = new LineBreakMeasurer(attributed.getIterator(), FONT_RENDER_CONTEXT);
+            while (measurer.getPosition() < stripped.length()) {
+                lines.add(measurer.nextLayout(wrapWidth));
+            }
+        }
+        List<TextLayout> result = List.copyOf(lines);
+        layoutCache.put(key, result);
+        return result;
+    }
+
+    private static float linesHeight(List<TextLayout> lines) {
+        float height = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            TextLayout line = lines.get(i);
+            height += line.getAscent() + line.getDescent() + (i < lines.size() - 1 ? line.getLeading() : 0);
+        }
+        return height;
+    }
+
+    /**
+     * Position lines from the given top edge; returns the bottom of the last line
+     */
+    private static float place(List<TextLayout> lines, float top, int width, String alignment, Color color,
+                               List<PreparedFlyer.PlacedLine> placed) {
+        float y = top;
+        for (TextLayout line : lines) {
+            float advance = line.getVisibleAdvance();
+            float x = "left".equalsIgnoreCase(alignment) ? width * 0.1f
+                : "right".equalsIgnoreCase(alignment) ? width * 0.9f - advance
+                : (width - advance) / 2;
+            placed.add(new PreparedFlyer.PlacedLine(line, x, y + line.getAscent(), color));
+            y += line.getAscent() + line.getDescent() + line.getLeading();
+        }
+        return lines.isEmpty() ? y : y - lines.get(lines.size() - 1).getLeading();
+    }
+
+    /**
+     * Decode a generated background. Only this service's own images (by
+     * filename or /api/backgrounds/images URL) and inline data URLs are
+     * accepted - arbitrary remote URLs are never fetched. Data URLs are
+     * user-supplied, so they are subsampled to the target size while decoding.
+     */
+    private BufferedImage loadBackgroundImage(String reference, int targetEdge) {
+        if (reference == null || reference.isBlank()) {
+            return null;
+        }
+        try {
+            if (reference.startsWith("data:")) {
+                try (PooledBuffer data = bufferPool.decodeBase64(reference, reference.indexOf(',') + 1)) {
+                    return toDrawable(ImageDecoder.decode(data, targetEdge));
+                }
+            }
+
+            String filename = reference;
+            int query = filename.indexOf('?');
+            if (query >= 0) {
+                filename = filename.substring(0, query);
+            }
+            filename = filename.substring(filename.lastIndexOf('/') + 1);
+            if (!SAFE_FILENAME.matcher(filename).matches() || filename.startsWith(".")) {
+                throw new IllegalArgumentException("Unsupported background image reference");
+            }
+
+            BufferedImage cached = backgroundCache.get(filename);
+            if (cached != null) {
+                backgroundHits.incrementAndGet();
+                return cached;
+            }
+            backgroundMisses.incrementAndGet();
+            try (InputStream in = imageStore.openImage(filename)) {
+                BufferedImage image = toDrawable(ImageIO.read(new MemoryCacheImageInputStream(in)));
+                if (image != null) {
+                    backgroundCache.put(filename, image);
+                }
+                return image;
+            }
+        } catch (IOException e) {
+            logger.warn("Could not load flyer background image, using colors instead: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * CSS gradient backgrounds rasterized at reduced size. Multi-stop gradient
+     * paints cost tens of milliseconds per megapixel, but the result is smooth,
+     * so a small raster upscaled with bilinear filtering looks the same and
+     * the same background is shared by every flyer (and tile) that uses it.
+     */
+    private BufferedImage gradientRaster(String css, Color baseColor, int width, int height) {
+        List<CssPaints.Layer> layers = CssPaints.parseBackground(css);
+        if (layers.isEmpty()) {
+            return null;
+        }
+        double scale = Math.min(1.0, (double) GRADIENT_RASTER_EDGE / Math.max(width, height));
+        int rasterWidth = Math.max(1, (int) Math.round(width * scale));
+        int rasterHeight = Math.max(1, (int) Math.round(height * scale));
+
+        GradientKey key = new GradientKey(css, baseColor.getRGB(), rasterWidth, rasterHeight);
+        BufferedImage cached = gradientCache.get(key);
+        if (cached != null) {
+            gradientHits.incrementAndGet();
+            return cached;
+        }
+        gradientMisses.incrementAndGet();
+
+        BufferedImage raster = new BufferedImage(rasterWidth, rasterHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = raster.createGraphics();
+        try {
+            g.setColor(baseColor);
+            g.fillRect(0, 0, rasterWidth, rasterHeight);
+            for (CssPaints.Layer layer : layers) {
+                g.setPaint(layer.toPaint(rasterWidth, rasterHeight));
+                g.fillRect(0, 0, rasterWidth, rasterHeight);
+            }
+        } finally {
+            g.dispose();
+        }
+        gradientCache.put(key, raster);
+        return raster;
+    }
+
+    /**
+     * Cover-fitted copy of a shared (cached) background at the output size.
+     * A bilinear scale of a full flyer costs ~25 ms, a 1:1 blit about one, and
+     * bulk renders reuse the same background with different text. Large
+     * outputs are left to scale at paint time rather than pinning the memory.
+     */
+    private BufferedImage scaledToCover(BufferedImage source, int width, int height) {
+        if ((long) width * height > PRESCALE_MAX_PIXELS
+                || (source.getWidth() == width && source.getHeight() == height)) {
+            return source;
+        }
+        ScaledKey key = new ScaledKey(source, width, height);
+        BufferedImage cached = scaledCache.get(key);
+        if (cached != null) {
+            scaledHits.incrementAndGet();
+            return cached;
+        }
+        scaledMisses.incrementAndGet();
+
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            PreparedFlyer.applyQualityHints(g);
+            PreparedFlyer.drawCover(g, source, width, height);
+        } finally {
+            g.dispose();
+        }
+        scaledCache.put(key, scaled);
+        return scaled;
+    }
+
+    /**
+     * Decoders return byte-interleaved rasters; scaled drawImage from an int
+     * RGB raster is much faster, and the converted copy is what gets cached
+     */
+    private static BufferedImage toDrawable(BufferedImage image) {
+        if (image == null || image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB) {
+            return image;
+        }
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), type);
+        Graphics2D g = converted.createGraphics();
+        try {
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return converted;
+    }
+
+    private static Color firstColor(String... candidates) {
+        for (String candidate : candidates) {
+            Color color = CssPaints.parseColor(candidate);
+            if (color != null) {
+                return color;
+            }
+        }
+        return Color.WHITE;
+    }
+
+    private static float rem(Float value, float defaultValue) {
+        return value != null && value > 0 && value < 20 ? value : defaultValue;
+    }
+
+    private static String resolveFormat(String format) {
+        String value = format == null ? "png" : format.toLowerCase(Locale.ROOT);
+        return switch (value) {
+            case "png" -> "png";
+            case "jpg", "jpeg" -> "jpeg";
+            default -> throw new IllegalArgumentException("Unsupported format: " + format);
+        };
+    }
+
+    private long currentThreadCpuTime() {
+        return threadMXBean.isCurrentThreadCpuTimeSupported() ? threadMXBean.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    private static double averageMillis(AtomicLong nanos, long count) {
+        return count > 0 ? Math.round(nanos.get() / (double) count / 1e5) / 10.0 : 0;
+    }
+
+    private record LayoutKey(String text, Font font, int wrapWidth) {
+    }
+
+    private record GradientKey(String css, int baseColor, int width, int height) {
+    }
+
+    // Sources are the cached background instances, so identity is the right key
+    private record ScaledKey(BufferedImage source, int width, int height) {
+    }
+}
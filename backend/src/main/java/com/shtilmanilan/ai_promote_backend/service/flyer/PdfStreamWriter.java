@@ -0,0 +1,109 @@
+package com.shtilmanilan.ai_promote_backend.service.flyer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Writes a one-page PDF holding the flyer as a full-page image. The image is
+ * a FlateDecode stream with the PNG predictor, which is exactly the PNG-filtered
+ * zlib data the tiles produce, so it streams straight through. Its length is
+ * not known up front and goes into a separate object written afterwards.
+ */
+class PdfStreamWriter implements TiledImageWriter {
+
+    private static final int CATALOG = 1;
+    private static final int PAGES = 2;
+    private static final int PAGE = 3;
+    private static final int IMAGE = 4;
+    private static final int CONTENTS = 5;
+    private static final int IMAGE_LENGTH = 6;
+
+    // Tracks byte offsets for the cross-reference table
+    private final CountingOutputStream out;
+    private final int width;
+    private final int height;
+    private final double pageWidth;
+    private final double pageHeight;
+    private final long[] offsets = new long[IMAGE_LENGTH + 1];
+    private long imageStart;
+
+    PdfStreamWriter(OutputStream out, int width, int height, int dpi) {
+        this.out = new CountingOutputStream(out);
+        this.width = width;
+        this.height = height;
+        // PDF user space is in points (1/72 inch)
+        this.pageWidth = width * 72.0 / dpi;
+        this.pageHeight = height * 72.0 / dpi;
+    }
+
+    @Override
+    public void begin() throws IOException {
+        ascii("%PDF-1.4\n%âãÏÓ\n");
+
+        startObject(CATALOG);
+        ascii("<< /Type /Catalog /Pages " + PAGES + " 0 R >>\nendobj\n");
+
+        startObject(PAGES);
+        ascii("<< /Type /Pages /Kids [" + PAGE + " 0 R] /Count 1 >>\nendobj\n");
+
+        startObject(PAGE);
+        ascii("<< /Type /Page /Parent " + PAGES + " 0 R /MediaBox [0 0 " + number(pageWidth) + " " + number(pageHeight)
+            + "] /Resources << /XObject << /Im0 " + IMAGE + " 0 R >> >> /Contents " + CONTENTS + " 0 R >>\nendobj\n");
+
+        String contents = "q " + number(pageWidth) + " 0 0 " + number(pageHeight) + " 0 0 cm /Im0 Do Q";
+        startObject(CONTENTS);
+        ascii("<< /Length " + contents.length() + " >>\nstream\n" + contents + "\nendstream\nendobj\n");
+
+        startObject(IMAGE);
+        ascii("<< /Type /XObject /Subtype /Image /Width " + width + " /Height " + height
+            + " /ColorSpace /DeviceRGB /BitsPerComponent 8 /Filter /FlateDecode"
+            + " /DecodeParms << /Predictor 15 /Colors 3 /BitsPerComponent 8 /Columns " + width + " >>"
+            + " /Length " + IMAGE_LENGTH + " 0 R >>\nstream\n");
+        imageStart = out.getCount();
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        out.write(data, offset, length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        long imageLength = out.getCount() - imageStart;
+        ascii("\nendstream\nendobj\n");
+
+        startObject(IMAGE_LENGTH);
+        ascii(imageLength + "\nendobj\n");
+
+        long xref = out.getCount();
+        StringBuilder table = new StringBuilder("xref\n0 " + offsets.length + "\n0000000000 65535 f \n");
+        for (int object = 1; object < offsets.length; object++) {
+            table.append(String.format(Locale.ROOT, "%010d 00000 n \n", offsets[object]));
+        }
+        table.append("trailer\n<< /Size ").append(offsets.length).append(" /Root ").append(CATALOG)
+            .append(" 0 R >>\nstartxref\n").append(xref).append("\n%%EOF\n");
+        ascii(table.toString());
+        out.flush();
+    }
+
+    private void startObject(int number) throws IOException {
+        offsets[number] = out.getCount();
+        ascii(number + " 0 obj\n");
+    }
+
+    private void ascii(String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static String number(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.shtilmanilan.ai_promote_backend.service.flyer;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Writes a truecolor PNG whose image data is streamed in: IHDR and pHYs up
+ * front, one IDAT chunk per flush, IEND at the end. Nothing but the pending
+ * chunk is buffered, so the output size does not affect memory.
+ */
+class PngStreamWriter implements TiledImageWriter {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int MAX_CHUNK_BYTES = 256 << 10;
+
+    private final DataOutputStream out;
+    private final int width;
+    private final int height;
+    private final int dpi;
+    private final byte[] pending = new byte[MAX_CHUNK_BYTES];
+    private int pendingLength;
+
+    PngStreamWriter(OutputStream out, int width, int height, int dpi) {
+        this.out = new DataOutputStream(out);
+        this.width = width;
+        this.height = height;
+        this.dpi = dpi;
+    }
+
+    @Override
+    public void begin() throws IOException {
+        out.write(SIGNATURE);
+
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8;  // bit depth
+        header[9] = 2;  // color type: RGB
+        // compression, filter and interlace methods are all 0
+        writeChunk("IHDR", header, header.length);
+
+        // Physical size so print software lays the page out at the right dpi
+        byte[] physical = new byte[9];
+        int pixelsPerMeter = (int) Math.round(dpi / 0.0254);
+        putInt(physical, 0, pixelsPerMeter);
+        putInt(physical, 4, pixelsPerMeter);
+        physical[8] = 1;  // unit: meter
+        writeChunk("pHYs", physical, physical.length);
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        while (length > 0) {
+            int count = Math.min(length, pending.length - pendingLength);
+            System.arraycopy(data, offset, pending, pendingLength, count);
+            pendingLength += count;
+            offset += count;
+            length -= count;
+            if (pendingLength == pending.length) {
+                writePending();
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writePending();
+        out.flush();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        writePending();
+        writeChunk("IEND", pending, 0);
+        out.flush();
+    }
+
+    private void writePending() throws IOException {
+        if (pendingLength > 0) {
+            writeChunk("IDAT", pending, pendingLength);
+            pendingLength = 0;
+        }
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static void putInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,106 @@
+package com.shtilmanilan.ai_promote_backend.service.flyer;
+
+import java.awt.*;
+import java.awt.font.TextLayout;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * A flyer with everything resolved for one output size: paints, the decoded
+ * background image, fonts and shaped text lines with their positions.
+ *
+ * Immutable once built, so one instance can paint any number of targets
+ * (whole images or tiles of a larger one) from several threads at once.
+ */
+public final class PreparedFlyer {
+
+    private final int width;
+    private final int height;
+    private final Color baseColor;
+    private final List<Paint> layers;
+    private final BufferedImage backgroundImage;
+    private final RoundRectangle2D overlay;
+    private final Color overlayColor;
+    private final List<PlacedLine> lines;
+
+    PreparedFlyer(int width, int height, Color baseColor, List<Paint> layers, BufferedImage backgroundImage,
+                  RoundRectangle2D overlay, Color overlayColor, List<PlacedLine> lines) {
+        this.width = width;
+        this.height = height;
+        this.baseColor = baseColor;
+        this.layers = List.copyOf(layers);
+        this.backgroundImage = backgroundImage;
+        this.overlay = overlay;
+        this.overlayColor = overlayColor;
+        this.lines = List.copyOf(lines);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Paint the flyer in flyer coordinates. Callers rendering a tile translate
+     * and clip the graphics first; Java2D then only rasterizes what the clip
+     * covers, including the scaled background image.
+     */
+    public void paint(Graphics2D g) {
+        applyQualityHints(g);
+
+        g.setColor(baseColor);
+        g.fillRect(0, 0, width, height);
+
+        if (backgroundImage != null) {
+            drawCover(g, backgroundImage, width, height);
+        }
+
+        for (Paint layer : layers) {
+            g.setPaint(layer);
+            g.fillRect(0, 0, width, height);
+        }
+
+        if (overlay != null) {
+            g.setColor(overlayColor);
+            g.fill(overlay);
+        }
+
+        for (PlacedLine line : lines) {
+            g.setColor(line.color());
+            line.layout().draw(g, line.x(), line.baseline());
+        }
+    }
+
+    /**
+     * Draw an image the way CSS background-size: cover does - scaled to fill
+     * the whole area, centered, cropping whatever overflows
+     */
+    static void drawCover(Graphics2D g, BufferedImage image, int width, int height) {
+        if (image.getWidth() == width && image.getHeight() == height) {
+            g.drawImage(image, 0, 0, null);
+            return;
+        }
+        double scale = Math.max((double) width / image.getWidth(), (double) height / image.getHeight());
+        int drawWidth = (int) Math.ceil(image.getWidth() * scale);
+        int drawHeight = (int) Math.ceil(image.getHeight() * scale);
+        g.drawImage(image, (width - drawWidth) / 2, (height - drawHeight) / 2, drawWidth, drawHeight, null);
+    }
+
+    /**
+     * Hints must match the FontRenderContext the text was laid out with
+     */
+    static void applyQualityHints(Graphics2D g) {
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+    }
+
+    record PlacedLine(TextLayout layout, float x, float baseline, Color color) {
+    }
+}
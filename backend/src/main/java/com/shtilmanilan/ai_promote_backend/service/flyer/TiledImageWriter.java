@@ -0,0 +1,26 @@
+package com.shtilmanilan.ai_promote_backend.service.flyer;
+
+import java.io.IOException;
+
+/**
+ * Container for a zlib-compressed, PNG-filtered RGB image that arrives in
+ * pieces. Both PNG (IDAT chunks) and PDF (a FlateDecode image with the PNG
+ * predictor) can carry the same compressed bytes, so tiles are encoded once
+ * and only the framing differs.
+ */
+interface TiledImageWriter {
+
+    void begin() throws IOException;
+
+    /**
+     * Append the next bytes of the zlib stream
+     */
+    void write(byte[] data, int offset, int length) throws IOException;
+
+    /**
+     * Push what has been written so far to the client
+     */
+    void flush() throws IOException;
+
+    void finish() throws IOException;
+}
@@ -2,6 +2,7 @@ package com.shtilmanilan.ai_promote_backend.service.gemini;
 
 import com.shtilmanilan.ai_promote_backend.model.ai.TextGenerationRequest;
 import com.shtilmanilan.ai_promote_backend.model.ai.TextGenerationResponse;
+import com.shtilmanilan.ai_promote_backend.service.ProviderQuotaGovernor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,12 +23,16 @@ import java.util.Map;
 public class GeminiServiceImpl implements GeminiService {
     
     private static final Logger logger = LoggerFactory.getLogger(GeminiServiceImpl.class);
+    private static final int MAX_TOKENS = 2000;
     private final RestTemplate restTemplate = new RestTemplate();
     private final String apiKey;
+    private final ProviderQuotaGovernor.Quota quota;
     
     @Autowired
-    public GeminiServiceImpl(@Qualifier("geminiApiKey") String geminiApiKey) {
+    public GeminiServiceImpl(@Qualifier("geminiApiKey") String geminiApiKey, ProviderQuotaGovernor quotaGovernor) {
         this.apiKey = geminiApiKey;
+        // Gemini sends no rate limit headers, so these free tier limits stay in force
+        this.quota = quotaGovernor.quota("gemini", geminiApiKey, 15, 1_000_000);
         logger.info("Gemini service initialized with API key: {}", apiKey != null ? "present" : "missing");
     }
     
@@ -39,6 +44,13 @@ public class GeminiServiceImpl implements GeminiService {
                 throw new IllegalStateException("Gemini API key is not configured");
             }
             
+            // Gemini is the last fallback: when it is out of quota, answer without calling it
+            ProviderQuotaGovernor.Permit permit = quota.acquire(
+                ProviderQuotaGovernor.estimateTokens(request.getPrompt(), MAX_TOKENS));
+            if (permit == null) {
+                return fallbackResponse();
+            }
+            
             try {
                 // Use Google's Gemini API directly via REST
                 String apiUrl = "https://generativelanguage.googleapis.com/v1beta/models/gemini-1.5-flash:generateContent?key=" + apiKey;
@@ -63,7 +75,7 @@ public class GeminiServiceImpl implements GeminiService {
                 
                 Map<String, Object> generationConfig = new HashMap<>();
                 generationConfig.put("temperature", request.getTemperature());
-                generationConfig.put("maxOutputTokens", 2000);
+                generationConfig.put("maxOutputTokens", MAX_TOKENS);
                 requestBody.put("generationConfig", generationConfig);
                 
                 HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
@@ -77,6 +89,10 @@ public class GeminiServiceImpl implements GeminiService {
                 
                 // Parse response - these casts are necessary when working with dynamic JSON responses
                 Map<String, Object> responseBody = response.getBody();
+                Map<String, Object> usage = responseBody != null
+                    ? (Map<String, Object>) responseBody.get("usageMetadata") : null;
+                permit.complete(response.getHeaders(), usage != null && usage.get("totalTokenCount") instanceof Number total
+                    ? total.longValue() : -1);
                 if (responseBody != null) {
                     List<Map<String, Object>> candidates = (List<Map<String, Object>>) responseBody.get("candidates");
                     if (candidates != null && !candidates.isEmpty()) {
@@ -93,16 +109,21 @@ public class GeminiServiceImpl implements GeminiService {
                 
                 throw new RuntimeException("Failed to parse Gemini response");
             } catch (Exception e) {
+                permit.fail(e);
                 logger.error("Gemini API error: {}", e.getMessage());
                 
                 // Return a user-friendly fallback response
-                TextGenerationResponse fallbackResponse = new TextGenerationResponse();
-                fallbackResponse.setGeneratedText("Sorry, we couldn't generate a response with Gemini at this time. Please try again later.");
-                return fallbackResponse;
+                return fallbackResponse();
             }
         } catch (Exception e) {
             logger.error("Error in generateText: {}", e.getMessage());
             throw e;
         }
     }
+    
+    private static TextGenerationResponse fallbackResponse() {
+        TextGenerationResponse fallbackResponse = new TextGenerationResponse();
+        fallbackResponse.setGeneratedText("Sorry, we couldn't generate a response with Gemini at this time. Please try again later.");
+        return fallbackResponse;
+    }
 } 
\ No newline at end of file
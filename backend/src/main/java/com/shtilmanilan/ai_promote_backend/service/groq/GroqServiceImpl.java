@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.shtilmanilan.ai_promote_backend.model.ai.TextGenerationRequest;
 import com.shtilmanilan.ai_promote_backend.model.ai.TextGenerationResponse;
+import com.shtilmanilan.ai_promote_backend.service.ProviderQuotaGovernor;
 import com.shtilmanilan.ai_promote_backend.service.gemini.GeminiService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -26,15 +27,21 @@ import java.util.Map;
 public class GroqServiceImpl implements GroqService {
     
     private static final Logger logger = LoggerFactory.getLogger(GroqServiceImpl.class);
+    private static final String SYSTEM_PROMPT = "You are a bilingual assistant that can write in both English and Hebrew. When the input is in Hebrew, respond in Hebrew. When the input is in English, respond in English. Write promotional text exactly as requested, without any prefixes or additions. The text should be in two lines with a line break between them.";
+    private static final int MAX_TOKENS = 150;
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final RestTemplate restTemplate = new RestTemplate();
     private final String apiKey;
     private final GeminiService geminiService;
+    private final ProviderQuotaGovernor.Quota quota;
     
     @Autowired
-    public GroqServiceImpl(@Qualifier("groqApiKey") String groqApiKey, GeminiService geminiService) {
+    public GroqServiceImpl(@Qualifier("groqApiKey") String groqApiKey, GeminiService geminiService,
+                           ProviderQuotaGovernor quotaGovernor) {
         this.apiKey = groqApiKey;
         this.geminiService = geminiService;
+        // Free tier limits for llama3-70b until Groq reports the real ones
+        this.quota = quotaGovernor.quota("groq", groqApiKey, 30, 6000);
         logger.info("Groq service initialized with API key: {}", apiKey != null ? "present" : "missing");
     }
     
@@ -46,6 +53,14 @@ public class GroqServiceImpl implements GroqService {
                 return geminiService.generateText(request);
             }
             
+            // Reroute before the call rather than after a 429
+            ProviderQuotaGovernor.Permit permit = quota.acquire(
+                ProviderQuotaGovernor.estimateTokens(SYSTEM_PROMPT + request.getPrompt(), MAX_TOKENS));
+            if (permit == null) {
+                logger.info("Groq quota exhausted, falling back to Gemini");
+                return geminiService.generateText(request);
+            }
+            
             try {
                 // Set up headers
                 HttpHeaders headers = new HttpHeaders();
@@ -56,7 +71,7 @@ public class GroqServiceImpl implements GroqService {
                 // Build request body
                 Map<String, Object> requestBody = new HashMap<>();
                 requestBody.put("model", "llama3-70b-8192");
-                requestBody.put("max_tokens", 150);
+                requestBody.put("max_tokens", MAX_TOKENS);
                 requestBody.put("temperature", request.getTemperature());
                 
                 List<Map<String, String>> messages = new ArrayList<>();
@@ -64,7 +79,7 @@ public class GroqServiceImpl implements GroqService {
                 // Add system message
                 Map<String, String> systemMessage = new HashMap<>();
                 systemMessage.put("role", "system");
-                systemMessage.put("content", "You are a bilingual assistant that can write in both English and Hebrew. When the input is in Hebrew, respond in Hebrew. When the input is in English, respond in English. Write promotional text exactly as requested, without any prefixes or additions. The text should be in two lines with a line break between them.");
+                systemMessage.put("content", SYSTEM_PROMPT);
                 messages.add(systemMessage);
                 
                 // Add user message
@@ -100,6 +115,7 @@ public class GroqServiceImpl implements GroqService {
                     logger.error("Response body: {}", response.getBody());
                     throw new RuntimeException("Error parsing Groq API response", e);
                 }
+                permit.complete(response.getHeaders(), responseNode.path("usage").path("total_tokens").asLong(-1));
                 
                 String generatedText = responseNode
                     .path("choices")
@@ -116,6 +132,7 @@ public class GroqServiceImpl implements GroqService {
                 textResponse.setGeneratedText(generatedText);
                 return textResponse;
             } catch (Exception e) {
+                permit.fail(e);
                 logger.error("Groq API error: {}", e.getMessage());
                 
                 // Check for rate limit error
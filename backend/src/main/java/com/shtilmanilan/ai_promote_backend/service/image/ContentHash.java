@@ -0,0 +1,92 @@
+package com.shtilmanilan.ai_promote_backend.service.image;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Fast content fingerprint of an image payload: 64-bit XXH64 plus the byte length.
+ * Used as a cache key for exact re-uploads; not a cryptographic hash.
+ */
+public record ContentHash(long hash, int length) {
+
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    /**
+     * Hash the remaining bytes of the buffer without moving its position
+     */
+    public static ContentHash of(ByteBuffer content) {
+        ByteBuffer data = content.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        return new ContentHash(xxh64(data, 0), data.remaining());
+    }
+
+    static long xxh64(ByteBuffer data, long seed) {
+        int length = data.remaining();
+        int position = data.position();
+        int end = position + length;
+        long hash;
+
+        if (length >= 32) {
+            long v1 = seed + P1 + P2;
+            long v2 = seed + P2;
+            long v3 = seed;
+            long v4 = seed - P1;
+            int limit = end - 32;
+            do {
+                v1 = round(v1, data.getLong(position));
+                v2 = round(v2, data.getLong(position + 8));
+                v3 = round(v3, data.getLong(position + 16));
+                v4 = round(v4, data.getLong(position + 24));
+                position += 32;
+            } while (position <= limit);
+
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7)
+                 + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = seed + P5;
+        }
+
+        hash += length;
+
+        while (position + 8 <= end) {
+            hash ^= round(0, data.getLong(position));
+            hash = Long.rotateLeft(hash, 27) * P1 + P4;
+            position += 8;
+        }
+        if (position + 4 <= end) {
+            hash ^= (data.getInt(position) & 0xFFFFFFFFL) * P1;
+            hash = Long.rotateLeft(hash, 23) * P2 + P3;
+            position += 4;
+        }
+        while (position < end) {
+            hash ^= (data.get(position) & 0xFFL) * P5;
+            hash = Long.rotateLeft(hash, 11) * P1;
+            position++;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= P2;
+        hash ^= hash >>> 29;
+        hash *= P3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * P2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * P1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * P1 + P4;
+    }
+}
@@ -0,0 +1,250 @@
+package com.shtilmanilan.ai_promote_backend.service.image;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Image Buffer Pool
+ *
+ * Pooled off-heap buffers shared by the image ingest paths (Azure Vision
+ * uploads) and the Imagen decode/analyse/write path. Multi-megabyte images
+ * live in recycled direct memory instead of fresh heap arrays, which keeps
+ * them out of G1's humongous regions under concurrent load.
+ *
+ * Features:
+ * - Power-of-four size classes from 64 KiB to 16 MiB
+ * - Small classes are carved out of shared 4 MiB direct slabs
+ * - Reference-counted buffers so several stages can share one image
+ * - Leak detection: buffers collected without being released are reported and
+ *   dropped (a view of one may still be in use), and the class may replace them
+ * - Occupancy metrics per size class
+ */
+@Service
+public class ImageBufferPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageBufferPool.class);
+
+    private static final int[] SIZE_CLASSES = {64 << 10, 256 << 10, 1 << 20, 4 << 20, 16 << 20};
+    private static final int SLAB_BYTES = 4 << 20;
+
+    // Base64 is decoded in fixed chunks; must be a multiple of 4 characters
+    private static final int BASE64_CHUNK_CHARS = 16 << 10;
+    private static final int STREAM_CHUNK_BYTES = 8 << 10;
+    private static final int DEFAULT_STREAM_SIZE = 256 << 10;
+
+    private final SizeClass[] sizeClasses = new SizeClass[SIZE_CLASSES.length];
+    private final Cleaner cleaner = Cleaner.create();
+
+    private final AtomicLong acquires = new AtomicLong();
+    private final AtomicLong reuses = new AtomicLong();
+    private final AtomicLong unpooledAllocations = new AtomicLong();
+    private final AtomicLong leaks = new AtomicLong();
+
+    public ImageBufferPool(@Value("${image.buffer-pool.max-buffers-per-class:16}") int maxBuffersPerClass) {
+        for (int i = 0; i < SIZE_CLASSES.length; i++) {
+            sizeClasses[i] = new SizeClass(SIZE_CLASSES[i], maxBuffersPerClass);
+        }
+        logger.info("Image buffer pool initialized: {} size classes, up to {} buffers each",
+            SIZE_CLASSES.length, maxBuffersPerClass);
+    }
+
+    /**
+     * Acquire a cleared buffer with at least the given capacity.
+     * The caller owns one reference and must release (or close) it.
+     */
+    public PooledBuffer acquire(int minCapacity) {
+        acquires.incrementAndGet();
+
+        int index = sizeClassIndex(minCapacity);
+        if (index < 0) {
+            // Larger than the biggest class - allocate off-heap but never retain it
+            unpooledAllocations.incrementAndGet();
+            return new PooledBuffer(this, ByteBuffer.allocateDirect(minCapacity), -1, cleaner);
+        }
+
+        SizeClass sizeClass = sizeClasses[index];
+        ByteBuffer memory = sizeClass.free.poll();
+        if (memory != null) {
+            reuses.incrementAndGet();
+        } else {
+            memory = sizeClass.allocate();
+            if (memory == null) {
+                // Class is at capacity - hand out a buffer that is dropped on release
+                unpooledAllocations.incrementAndGet();
+                return new PooledBuffer(this, ByteBuffer.allocateDirect(sizeClass.size), -1, cleaner);
+            }
+        }
+
+        sizeClass.inUse.incrementAndGet();
+        memory.clear();
+        return new PooledBuffer(this, memory, index, cleaner);
+    }
+
+    /**
+     * Decode base64 text starting at the given offset into a pooled buffer.
+     * Works through small fixed chunks so no full-size byte[] copy of the
+     * encoded or decoded image is created on the heap.
+     */
+    public PooledBuffer decodeBase64(String data, int offset) {
+        int encodedLength = data.length() - offset;
+        PooledBuffer decoded = acquire(Math.max(1, encodedLength / 4 * 3 + 3));
+        try {
+            Base64.Decoder decoder = Base64.getDecoder();
+            ByteBuffer target = decoded.buffer();
+            byte[] encodedChunk = new byte[BASE64_CHUNK_CHARS];
+            byte[] decodedChunk = new byte[BASE64_CHUNK_CHARS / 4 * 3];
+
+            for (int position = offset; position < data.length(); position += BASE64_CHUNK_CHARS) {
+                int length = Math.min(BASE64_CHUNK_CHARS, data.length() - position);
+                for (int i = 0; i < length; i++) {
+                    char c = data.charAt(position + i);
+                    if (c > 0x7F) {
+                        throw new IllegalArgumentException("Illegal base64 character: " + c);
+                    }
+                    encodedChunk[i] = (byte) c;
+                }
+                byte[] source = length == BASE64_CHUNK_CHARS ? encodedChunk : Arrays.copyOf(encodedChunk, length);
+                int count = decoder.decode(source, decodedChunk);
+                target.put(decodedChunk, 0, count);
+            }
+
+            decoded.seal();
+            return decoded;
+        } catch (RuntimeException e) {
+            decoded.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Read an upload stream into a pooled buffer, failing as soon as it grows
+     * past maxBytes. expectedSize sizes the first buffer (use -1 if unknown).
+     */
+    public PooledBuffer readFully(InputStream in, long expectedSize, long maxBytes) throws IOException {
+        if (expectedSize > maxBytes) {
+            throw new ImageTooLargeException(maxBytes);
+        }
+        int initialSize = expectedSize > 0 ? (int) expectedSize : DEFAULT_STREAM_SIZE;
+
+        try (PooledBufferOutputStream out = new PooledBufferOutputStream(this, initialSize)) {
+            byte[] chunk = new byte[STREAM_CHUNK_BYTES];
+            long total = 0;
+            int count;
+            while ((count = in.read(chunk)) != -1) {
+                total += count;
+                if (total > maxBytes) {
+                    throw new ImageTooLargeException(maxBytes);
+                }
+                out.write(chunk, 0, count);
+            }
+            return out.toPooledBuffer();
+        }
+    }
+
+    /**
+     * Pool statistics for the stats endpoints
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("acquires", acquires.get());
+        stats.put("reuses", reuses.get());
+        stats.put("unpooledAllocations", unpooledAllocations.get());
+        stats.put("leaks", leaks.get());
+
+        long pooledBytes = 0;
+        Map<String, Object> classes = new LinkedHashMap<>();
+        for (SizeClass sizeClass : sizeClasses) {
+            Map<String, Object> classStats = new LinkedHashMap<>();
+            classStats.put("allocated", sizeClass.allocated.get());
+            classStats.put("inUse", sizeClass.inUse.get());
+            classStats.put("free", sizeClass.free.size());
+            classStats.put("capacity", sizeClass.maxBuffers);
+            classes.put((sizeClass.size >> 10) + "KiB", classStats);
+            pooledBytes += (long) sizeClass.allocated.get() * sizeClass.size;
+        }
+        stats.put("pooledBytes", pooledBytes);
+        stats.put("sizeClasses", classes);
+        return stats;
+    }
+
+    void recycle(int sizeClassIndex, ByteBuffer memory) {
+        if (sizeClassIndex < 0) {
+            return;
+        }
+        SizeClass sizeClass = sizeClasses[sizeClassIndex];
+        sizeClass.inUse.decrementAndGet();
+        sizeClass.free.offer(memory);
+    }
+
+    /**
+     * A buffer was collected without being released. Its memory is left to
+     * the GC rather than recycled; the class stops counting it, so it can
+     * allocate a replacement.
+     */
+    void reportLeak(int sizeClassIndex, int capacity) {
+        if (sizeClassIndex >= 0) {
+            SizeClass sizeClass = sizeClasses[sizeClassIndex];
+            sizeClass.inUse.decrementAndGet();
+            sizeClass.allocated.decrementAndGet();
+        }
+        leaks.incrementAndGet();
+        logger.warn("Image buffer of {} bytes was garbage collected without being released (size class {})",
+            capacity, sizeClassIndex);
+    }
+
+    private static int sizeClassIndex(int capacity) {
+        for (int i = 0; i < SIZE_CLASSES.length; i++) {
+            if (capacity <= SIZE_CLASSES[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static class SizeClass {
+        final int size;
+        final int maxBuffers;
+        final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+        final AtomicInteger allocated = new AtomicInteger();
+        final AtomicInteger inUse = new AtomicInteger();
+
+        SizeClass(int size, int maxBuffers) {
+            this.size = size;
+            this.maxBuffers = maxBuffers;
+        }
+
+        /**
+         * Grow the class by one slab. Returns one buffer to the caller and
+         * queues the rest, or null when the class is at capacity.
+         */
+        synchronized ByteBuffer allocate() {
+            int remaining = maxBuffers - allocated.get();
+            if (remaining <= 0) {
+                return null;
+            }
+
+            int buffersPerSlab = Math.max(1, Math.min(remaining, SLAB_BYTES / size));
+            ByteBuffer slab = ByteBuffer.allocateDirect(buffersPerSlab * size);
+            allocated.addAndGet(buffersPerSlab);
+
+            for (int i = 1; i < buffersPerSlab; i++) {
+                free.offer(slab.slice(i * size, size));
+            }
+            return slab.slice(0, size);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.shtilmanilan.ai_promote_backend.service.image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Decodes pooled image bytes, optionally subsampling rows and columns while
+ * reading so that analysis passes never materialise the full-resolution raster.
+ */
+public final class ImageDecoder {
+
+    /**
+     * Largest image accepted, judged from its header before any pixel is
+     * decoded: a few kilobytes of PNG can declare a raster big enough to
+     * exhaust the heap
+     */
+    public static final long MAX_PIXELS = 64L << 20;
+
+    private ImageDecoder() {
+    }
+
+    /**
+     * Decode the image subsampled by a whole-number step, so its longer edge
+     * ends up between maxEdge and 2 * maxEdge (or unchanged if already smaller).
+     * Returns null if no reader recognises the format, and fails if the
+     * header declares more than MAX_PIXELS.
+     */
+    public static BufferedImage decode(PooledBuffer image, int maxEdge) throws IOException {
+        try (ImageInputStream input = new MemoryCacheImageInputStream(image.inputStream())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > MAX_PIXELS) {
+                    throw new IOException("Image of " + width + "x" + height
+                        + " exceeds the limit of " + MAX_PIXELS + " pixels");
+                }
+                int longEdge = Math.max(width, height);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, longEdge / maxEdge);
+                if (step > 1) {
+                    param.setSourceSubsampling(step, step, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
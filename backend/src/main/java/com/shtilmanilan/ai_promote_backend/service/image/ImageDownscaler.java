@@ -0,0 +1,154 @@
+package com.shtilmanilan.ai_promote_backend.service.image;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Image Downscaler
+ *
+ * Shrinks large uploads before they are sent to Azure Vision. Its
+ * Categories, Description, Color and Objects features work as well at about
+ * 1024 px as on a 4000 px phone photo, so the smaller JPEG cuts upload time
+ * and Azure latency without changing the analysis.
+ *
+ * Features:
+ * - Subsampled decode (see {@link ImageDecoder}) followed by a bilinear resize
+ * - JPEG re-encode straight into pooled memory
+ * - Original bytes are kept whenever re-encoding would not make them smaller
+ * - Bytes-saved metrics
+ */
+@Service
+public class ImageDownscaler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageDownscaler.class);
+
+    private final ImageBufferPool imageBufferPool;
+    private final boolean enabled;
+    private final int maxEdge;
+    private final float jpegQuality;
+
+    private final AtomicLong imagesDownscaled = new AtomicLong();
+    private final AtomicLong imagesKept = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+
+    public ImageDownscaler(ImageBufferPool imageBufferPool,
+                           @Value("${image.downscale.enabled:true}") boolean enabled,
+                           @Value("${image.downscale.max-edge:1024}") int maxEdge,
+                           @Value("${image.downscale.jpeg-quality:0.85}") float jpegQuality) {
+        this.imageBufferPool = imageBufferPool;
+        this.enabled = enabled;
+        this.maxEdge = maxEdge;
+        this.jpegQuality = jpegQuality;
+    }
+
+    /**
+     * Long edge to decode at when the result is going to be passed to {@link #downscale}
+     */
+    public int getDecodeEdge() {
+        return maxEdge;
+    }
+
+    /**
+     * Produce the payload to upload for an image already decoded with
+     * {@link #getDecodeEdge()}. Returns either a re-encoded smaller JPEG or a
+     * new reference to the original; the caller releases whichever it gets.
+     */
+    public PooledBuffer downscale(PooledBuffer original, BufferedImage decoded) {
+        bytesIn.addAndGet(original.size());
+        if (!enabled || decoded == null || Math.max(decoded.getWidth(), decoded.getHeight()) <= maxEdge) {
+            return keep(original);
+        }
+
+        try {
+            PooledBuffer encoded = encodeJpeg(resize(decoded));
+            if (encoded.size() >= original.size()) {
+                encoded.release();
+                return keep(original);
+            }
+            imagesDownscaled.incrementAndGet();
+            bytesOut.addAndGet(encoded.size());
+            logger.info("Downscaled upload from {} to {} bytes", original.size(), encoded.size());
+            return encoded;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Downscaling failed, uploading original: {}", e.getMessage());
+            return keep(original);
+        }
+    }
+
+    /**
+     * Downscaler statistics for the stats endpoint
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("maxEdge", maxEdge);
+        stats.put("imagesDownscaled", imagesDownscaled.get());
+        stats.put("imagesKept", imagesKept.get());
+        stats.put("bytesIn", bytesIn.get());
+        stats.put("bytesOut", bytesOut.get());
+        stats.put("bytesSaved", bytesIn.get() - bytesOut.get());
+        return stats;
+    }
+
+    private PooledBuffer keep(PooledBuffer original) {
+        imagesKept.incrementAndGet();
+        bytesOut.addAndGet(original.size());
+        return original.retain();
+    }
+
+    /**
+     * Scale to maxEdge on the long side, flattening any alpha onto white for JPEG
+     */
+    private BufferedImage resize(BufferedImage source) {
+        double scale = (double) maxEdge / Math.max(source.getWidth(), source.getHeight());
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private PooledBuffer encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(jpegQuality);
+
+        // A 1024 px JPEG is typically 100-300 KB
+        try (PooledBufferOutputStream out = new PooledBufferOutputStream(imageBufferPool, 256 << 10)) {
+            try (ImageOutputStream output = new MemoryCacheImageOutputStream(out)) {
+                writer.setOutput(output);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            return out.toPooledBuffer();
+        }
+    }
+}
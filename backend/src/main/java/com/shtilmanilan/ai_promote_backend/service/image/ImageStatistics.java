@@ -0,0 +1,33 @@
+package com.shtilmanilan.ai_promote_backend.service.image;
+
+/**
+ * Full-resolution pixel statistics of one image: BT.601 luma mean and
+ * variance (0-255 scale) and the 512-bin quantized colour histogram.
+ */
+public record ImageStatistics(long pixels, double meanLuma, double lumaVariance, int[] histogram) {
+
+    /**
+     * Mean luma on a 0-100 scale
+     */
+    public double brightnessPercent() {
+        return meanLuma / 255.0 * 100;
+    }
+
+    public double lumaStandardDeviation() {
+        return Math.sqrt(lumaVariance);
+    }
+
+    /**
+     * The most populated histogram bin as 0xRRGGBB, each channel rounded
+     * down to a multiple of 32
+     */
+    public int dominantColor() {
+        int best = 0;
+        for (int bin = 1; bin < histogram.length; bin++) {
+            if (histogram[bin] > histogram[best]) {
+                best = bin;
+            }
+        }
+        return PixelKernel.binColor(best);
+    }
+}
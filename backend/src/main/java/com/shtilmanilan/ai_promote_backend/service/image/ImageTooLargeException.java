@@ -0,0 +1,18 @@
+package com.shtilmanilan.ai_promote_backend.service.image;
+
+/**
+ * Thrown when an uploaded image exceeds the configured maximum payload size
+ */
+public class ImageTooLargeException extends RuntimeException {
+
+    private final long maxBytes;
+
+    public ImageTooLargeException(long maxBytes) {
+        super("Image exceeds the maximum upload size of " + maxBytes + " bytes");
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
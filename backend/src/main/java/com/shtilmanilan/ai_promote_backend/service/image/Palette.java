@@ -0,0 +1,46 @@
+package com.shtilmanilan.ai_promote_backend.service.image;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Colour palette extracted from an image, swatches ordered by pixel share.
+ * Roles are chosen once at extraction: background is the swatch that covers
+ * most of the image border, primary/secondary are the largest remaining
+ * swatches, and accent is the most saturated of the rest that is not tiny.
+ */
+public record Palette(List<Swatch> swatches, Swatch background, Swatch primary, Swatch secondary, Swatch accent) {
+
+    // Swatches below this share of the image are too small to use as the accent
+    private static final double MIN_ACCENT_WEIGHT = 0.01;
+
+    /**
+     * One palette entry: average sRGB of its cluster, its share of the image
+     * and its CIE Lab chroma
+     */
+    public record Swatch(int rgb, double weight, double chroma) {
+
+        public String hex() {
+            return String.format("#%06X", rgb & 0xFFFFFF);
+        }
+    }
+
+    static Palette of(List<Swatch> swatches, Swatch background) {
+        List<Swatch> ordered = swatches.stream()
+            .sorted(Comparator.comparingDouble(Swatch::weight).reversed())
+            .toList();
+        List<Swatch> foreground = ordered.stream().filter(s -> s != background).toList();
+
+        Swatch primary = foreground.isEmpty() ? background : foreground.get(0);
+        Swatch secondary = foreground.size() < 2 ? background : foreground.get(1);
+        Swatch accent = foreground.stream()
+            .filter(s -> s != primary && s != secondary && s.weight() >= MIN_ACCENT_WEIGHT)
+            .max(Comparator.comparingDouble(Swatch::chroma))
+            .orElse(secondary);
+        return new Palette(ordered, background, primary, secondary, accent);
+    }
+
+    public List<String> hexColors() {
+        return swatches.stream().map(Swatch::hex).toList();
+    }
+}
@@ -0,0 +1,260 @@
+package com.shtilmanilan.ai_promote_backend.service.image;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Palette Extractor
+ *
+ * In-process colour analysis: k-means clustering in CIE Lab space over a
+ * subsampled raster. Lab distances track perceived colour difference, so the
+ * clusters match what a person would call the image's main colours, and the
+ * exact hex values replace Azure's coarse colour names.
+ *
+ * Features:
+ * - Bounded sample count, so cost does not grow with image size
+ * - Deterministic k-means++ seeding (same image, same palette)
+ * - Background detection from the colours along the image border
+ * - Runs in a few milliseconds on a 1024 px image
+ */
+@Service
+public class PaletteExtractor {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaletteExtractor.class);
+
+    private static final int MAX_ITERATIONS = 12;
+    // Outer fraction of the image treated as border for background detection
+    private static final double BORDER_FRACTION = 0.12;
+
+    // sRGB component -> linear light
+    private static final float[] SRGB_TO_LINEAR = new float[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            double c = i / 255.0;
+            SRGB_TO_LINEAR[i] = (float) (c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4));
+        }
+    }
+
+    private final int colorCount;
+    private final int maxSamples;
+
+    private final AtomicLong extractions = new AtomicLong();
+    private final AtomicLong extractionNanos = new AtomicLong();
+
+    public PaletteExtractor(@Value("${image.palette.colors:5}") int colorCount,
+                            @Value("${image.palette.max-samples:16384}") int maxSamples) {
+        this.colorCount = colorCount;
+        this.maxSamples = maxSamples;
+    }
+
+    public Palette extract(BufferedImage image) {
+        long start = System.nanoTime();
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        // 1. Sample on a regular grid sized to stay under maxSamples
+        int step = Math.max(1, (int) Math.ceil(Math.sqrt((double) width * height / maxSamples)));
+        int columns = (width + step - 1) / step;
+        int rows = (height + step - 1) / step;
+        int count = columns * rows;
+
+        float[] lab = new float[count * 3];
+        int[] rgb = new int[count];
+        boolean[] border = new boolean[count];
+        int borderX = (int) (width * BORDER_FRACTION);
+        int borderY = (int) (height * BORDER_FRACTION);
+        int[] row = new int[width];
+
+        int n = 0;
+        for (int y = 0; y < height; y += step) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            boolean borderRow = y < borderY || y >= height - borderY;
+            for (int x = 0; x < width; x += step) {
+                rgb[n] = row[x];
+                border[n] = borderRow || x < borderX || x >= width - borderX;
+                toLab(row[x], lab, n * 3);
+                n++;
+            }
+        }
+
+        // 2. Cluster
+        int k = Math.min(colorCount, n);
+        float[] centers = seedCenters(lab, n, k);
+        int[] assignment = new int[n];
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            boolean changed = assign(lab, n, centers, k, assignment);
+            updateCenters(lab, n, centers, k, assignment);
+            if (!changed) {
+                break;
+            }
+        }
+
+        // 3. Summarise clusters as average sRGB colours
+        long[] sums = new long[k * 3];
+        int[] members = new int[k];
+        int[] borderMembers = new int[k];
+        for (int i = 0; i < n; i++) {
+            int c = assignment[i];
+            sums[c * 3] += (rgb[i] >> 16) & 0xFF;
+            sums[c * 3 + 1] += (rgb[i] >> 8) & 0xFF;
+            sums[c * 3 + 2] += rgb[i] & 0xFF;
+            members[c]++;
+            if (border[i]) {
+                borderMembers[c]++;
+            }
+        }
+
+        List<Palette.Swatch> swatches = new ArrayList<>(k);
+        Palette.Swatch background = null;
+        int backgroundBorder = -1;
+        for (int c = 0; c < k; c++) {
+            if (members[c] == 0) {
+                continue;
+            }
+            int r = (int) (sums[c * 3] / members[c]);
+            int g = (int) (sums[c * 3 + 1] / members[c]);
+            int b = (int) (sums[c * 3 + 2] / members[c]);
+            double chroma = Math.hypot(centers[c * 3 + 1], centers[c * 3 + 2]);
+            Palette.Swatch swatch = new Palette.Swatch((r << 16) | (g << 8) | b, (double) members[c] / n, chroma);
+            swatches.add(swatch);
+            if (borderMembers[c] > backgroundBorder) {
+                background = swatch;
+                backgroundBorder = borderMembers[c];
+            }
+        }
+
+        Palette palette = Palette.of(swatches, background);
+        long elapsed = System.nanoTime() - start;
+        extractions.incrementAndGet();
+        extractionNanos.addAndGet(elapsed);
+        logger.debug("Extracted {} colours from {}x{} image ({} samples) in {} µs",
+            swatches.size(), width, height, n, TimeUnit.NANOSECONDS.toMicros(elapsed));
+        return palette;
+    }
+
+    /**
+     * Palette engine statistics for the stats endpoints
+     */
+    public Map<String, Object> getStats() {
+        long count = extractions.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("extractions", count);
+        stats.put("avgExtractionMicros", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(extractionNanos.get() / count));
+        return stats;
+    }
+
+    /**
+     * k-means++ seeding with a fixed seed so results are reproducible
+     */
+    private static float[] seedCenters(float[] lab, int n, int k) {
+        Random random = new Random(n);
+        float[] centers = new float[k * 3];
+        float[] distances = new float[n];
+
+        System.arraycopy(lab, random.nextInt(n) * 3, centers, 0, 3);
+        for (int c = 1; c < k; c++) {
+            double total = 0;
+            for (int i = 0; i < n; i++) {
+                float d = Float.MAX_VALUE;
+                for (int j = 0; j < c; j++) {
+                    d = Math.min(d, distance(lab, i * 3, centers, j * 3));
+                }
+                distances[i] = d;
+                total += d;
+            }
+
+            // Pick the next centre with probability proportional to squared distance
+            double target = random.nextDouble() * total;
+            int chosen = n - 1;
+            for (int i = 0; i < n; i++) {
+                target -= distances[i];
+                if (target <= 0) {
+                    chosen = i;
+                    break;
+                }
+            }
+            System.arraycopy(lab, chosen * 3, centers, c * 3, 3);
+        }
+        return centers;
+    }
+
+    private static boolean assign(float[] lab, int n, float[] centers, int k, int[] assignment) {
+        boolean changed = false;
+        for (int i = 0; i < n; i++) {
+            int best = 0;
+            float bestDistance = Float.MAX_VALUE;
+            for (int c = 0; c < k; c++) {
+                float d = distance(lab, i * 3, centers, c * 3);
+                if (d < bestDistance) {
+                    bestDistance = d;
+                    best = c;
+                }
+            }
+            if (assignment[i] != best) {
+                assignment[i] = best;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private static void updateCenters(float[] lab, int n, float[] centers, int k, int[] assignment) {
+        double[] sums = new double[k * 3];
+        int[] counts = new int[k];
+        for (int i = 0; i < n; i++) {
+            int c = assignment[i];
+            sums[c * 3] += lab[i * 3];
+            sums[c * 3 + 1] += lab[i * 3 + 1];
+            sums[c * 3 + 2] += lab[i * 3 + 2];
+            counts[c]++;
+        }
+        for (int c = 0; c < k; c++) {
+            // Empty clusters keep their old centre
+            if (counts[c] > 0) {
+                centers[c * 3] = (float) (sums[c * 3] / counts[c]);
+                centers[c * 3 + 1] = (float) (sums[c * 3 + 1] / counts[c]);
+                centers[c * 3 + 2] = (float) (sums[c * 3 + 2] / counts[c]);
+            }
+        }
+    }
+
+    private static float distance(float[] a, int i, float[] b, int j) {
+        float dl = a[i] - b[j];
+        float da = a[i + 1] - b[j + 1];
+        float db = a[i + 2] - b[j + 2];
+        return dl * dl + da * da + db * db;
+    }
+
+    /**
+     * sRGB -> CIE Lab (D65 white point)
+     */
+    private static void toLab(int rgb, float[] out, int offset) {
+        float r = SRGB_TO_LINEAR[(rgb >> 16) & 0xFF];
+        float g = SRGB_TO_LINEAR[(rgb >> 8) & 0xFF];
+        float b = SRGB_TO_LINEAR[rgb & 0xFF];
+
+        double fx = labF((0.4124 * r + 0.3576 * g + 0.1805 * b) / 0.95047);
+        double fy = labF(0.2126 * r + 0.7152 * g + 0.0722 * b);
+        double fz = labF((0.0193 * r + 0.1192 * g + 0.9505 * b) / 1.08883);
+
+        out[offset] = (float) (116 * fy - 16);
+        out[offset + 1] = (float) (500 * (fx - fy));
+        out[offset + 2] = (float) (200 * (fy - fz));
+    }
+
+    private static double labF(double t) {
+        return t > 0.008856 ? Math.cbrt(t) : 7.787 * t + 16.0 / 116.0;
+    }
+}
@@ -0,0 +1,71 @@
+package com.shtilmanilan.ai_promote_backend.service.image;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per-pixel statistics over packed ARGB rasters (0xAARRGGBB, alpha ignored).
+ *
+ * Luma uses the BT.601 weights in 8-bit fixed point, (77 R + 150 G + 29 B) >> 8,
+ * so white is exactly 255 and results are identical across implementations.
+ * Histograms have 512 bins, 3 bits per channel: bin = (R >> 5) << 6 | (G >> 5) << 3 | B >> 5.
+ *
+ * Two implementations: a Vector API one (needs --add-modules jdk.incubator.vector
+ * at compile and run time) and a scalar fallback used when the module is absent.
+ */
+public interface PixelKernel {
+
+    int HISTOGRAM_BINS = 512;
+
+    String name();
+
+    /**
+     * Write the luma of pixels [offset, offset + length) to out starting at outOffset
+     */
+    void luma(int[] argb, int offset, int length, int[] out, int outOffset);
+
+    /**
+     * Add the sum and the sum of squares of luma to moments[0] and moments[1]
+     */
+    void lumaMoments(int[] argb, int offset, int length, long[] moments);
+
+    /**
+     * Add pixel counts to the 512-bin quantized colour histogram
+     */
+    void histogram(int[] argb, int offset, int length, int[] bins);
+
+    static PixelKernel scalar() {
+        return new ScalarPixelKernel();
+    }
+
+    /**
+     * The Vector API kernel when jdk.incubator.vector is in the boot layer,
+     * otherwise the scalar one
+     */
+    static PixelKernel vectorized() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                // Loaded reflectively so nothing touches the incubator classes when the module is missing
+                return (PixelKernel) Class.forName(PixelKernel.class.getPackageName() + ".VectorPixelKernel")
+                    .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                LoggerFactory.getLogger(PixelKernel.class).warn("Vector pixel kernel unavailable: {}", e.toString());
+            }
+        }
+        return scalar();
+    }
+
+    static int luma(int argb) {
+        return (77 * ((argb >>> 16) & 0xFF) + 150 * ((argb >>> 8) & 0xFF) + 29 * (argb & 0xFF)) >>> 8;
+    }
+
+    static int histogramBin(int argb) {
+        return ((argb >>> 15) & 0x1C0) | ((argb >>> 10) & 0x38) | ((argb >>> 5) & 0x7);
+    }
+
+    /**
+     * Lowest colour of a histogram bin, as 0xRRGGBB
+     */
+    static int binColor(int bin) {
+        return ((bin >>> 6) << 21) | (((bin >>> 3) & 0x7) << 13) | ((bin & 0x7) << 5);
+    }
+}
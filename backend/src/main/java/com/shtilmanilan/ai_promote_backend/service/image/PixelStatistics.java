@@ -0,0 +1,235 @@
+package com.shtilmanilan.ai_promote_backend.service.image;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pixel Statistics
+ *
+ * Full-resolution luma and colour statistics for decoded images. The image
+ * is split into horizontal bands, one per worker. Packed INT rasters are
+ * handed to the kernels in place; other layouts are copied into a packed ARGB
+ * tile a few rows at a time (small enough to stay in cache between the two
+ * kernel passes). The per-band results are merged at the end.
+ *
+ * Features:
+ * - Vector API kernels when jdk.incubator.vector is available, scalar otherwise
+ * - Direct access to the INT and interleaved BYTE rasters ImageIO decodes to
+ * - Small images and a saturated pool fall back to the calling thread
+ */
+@Service
+public class PixelStatistics {
+
+    private static final Logger logger = LoggerFactory.getLogger(PixelStatistics.class);
+
+    // Rows copied per tile: 16 rows of a 1024 px image is 64 KB of ARGB
+    private static final int TILE_ROWS = 16;
+    // Below this the hand-off to the pool costs more than it saves
+    private static final long PARALLEL_MIN_PIXELS = 512 * 512;
+
+    private static final VarHandle LITTLE_ENDIAN_INT =
+        MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final PixelKernel kernel;
+    private final int parallelism;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong analyses = new AtomicLong();
+    private final AtomicLong analysisNanos = new AtomicLong();
+    private final AtomicLong pixelsAnalyzed = new AtomicLong();
+    private final AtomicLong inlineBands = new AtomicLong();
+
+    public PixelStatistics(@Value("${image.stats.threads:0}") int threads,
+                           @Value("${image.stats.queue-capacity:64}") int queueCapacity,
+                           @Value("${image.stats.vectorized:true}") boolean vectorized) {
+        this.kernel = vectorized ? PixelKernel.vectorized() : PixelKernel.scalar();
+        this.parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, "pixel-stats-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.executor.allowCoreThreadTimeOut(true);
+        logger.info("Pixel statistics initialized: {} kernels, {} threads", kernel.name(), parallelism);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public ImageStatistics analyze(BufferedImage image) {
+        long start = System.nanoTime();
+        int width = image.getWidth();
+        int height = image.getHeight();
+        long pixels = (long) width * height;
+
+        int tiles = (height + TILE_ROWS - 1) / TILE_ROWS;
+        int bands = pixels < PARALLEL_MIN_PIXELS ? 1 : Math.max(1, Math.min(parallelism, tiles));
+        int rowsPerBand = (tiles + bands - 1) / bands * TILE_ROWS;
+
+        // Hand all but the first band to the pool, the caller works on the first
+        List<CompletableFuture<Band>> others = new ArrayList<>(bands - 1);
+        for (int from = rowsPerBand; from < height; from += rowsPerBand) {
+            int bandStart = from;
+            int bandEnd = Math.min(height, from + rowsPerBand);
+            try {
+                others.add(CompletableFuture.supplyAsync(() -> analyzeBand(image, bandStart, bandEnd), executor));
+            } catch (RejectedExecutionException e) {
+                inlineBands.incrementAndGet();
+                others.add(CompletableFuture.completedFuture(analyzeBand(image, bandStart, bandEnd)));
+            }
+        }
+        Band total = analyzeBand(image, 0, Math.min(height, rowsPerBand));
+        for (CompletableFuture<Band> band : others) {
+            total.merge(band.join());
+        }
+
+        double mean = (double) total.moments[0] / pixels;
+        double variance = Math.max(0, (double) total.moments[1] / pixels - mean * mean);
+        ImageStatistics statistics = new ImageStatistics(pixels, mean, variance, total.bins);
+
+        long elapsed = System.nanoTime() - start;
+        analyses.incrementAndGet();
+        analysisNanos.addAndGet(elapsed);
+        pixelsAnalyzed.addAndGet(pixels);
+        logger.debug("Pixel statistics for {}x{} image ({} bands) in {} µs", width, height, bands,
+            TimeUnit.NANOSECONDS.toMicros(elapsed));
+        return statistics;
+    }
+
+    /**
+     * Pixel statistics engine statistics for the stats endpoints
+     */
+    public Map<String, Object> getStats() {
+        long count = analyses.get();
+        long nanos = analysisNanos.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("kernel", kernel.name());
+        stats.put("threads", parallelism);
+        stats.put("analyses", count);
+        stats.put("avgAnalysisMicros", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(nanos / count));
+        stats.put("megapixelsPerSecond", nanos == 0 ? 0 : Math.round(pixelsAnalyzed.get() * 1000.0 / nanos));
+        stats.put("inlineBands", inlineBands.get());
+        return stats;
+    }
+
+    private Band analyzeBand(BufferedImage image, int fromRow, int toRow) {
+        int width = image.getWidth();
+        Band band = new Band();
+        Raster raster = image.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        SampleModel sampleModel = raster.getSampleModel();
+        int type = image.getType();
+
+        // Packed RGB rows are already in kernel layout: no copy at all. Reading the
+        // backing arrays stops Java2D from caching the image in video memory, which
+        // does not matter for decoded images that are only analyzed.
+        if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+                && buffer instanceof DataBufferInt ints && sampleModel instanceof SinglePixelPackedSampleModel packed
+                && packed.getScanlineStride() == width && raster.getSampleModelTranslateY() == 0
+                && raster.getSampleModelTranslateX() == 0) {
+            int offset = ints.getOffset() + fromRow * width;
+            int count = (toRow - fromRow) * width;
+            kernel.lumaMoments(ints.getData(), offset, count, band.moments);
+            kernel.histogram(ints.getData(), offset, count, band.bins);
+            return band;
+        }
+
+        int[] tile = new int[width * TILE_ROWS];
+        boolean interleavedBytes = (type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR)
+            && buffer instanceof DataBufferByte && sampleModel instanceof PixelInterleavedSampleModel
+            && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0;
+        for (int y = fromRow; y < toRow; y += TILE_ROWS) {
+            int rows = Math.min(TILE_ROWS, toRow - y);
+            int count = rows * width;
+            if (interleavedBytes) {
+                packInterleaved((DataBufferByte) buffer, (PixelInterleavedSampleModel) sampleModel, y, rows, width, tile);
+            } else {
+                image.getRGB(0, y, width, rows, tile, 0, width);
+            }
+            kernel.lumaMoments(tile, 0, count, band.moments);
+            kernel.histogram(tile, 0, count, band.bins);
+        }
+        return band;
+    }
+
+    /**
+     * Pack rows of an interleaved byte raster (BGR, ABGR) into 0xRRGGBB ints
+     */
+    private static void packInterleaved(DataBufferByte buffer, PixelInterleavedSampleModel sampleModel,
+                                        int y, int rows, int width, int[] tile) {
+        byte[] data = buffer.getData();
+        int[] bandOffsets = sampleModel.getBandOffsets();
+        int pixelStride = sampleModel.getPixelStride();
+        int scanlineStride = sampleModel.getScanlineStride();
+        int red = bandOffsets[0];
+        int green = bandOffsets[1];
+        int blue = bandOffsets[2];
+        // One little-endian int load per pixel: B,G,R,x reads as 0xxxRRGGBB and A,B,G,R as 0xRRGGBBAA
+        boolean bgr = pixelStride == 3 && red == 2 && green == 1 && blue == 0;
+        boolean abgr = pixelStride == 4 && red == 3 && green == 2 && blue == 1;
+        int i = 0;
+        for (int row = y; row < y + rows; row++) {
+            int p = buffer.getOffset() + row * scanlineStride;
+            int x = 0;
+            if (bgr) {
+                // The last pixel is left to the generic loop so the 4-byte load never runs past the array
+                for (; x < width - 1; x++, p += 3) {
+                    tile[i++] = (int) LITTLE_ENDIAN_INT.get(data, p) & 0xFFFFFF;
+                }
+            } else if (abgr) {
+                for (; x < width; x++, p += 4) {
+                    tile[i++] = (int) LITTLE_ENDIAN_INT.get(data, p) >>> 8;
+                }
+            }
+            for (; x < width; x++, p += pixelStride) {
+                tile[i++] = (data[p + red] & 0xFF) << 16 | (data[p + green] & 0xFF) << 8 | (data[p + blue] & 0xFF);
+            }
+        }
+    }
+
+    /**
+     * Partial results of one band
+     */
+    private static final class Band {
+        final long[] moments = new long[2];
+        final int[] bins = new int[PixelKernel.HISTOGRAM_BINS];
+
+        void merge(Band other) {
+            moments[0] += other.moments[0];
+            moments[1] += other.moments[1];
+            for (int i = 0; i < bins.length; i++) {
+                bins[i] += other.bins[i];
+            }
+        }
+    }
+}
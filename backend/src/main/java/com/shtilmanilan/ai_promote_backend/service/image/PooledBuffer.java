@@ -0,0 +1,183 @@
+package com.shtilmanilan.ai_promote_backend.service.image;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reference-counted off-heap buffer leased from {@link ImageBufferPool}.
+ *
+ * Writers fill {@link #buffer()} and call {@link #seal()}; readers use
+ * {@link #content()}, {@link #inputStream()} or {@link #writeTo(OutputStream)},
+ * which never disturb each other's positions. The memory returns to the pool
+ * when the last reference is released.
+ */
+public final class PooledBuffer implements AutoCloseable {
+
+    private final ByteBuffer memory;
+    private final Lease lease;
+    private final Cleaner.Cleanable cleanable;
+
+    PooledBuffer(ImageBufferPool pool, ByteBuffer memory, int sizeClassIndex, Cleaner cleaner) {
+        this.memory = memory;
+        this.lease = new Lease(pool, memory, sizeClassIndex);
+        this.cleanable = cleaner.register(this, lease);
+    }
+
+    /**
+     * Writable view of the whole buffer, for the owner that fills it
+     */
+    public ByteBuffer buffer() {
+        return memory;
+    }
+
+    /**
+     * Mark the written bytes as the buffer's content
+     */
+    public PooledBuffer seal() {
+        memory.flip();
+        return this;
+    }
+
+    public int size() {
+        return memory.limit();
+    }
+
+    public int capacity() {
+        return memory.capacity();
+    }
+
+    /**
+     * Independent read-only view of the sealed content
+     */
+    public ByteBuffer content() {
+        return memory.asReadOnlyBuffer().rewind();
+    }
+
+    public InputStream inputStream() {
+        return new ContentInputStream(content());
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        ByteBuffer source = content();
+        WritableByteChannel channel = Channels.newChannel(out);
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    public byte[] toByteArray() {
+        byte[] copy = new byte[size()];
+        content().get(copy);
+        return copy;
+    }
+
+    /**
+     * Add a reference for another stage that will release it independently
+     */
+    public PooledBuffer retain() {
+        if (!tryRetain()) {
+            throw new IllegalStateException("Buffer already released");
+        }
+        return this;
+    }
+
+    /**
+     * Add a reference unless the buffer has already been released
+     */
+    public boolean tryRetain() {
+        int count;
+        do {
+            count = lease.refCount.get();
+            if (count <= 0) {
+                return false;
+            }
+        } while (!lease.refCount.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    public void release() {
+        int remaining = lease.refCount.decrementAndGet();
+        if (remaining == 0) {
+            lease.released = true;
+            lease.pool.recycle(lease.sizeClassIndex, lease.memory);
+            cleanable.clean();
+        } else if (remaining < 0) {
+            throw new IllegalStateException("Buffer released more times than retained");
+        }
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+
+    /**
+     * Cleaner state - must not reference the PooledBuffer itself
+     */
+    private static final class Lease implements Runnable {
+        final ImageBufferPool pool;
+        final ByteBuffer memory;
+        final int sizeClassIndex;
+        final AtomicInteger refCount = new AtomicInteger(1);
+        volatile boolean released;
+
+        Lease(ImageBufferPool pool, ByteBuffer memory, int sizeClassIndex) {
+            this.pool = pool;
+            this.memory = memory;
+            this.sizeClassIndex = sizeClassIndex;
+        }
+
+        @Override
+        public void run() {
+            if (!released) {
+                // Only the handle is unreachable: a content() view or input stream taken
+                // from it may still be reading, so the memory is dropped, never recycled
+                pool.reportLeak(sizeClassIndex, memory.capacity());
+            }
+        }
+    }
+
+    private static final class ContentInputStream extends InputStream {
+        private final ByteBuffer source;
+
+        ContentInputStream(ByteBuffer source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read() {
+            return source.hasRemaining() ? source.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!source.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, source.remaining());
+            source.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, source.remaining()));
+            source.position(source.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return source.remaining();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.shtilmanilan.ai_promote_backend.service.image;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * OutputStream that writes into pooled off-heap memory, moving up a size
+ * class when the current buffer fills. Ownership of the result passes to the
+ * caller through {@link #toPooledBuffer()}; closing the stream before that
+ * releases the buffer (e.g. when decoding failed half-way).
+ */
+public class PooledBufferOutputStream extends OutputStream {
+
+    private final ImageBufferPool pool;
+    private PooledBuffer current;
+
+    public PooledBufferOutputStream(ImageBufferPool pool, int expectedSize) {
+        this.pool = pool;
+        this.current = pool.acquire(expectedSize);
+    }
+
+    @Override
+    public void write(int b) {
+        ensureRemaining(1).put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureRemaining(len).put(b, off, len);
+    }
+
+    public int size() {
+        return current.buffer().position();
+    }
+
+    /**
+     * Seal the written bytes and hand the buffer to the caller
+     */
+    public PooledBuffer toPooledBuffer() {
+        PooledBuffer result = current.seal();
+        current = null;
+        return result;
+    }
+
+    @Override
+    public void close() {
+        if (current != null) {
+            current.release();
+            current = null;
+        }
+    }
+
+    private ByteBuffer ensureRemaining(int needed) {
+        if (current == null) {
+            throw new IllegalStateException("Stream already handed off or closed");
+        }
+        ByteBuffer buffer = current.buffer();
+        if (buffer.remaining() >= needed) {
+            return buffer;
+        }
+
+        long required = (long) buffer.position() + needed;
+        int newCapacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, (long) buffer.capacity() * 2));
+        PooledBuffer grown = pool.acquire(newCapacity);
+        buffer.flip();
+        grown.buffer().put(buffer);
+        current.release();
+        current = grown;
+        return grown.buffer();
+    }
+}
@@ -0,0 +1,39 @@
+package com.shtilmanilan.ai_promote_backend.service.image;
+
+/**
+ * Plain-Java pixel kernels, the reference for the vectorized ones
+ */
+final class ScalarPixelKernel implements PixelKernel {
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+
+    @Override
+    public void luma(int[] argb, int offset, int length, int[] out, int outOffset) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = PixelKernel.luma(argb[offset + i]);
+        }
+    }
+
+    @Override
+    public void lumaMoments(int[] argb, int offset, int length, long[] moments) {
+        long sum = 0;
+        long squares = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int y = PixelKernel.luma(argb[i]);
+            sum += y;
+            squares += y * y;
+        }
+        moments[0] += sum;
+        moments[1] += squares;
+    }
+
+    @Override
+    public void histogram(int[] argb, int offset, int length, int[] bins) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            bins[PixelKernel.histogramBin(argb[i])]++;
+        }
+    }
+}
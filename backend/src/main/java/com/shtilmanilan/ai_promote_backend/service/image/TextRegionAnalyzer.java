@@ -0,0 +1,176 @@
+package com.shtilmanilan.ai_promote_backend.service.image;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Text Region Analyzer
+ *
+ * Finds the calmest place on a background for the flyer text. The image is
+ * sampled onto a small grid and summed-area tables of luma, luma squared and
+ * linear luminance are built once; after that the mean and variance of any
+ * window cost four lookups each, so every title/body placement on the grid
+ * can be scored exhaustively.
+ *
+ * Features:
+ * - Title and body windows sized like the flyer text block, body stacked under the title
+ * - Busyness = luma standard deviation, with a slight preference for the vertical centre
+ * - Mean WCAG luminance per window for contrast checks against the chosen text colour
+ * - Cost bounded by the grid size, well under a millisecond per scoring pass
+ */
+@Service
+public class TextRegionAnalyzer {
+
+    private static final Logger logger = LoggerFactory.getLogger(TextRegionAnalyzer.class);
+
+    // Window sizes as fractions of the image, matching the renderer's 80% wrap width
+    private static final double WINDOW_WIDTH = 0.8;
+    private static final double TITLE_HEIGHT = 0.14;
+    private static final double BODY_HEIGHT = 0.22;
+    // Busyness penalty per unit of distance from the vertical centre
+    private static final double CENTER_BIAS = 0.02;
+
+    private final int gridSize;
+
+    private final AtomicLong analyses = new AtomicLong();
+    private final AtomicLong analysisNanos = new AtomicLong();
+
+    public TextRegionAnalyzer(@Value("${image.text-regions.grid:96}") int gridSize) {
+        if (gridSize < 1) {
+            throw new IllegalArgumentException("image.text-regions.grid must be positive");
+        }
+        this.gridSize = gridSize;
+    }
+
+    public TextRegions analyze(BufferedImage image) {
+        long start = System.nanoTime();
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        // 1. Point-sample cell centres onto a grid of gridSize cells along the long edge
+        double cell = Math.max(1.0, (double) Math.max(width, height) / gridSize);
+        int columns = Math.max(1, (int) Math.round(width / cell));
+        int rows = Math.max(1, (int) Math.round(height / cell));
+        int[] sampleX = new int[columns];
+        for (int cx = 0; cx < columns; cx++) {
+            sampleX[cx] = Math.min(width - 1, (int) ((cx + 0.5) * width / columns));
+        }
+
+        // 2. Summed-area tables with a zero row and column: sum over [0,x) x [0,y) at (y * stride + x)
+        int stride = columns + 1;
+        double[] lumaSum = new double[(rows + 1) * stride];
+        double[] lumaSquareSum = new double[(rows + 1) * stride];
+        double[] luminanceSum = new double[(rows + 1) * stride];
+        for (int cy = 0; cy < rows; cy++) {
+            int y = Math.min(height - 1, (int) ((cy + 0.5) * height / rows));
+            double rowLuma = 0;
+            double rowLumaSquare = 0;
+            double rowLuminance = 0;
+            int above = cy * stride;
+            int here = above + stride;
+            for (int cx = 0; cx < columns; cx++) {
+                // Per-pixel reads: converting whole rows would cost more than the grid needs
+                int rgb = image.getRGB(sampleX[cx], y);
+                int r = (rgb >> 16) & 0xFF;
+                int g = (rgb >> 8) & 0xFF;
+                int b = rgb & 0xFF;
+                double luma = (0.299 * r + 0.587 * g + 0.114 * b) / 255.0;
+                rowLuma += luma;
+                rowLumaSquare += luma * luma;
+                rowLuminance += 0.2126 * TextRegions.SRGB_TO_LINEAR[r]
+                    + 0.7152 * TextRegions.SRGB_TO_LINEAR[g]
+                    + 0.0722 * TextRegions.SRGB_TO_LINEAR[b];
+                lumaSum[here + cx + 1] = lumaSum[above + cx + 1] + rowLuma;
+                lumaSquareSum[here + cx + 1] = lumaSquareSum[above + cx + 1] + rowLumaSquare;
+                luminanceSum[here + cx + 1] = luminanceSum[above + cx + 1] + rowLuminance;
+            }
+        }
+
+        // 3. Score every stacked title/body placement
+        int windowWidth = Math.max(1, (int) Math.round(columns * WINDOW_WIDTH));
+        int titleRows = Math.max(1, (int) Math.round(rows * TITLE_HEIGHT));
+        int bodyRows = Math.max(1, Math.min(rows - titleRows, (int) Math.round(rows * BODY_HEIGHT)));
+        double bestScore = Double.MAX_VALUE;
+        int bestX = 0;
+        int bestY = 0;
+        for (int y = 0; y + titleRows + bodyRows <= rows; y++) {
+            double center = (y + (titleRows + bodyRows) / 2.0) / rows;
+            double bias = CENTER_BIAS * Math.abs(center - 0.5);
+            for (int x = 0; x + windowWidth <= columns; x++) {
+                double score = bias
+                    + deviation(lumaSum, lumaSquareSum, stride, x, y, windowWidth, titleRows)
+                    + deviation(lumaSum, lumaSquareSum, stride, x, y + titleRows, windowWidth, bodyRows);
+                if (score < bestScore) {
+                    bestScore = score;
+                    bestX = x;
+                    bestY = y;
+                }
+            }
+        }
+
+        TextRegions regions;
+        if (titleRows + bodyRows > rows) {
+            // A strip one cell high has no room to stack the windows: both cover the whole image
+            TextRegions.Region whole = region(lumaSum, lumaSquareSum, luminanceSum, stride, columns, rows,
+                0, 0, columns, rows);
+            regions = new TextRegions(whole, whole);
+        } else {
+            regions = new TextRegions(
+                region(lumaSum, lumaSquareSum, luminanceSum, stride, columns, rows, bestX, bestY, windowWidth, titleRows),
+                region(lumaSum, lumaSquareSum, luminanceSum, stride, columns, rows, bestX, bestY + titleRows, windowWidth, bodyRows));
+        }
+
+        long elapsed = System.nanoTime() - start;
+        analyses.incrementAndGet();
+        analysisNanos.addAndGet(elapsed);
+        logger.debug("Text regions for {}x{} image on {}x{} grid in {} µs: {}",
+            width, height, columns, rows, TimeUnit.NANOSECONDS.toMicros(elapsed), regions);
+        return regions;
+    }
+
+    /**
+     * Text region analysis statistics for the stats endpoints
+     */
+    public Map<String, Object> getStats() {
+        long count = analyses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("analyses", count);
+        stats.put("avgAnalysisMicros", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(analysisNanos.get() / count));
+        stats.put("gridSize", gridSize);
+        return stats;
+    }
+
+    private static TextRegions.Region region(double[] lumaSum, double[] lumaSquareSum, double[] luminanceSum,
+                                             int stride, int columns, int rows, int x, int y, int w, int h) {
+        double cells = (double) w * h;
+        return new TextRegions.Region(
+            (double) x / columns, (double) y / rows, (double) w / columns, (double) h / rows,
+            sum(lumaSum, stride, x, y, w, h) / cells,
+            deviation(lumaSum, lumaSquareSum, stride, x, y, w, h),
+            sum(luminanceSum, stride, x, y, w, h) / cells);
+    }
+
+    /**
+     * Standard deviation over a window, from the sum and sum of squares
+     */
+    private static double deviation(double[] sum, double[] squareSum, int stride, int x, int y, int w, int h) {
+        double cells = (double) w * h;
+        double mean = sum(sum, stride, x, y, w, h) / cells;
+        double variance = sum(squareSum, stride, x, y, w, h) / cells - mean * mean;
+        return variance > 0 ? Math.sqrt(variance) : 0;
+    }
+
+    private static double sum(double[] table, int stride, int x, int y, int w, int h) {
+        int top = y * stride;
+        int bottom = (y + h) * stride;
+        return table[bottom + x + w] - table[bottom + x] - table[top + x + w] + table[top + x];
+    }
+}
@@ -0,0 +1,80 @@
+package com.shtilmanilan.ai_promote_backend.service.image;
+
+import java.awt.Color;
+
+/**
+ * Where the title and body text should sit on an image: the calmest title
+ * window with the body window stacked directly below it, as the flyer lays
+ * them out. Coordinates are fractions of the image size. Brightness and
+ * busyness are the mean and standard deviation of gamma-encoded luma (0-1)
+ * inside the window, luminance is its mean WCAG relative luminance.
+ */
+public record TextRegions(Region title, Region body) {
+
+    // WCAG 2.x AA minimum for normal-size text
+    public static final double WCAG_AA = 4.5;
+
+    // sRGB component -> linear light
+    static final double[] SRGB_TO_LINEAR = new double[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            double c = i / 255.0;
+            SRGB_TO_LINEAR[i] = c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+        }
+    }
+
+    public record Region(double x, double y, double width, double height,
+                         double brightness, double busyness, double luminance) {
+
+        /**
+         * WCAG contrast of a text colour against the region's average luminance
+         */
+        public double contrastRatio(Color text) {
+            return TextRegions.contrastRatio(relativeLuminance(text.getRGB()), luminance);
+        }
+    }
+
+    /**
+     * Contrast of the text colour against the weaker of the two regions
+     */
+    public double contrastRatio(Color text) {
+        return Math.min(title.contrastRatio(text), body.contrastRatio(text));
+    }
+
+    /**
+     * Average brightness of the text area on the 0-100 luma scale used by the
+     * background brightness categories
+     */
+    public double brightnessPercent() {
+        double area = title.height() + body.height();
+        return (title.brightness() * title.height() + body.brightness() * body.height()) / area * 100;
+    }
+
+    /**
+     * Vertical placement of the whole text block as a flyer layout position:
+     * "top", "center" or "bottom"
+     */
+    public String textPosition() {
+        double center = (title.y() + body.y() + body.height()) / 2;
+        return center < 0.4 ? "top" : center > 0.6 ? "bottom" : "center";
+    }
+
+    /**
+     * WCAG relative luminance of an sRGB colour
+     */
+    public static double relativeLuminance(int rgb) {
+        return 0.2126 * SRGB_TO_LINEAR[(rgb >> 16) & 0xFF]
+            + 0.7152 * SRGB_TO_LINEAR[(rgb >> 8) & 0xFF]
+            + 0.0722 * SRGB_TO_LINEAR[rgb & 0xFF];
+    }
+
+    /**
+     * WCAG contrast ratio between two relative luminances, 1 to 21
+     */
+    public static double contrastRatio(double luminanceA, double luminanceB) {
+        double lighter = Math.max(luminanceA, luminanceB);
+        double darker = Math.min(luminanceA, luminanceB);
+        return (lighter + 0.05) / (darker + 0.05);
+    }
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.shtilmanilan.ai_promote_backend.model.ai.TextGenerationRequest;
 import com.shtilmanilan.ai_promote_backend.model.ai.TextGenerationResponse;
+import com.shtilmanilan.ai_promote_backend.service.ProviderQuotaGovernor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -24,15 +25,18 @@ import java.util.Map;
 public class OpenAIServiceImpl implements OpenAIService {
     
     private static final Logger logger = LoggerFactory.getLogger(OpenAIServiceImpl.class);
+    private static final int MAX_TOKENS = 2000;
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final RestTemplate restTemplate = new RestTemplate();
     private final String apiKey;
     private final GeminiService geminiService;
+    private final ProviderQuotaGovernor.Quota quota;
     
     @Autowired
-    public OpenAIServiceImpl(String openaiApiKey, GeminiService geminiService) {
+    public OpenAIServiceImpl(String openaiApiKey, GeminiService geminiService, ProviderQuotaGovernor quotaGovernor) {
         this.apiKey = openaiApiKey;
         this.geminiService = geminiService;
+        this.quota = quotaGovernor.quota("openai", openaiApiKey, 60, 60000);
         logger.info("OpenAI service initialized with API key: {}", apiKey != null ? "present" : "missing");
     }
     
@@ -44,6 +48,14 @@ public class OpenAIServiceImpl implements OpenAIService {
                 return geminiService.generateText(request);
             }
             
+            // Reroute before the call rather than after a 429
+            ProviderQuotaGovernor.Permit permit = quota.acquire(
+                ProviderQuotaGovernor.estimateTokens(request.getPrompt(), MAX_TOKENS));
+            if (permit == null) {
+                logger.info("OpenAI quota exhausted, falling back to Gemini");
+                return geminiService.generateText(request);
+            }
+            
             // Try to generate the text with OpenAI using direct HTTP
             try {
                 // Set up headers
@@ -63,7 +75,7 @@ public class OpenAIServiceImpl implements OpenAIService {
                 requestBody.put("messages", messages);
                 
                 requestBody.put("temperature", request.getTemperature());
-                requestBody.put("max_tokens", 2000);
+                requestBody.put("max_tokens", MAX_TOKENS);
                 
                 HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
                 
@@ -76,6 +88,7 @@ public class OpenAIServiceImpl implements OpenAIService {
                 
                 // Parse response
                 JsonNode responseNode = objectMapper.readTree(response.getBody());
+                permit.complete(response.getHeaders(), responseNode.path("usage").path("total_tokens").asLong(-1));
                 String generatedText = responseNode
                     .path("choices")
                     .path(0)
@@ -88,6 +101,7 @@ public class OpenAIServiceImpl implements OpenAIService {
                 textResponse.setGeneratedText(generatedText);
                 return textResponse;
             } catch (Exception e) {
+                permit.fail(e);
                 logger.error("OpenAI API error: {}", e.getMessage());
                 
                 // Check for quota exceeded error
@@ -0,0 +1,110 @@
+package com.shtilmanilan.ai_promote_backend.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.shtilmanilan.ai_promote_backend.model.azure.AzureAnalyzeResult;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning an Azure Vision analyze response into the fields the
+ * service uses, for a busy image (many objects, tags and landmark details).
+ *
+ * - rawMap: the previous path - generic Map deserialization, the INFO
+ *   "Raw Azure response" log line, then unchecked casts
+ * - typed: streaming parse into AzureAnalyzeResult records, skipping unused fields
+ *
+ * Run with the GC profiler to compare allocation per analysis (gc.alloc.rate.norm):
+ *   mvn test-compile
+ *   java -cp target/test-classes:target/classes:<test classpath> \
+ *       com.shtilmanilan.ai_promote_backend.benchmark.AzureResponseParsingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AzureResponseParsingBenchmark {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ObjectReader typedReader = mapper.readerFor(AzureAnalyzeResult.class);
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        payload = busyImageResponse().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public void rawMap(Blackhole blackhole) throws IOException {
+        Map<String, Object> response = mapper.readValue(new ByteArrayInputStream(payload), Map.class);
+        blackhole.consume(String.valueOf(response));
+
+        List<Map<String, Object>> categories = (List<Map<String, Object>>) response.get("categories");
+        blackhole.consume(categories.get(0).get("name"));
+        List<Map<String, Object>> objects = (List<Map<String, Object>>) response.get("objects");
+        blackhole.consume(objects.stream().map(obj -> (String) obj.get("object")).toArray(String[]::new));
+        Map<String, Object> description = (Map<String, Object>) response.get("description");
+        blackhole.consume(((List<Map<String, Object>>) description.get("captions")).get(0).get("text"));
+        blackhole.consume(((Map<String, Object>) response.get("color")).get("dominantColors"));
+    }
+
+    @Benchmark
+    public void typed(Blackhole blackhole) throws IOException {
+        AzureAnalyzeResult response = typedReader.readValue(new ByteArrayInputStream(payload));
+
+        blackhole.consume(response.categories().get(0).name());
+        blackhole.consume(response.objects().stream().map(AzureAnalyzeResult.DetectedObject::object).toArray(String[]::new));
+        blackhole.consume(response.description().captions().get(0).text());
+        blackhole.consume(response.color().dominantColors());
+    }
+
+    /**
+     * A v3.1 analyze response for a cluttered storefront photo
+     */
+    static String busyImageResponse() {
+        StringBuilder json = new StringBuilder("{\"categories\":[");
+        for (int i = 0; i < 12; i++) {
+            json.append(i > 0 ? "," : "").append("{\"name\":\"building_store").append(i)
+                .append("\",\"score\":0.").append(90 - i)
+                .append(",\"detail\":{\"landmarks\":[{\"name\":\"Landmark ").append(i)
+                .append("\",\"confidence\":0.5}]}}");
+        }
+        json.append("],\"color\":{\"dominantColorForeground\":\"Brown\",\"dominantColorBackground\":\"White\",")
+            .append("\"dominantColors\":[\"Brown\",\"White\",\"Black\"],\"accentColor\":\"B0651A\",\"isBwImg\":false,\"isBWImg\":false},")
+            .append("\"description\":{\"tags\":[");
+        for (int i = 0; i < 40; i++) {
+            json.append(i > 0 ? "," : "").append("\"tag").append(i).append('"');
+        }
+        json.append("],\"captions\":[{\"text\":\"a store front with a sign\",\"confidence\":0.71}]},\"objects\":[");
+        for (int i = 0; i < 80; i++) {
+            json.append(i > 0 ? "," : "").append("{\"rectangle\":{\"x\":").append(i * 7).append(",\"y\":").append(i * 3)
+                .append(",\"w\":120,\"h\":80},\"object\":\"object").append(i).append("\",\"confidence\":0.6")
+                .append(",\"parent\":{\"object\":\"container\",\"confidence\":0.4,\"parent\":{\"object\":\"furniture\",\"confidence\":0.3}}}");
+        }
+        json.append("],\"requestId\":\"5b9a2c7e-5c1d-4a37-9f53-0c8a4c1a2f10\",")
+            .append("\"metadata\":{\"height\":768,\"width\":1024,\"format\":\"Jpeg\"},\"modelVersion\":\"2021-05-01\"}");
+        return json.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(AzureResponseParsingBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,108 @@
+package com.shtilmanilan.ai_promote_backend.benchmark;
+
+import com.shtilmanilan.ai_promote_backend.model.background.BackgroundOption;
+import com.shtilmanilan.ai_promote_backend.model.flyer.FlyerRenderRequest;
+import com.shtilmanilan.ai_promote_backend.service.background.BackgroundImageStore;
+import com.shtilmanilan.ai_promote_backend.service.flyer.FlyerRenderer;
+import com.shtilmanilan.ai_promote_backend.service.flyer.PreparedFlyer;
+import com.shtilmanilan.ai_promote_backend.service.image.ImageBufferPool;
+import com.shtilmanilan.ai_promote_backend.service.image.PooledBuffer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-side flyer rendering throughput on a single render thread, so the
+ * scores read directly as flyers per second per core (1080x1350).
+ *
+ * - render: prepare + paint + PNG encode, the /api/flyer/render path
+ * - paint: compositing only, from a prepared flyer into a reused raster
+ * - prepare: font/layout resolution with warm caches
+ *
+ * Run:
+ *   mvn test-compile
+ *   java -cp target/test-classes:target/classes:<test classpath> \
+ *       com.shtilmanilan.ai_promote_backend.benchmark.FlyerRenderBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Djava.awt.headless=true")
+public class FlyerRenderBenchmark {
+
+    @Param({"English", "Hebrew"})
+    public String language;
+
+    private FlyerRenderer renderer;
+    private FlyerRenderRequest request;
+    private PreparedFlyer prepared;
+    private BufferedImage canvas;
+
+    @Setup
+    public void setUp() {
+        renderer = new FlyerRenderer(new ImageBufferPool(16), new BackgroundImageStore(), 1, 16, 1024, 8, 6);
+
+        BackgroundOption background = new BackgroundOption("Text-Optimized Minimal",
+            "linear-gradient(135deg, #2196F308, #FF980012), radial-gradient(circle at 20% 80%, #4CAF5020, transparent 60%)",
+            "#333333", "#4CAF50", "benchmark");
+        background.setTextOverlay("rgba(255,255,255,0.9)");
+        background.setFontFamily("Roboto, sans-serif");
+        background.setFontSize(2.5f);
+        background.setBodyFontSize(1.2f);
+
+        request = new FlyerRenderRequest();
+        request.setBackground(background);
+        if ("Hebrew".equals(language)) {
+            request.setTitle("מבצע ענק");
+            request.setPromotionalText("50% הנחה על כל החנות\nרק השבוע - אל תפספסו!");
+        } else {
+            request.setTitle("Crazy Sale");
+            request.setPromotionalText("50% off everything in store\nThis week only - don't miss it!");
+        }
+
+        prepared = renderer.prepare(request, 1080, 1350);
+        canvas = new BufferedImage(1080, 1350, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @TearDown
+    public void tearDown() {
+        renderer.shutdown();
+    }
+
+    @Benchmark
+    public int render() {
+        try (PooledBuffer png = renderer.render(request).join()) {
+            return png.size();
+        }
+    }
+
+    @Benchmark
+    public BufferedImage paint() {
+        Graphics2D g = canvas.createGraphics();
+        try {
+            prepared.paint(g);
+        } finally {
+            g.dispose();
+        }
+        return canvas;
+    }
+
+    @Benchmark
+    public PreparedFlyer prepare() {
+        return renderer.prepare(request, 1080, 1350);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(FlyerRenderBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,135 @@
+package com.shtilmanilan.ai_promote_backend.benchmark;
+
+import com.shtilmanilan.ai_promote_backend.service.image.ImageStatistics;
+import com.shtilmanilan.ai_promote_backend.service.image.PixelKernel;
+import com.shtilmanilan.ai_promote_backend.service.image.PixelStatistics;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pixel kernels on a 1024x1024 image (1 MP), scalar vs Vector API.
+ *
+ * - luma / lumaMoments / histogram: raw kernels over a packed ARGB int[]
+ * - analyze: PixelStatistics end to end on a decoded-PNG style 3BYTE_BGR
+ *   image, single thread (tile copies + moments + histogram)
+ * - sampledBaseline: the previous ImagenBackgroundService analysis, getRGB
+ *   every 50th pixel for brightness and every 100th for the dominant colour
+ *
+ * Run:
+ *   mvn test-compile
+ *   java --add-modules jdk.incubator.vector \
+ *       -cp target/test-classes:target/classes:<test classpath> \
+ *       com.shtilmanilan.ai_promote_backend.benchmark.PixelKernelBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Djava.awt.headless=true", "--add-modules", "jdk.incubator.vector"})
+public class PixelKernelBenchmark {
+
+    private static final int SIZE = 1024;
+
+    @Param({"scalar", "vector"})
+    public String kernelType;
+
+    private PixelKernel kernel;
+    private PixelStatistics statistics;
+    private int[] argb;
+    private int[] lumaOut;
+    private BufferedImage image;
+
+    @Setup
+    public void setUp() {
+        kernel = "vector".equals(kernelType) ? PixelKernel.vectorized() : PixelKernel.scalar();
+        if (!kernel.name().startsWith(kernelType)) {
+            throw new IllegalStateException("Requested " + kernelType + " kernel but got " + kernel.name());
+        }
+        statistics = new PixelStatistics(1, 16, "vector".equals(kernelType));
+
+        // Smooth gradient with noise, roughly what Imagen backgrounds look like to these kernels
+        Random random = new Random(42);
+        argb = new int[SIZE * SIZE];
+        image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                int r = Math.min(255, x / 4 + random.nextInt(16));
+                int g = Math.min(255, y / 4 + random.nextInt(16));
+                int b = Math.min(255, 128 + random.nextInt(32));
+                argb[y * SIZE + x] = 0xFF000000 | r << 16 | g << 8 | b;
+                image.setRGB(x, y, argb[y * SIZE + x]);
+            }
+        }
+        lumaOut = new int[argb.length];
+    }
+
+    @TearDown
+    public void tearDown() {
+        statistics.shutdown();
+    }
+
+    @Benchmark
+    public int[] luma() {
+        kernel.luma(argb, 0, argb.length, lumaOut, 0);
+        return lumaOut;
+    }
+
+    @Benchmark
+    public long[] lumaMoments() {
+        long[] moments = new long[2];
+        kernel.lumaMoments(argb, 0, argb.length, moments);
+        return moments;
+    }
+
+    @Benchmark
+    public int[] histogram() {
+        int[] bins = new int[PixelKernel.HISTOGRAM_BINS];
+        kernel.histogram(argb, 0, argb.length, bins);
+        return bins;
+    }
+
+    @Benchmark
+    public ImageStatistics analyze() {
+        return statistics.analyze(image);
+    }
+
+    @Benchmark
+    public int sampledBaseline() {
+        double totalBrightness = 0;
+        int sampleCount = 0;
+        for (int y = 0; y < SIZE; y += 50) {
+            for (int x = 0; x < SIZE; x += 50) {
+                Color color = new Color(image.getRGB(x, y));
+                totalBrightness += (0.299 * color.getRed() + 0.587 * color.getGreen() + 0.114 * color.getBlue()) / 255.0 * 100;
+                sampleCount++;
+            }
+        }
+        Map<Integer, Integer> colorCounts = new HashMap<>();
+        for (int y = 0; y < SIZE; y += 100) {
+            for (int x = 0; x < SIZE; x += 100) {
+                Color color = new Color(image.getRGB(x, y));
+                int grouped = new Color(color.getRed() / 32 * 32, color.getGreen() / 32 * 32, color.getBlue() / 32 * 32).getRGB();
+                colorCounts.merge(grouped, 1, Integer::sum);
+            }
+        }
+        int dominant = colorCounts.entrySet().stream().max(Map.Entry.comparingByValue()).map(Map.Entry::getKey).orElse(0);
+        return dominant ^ (int) (totalBrightness / sampleCount);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(PixelKernelBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
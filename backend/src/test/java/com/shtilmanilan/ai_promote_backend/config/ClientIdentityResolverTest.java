@@ -0,0 +1,186 @@
+package com.shtilmanilan.ai_promote_backend.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ClientIdentityResolverTest {
+
+    private static final String TRUSTED = "127.0.0.0/8, ::1, 10.0.0.0/8, 2001:db8:ffff::/48";
+
+    @ParameterizedTest
+    @CsvSource(delimiter = ';', value = {
+        "::;                          0000000000000000; 0000000000000000",
+        "1::;                         0001000000000000; 0000000000000000",
+        "::1;                         0000000000000000; 0000000000000001",
+        "1:2:3:4:5:6:7:8;             0001000200030004; 0005000600070008",
+        "1:2:3:4:5:6:1.2.3.4;         0001000200030004; 0005000601020304",
+        "2001:DB8::a:b;               20010db800000000; 00000000000a000b",
+        "::ffff:1.2.3.4;              0000000000000000; 0000ffff01020304",
+        "1.2.3.4;                     0000000000000000; 0000ffff01020304",
+        "1.2.3.4:5555;                0000000000000000; 0000ffff01020304",
+        "[2001:db8::1]:443;           20010db800000000; 0000000000000001",
+        "[::1];                       0000000000000000; 0000000000000001",
+        "fe80::1%eth0;                fe80000000000000; 0000000000000001",
+        "'  10.0.0.1 ';               0000000000000000; 0000ffff0a000001",
+        "255.255.255.255;             0000000000000000; 0000ffffffffffff",
+    })
+    void parsesAddresses(String text, String high, String low) {
+        long[] out = new long[2];
+
+        assertThat(ClientIdentityResolver.parse(text, 0, text.length(), out)).isTrue();
+        assertThat(out).containsExactly(Long.parseUnsignedLong(high, 16), Long.parseUnsignedLong(low, 16));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "", " ", "abc", "1:", ":1", ":::", "1:::2", "1::2::3", "12345::", "::12345", "1:2:3:4:5:6:7",
+        "1:2:3:4:5:6:7:8:9", "1:2:3:4:5:6:7::8", "::1.2.3.4:5", "1.2.3.4::", "256.1.1.1", "1.2.3",
+        "1.2.3.4.5", "1..2.3", "1.2.3.0001", "[::1", "[1.2.3]", "g::1"
+    })
+    void rejectsMalformedAddressesWithoutTouchingTheOutput(String text) {
+        long[] out = {-1, -1};
+
+        assertThat(ClientIdentityResolver.parse(text, 0, text.length(), out)).isFalse();
+        assertThat(out).containsExactly(-1, -1);
+    }
+
+    @Test
+    void parsesWithinTheGivenRange() {
+        String list = "6.6.6.6, 2001:db8::7";
+        long[] out = new long[2];
+
+        assertThat(ClientIdentityResolver.parse(list, 8, list.length(), out)).isTrue();
+        assertThat(out).containsExactly(0x20010db800000000L, 7L);
+        assertThat(ClientIdentityResolver.parse(list, 0, 7, out)).isTrue();
+        assertThat(out).containsExactly(0L, 0xffff06060606L);
+    }
+
+    /**
+     * remote; X-Forwarded-For lines separated by |; X-Real-IP; expected key
+     */
+    @ParameterizedTest
+    @CsvSource(delimiter = ';', value = {
+        // Headers from an untrusted peer are ignored
+        "203.0.113.5;        1.1.1.1;                              ;          203.0.113.5",
+        "203.0.113.5;        ;                                     8.8.8.8;   203.0.113.5",
+        // Right to left past trusted hops; a spoofed leading entry is never reached
+        "127.0.0.1;          1.2.3.4, 10.0.0.1;                    ;          1.2.3.4",
+        "127.0.0.1;          6.6.6.6, 198.51.100.7;                ;          198.51.100.7",
+        "127.0.0.1;          6.6.6.6, 198.51.100.7, 10.0.0.9;      ;          198.51.100.7",
+        "10.1.2.3;           1.1.1.1, 2.2.2.2, 3.3.3.3;            ;          3.3.3.3",
+        // Lines appended by separate proxies are one list, in order
+        "127.0.0.1;          6.6.6.6|198.51.100.7, 10.1.1.1;       ;          198.51.100.7",
+        "127.0.0.1;          6.6.6.6, 198.51.100.7|10.1.1.1;       ;          198.51.100.7",
+        // Every hop trusted: the furthest one is the client
+        "127.0.0.1;          10.0.0.2, 10.0.0.3;                   ;          10.0.0.2",
+        // An unreadable hop stops the walk at the last trusted address
+        "127.0.0.1;          unknown;                              ;          127.0.0.1",
+        "127.0.0.1;          6.6.6.6, garbage, 10.0.0.1;           ;          10.0.0.1",
+        // X-Real-IP only when there is no X-Forwarded-For
+        "127.0.0.1;          ;                                     8.8.8.8;   8.8.8.8",
+        "127.0.0.1;          4.4.4.4;                              8.8.8.8;   4.4.4.4",
+        // Ports, brackets and mapped addresses
+        "127.0.0.1;          1.2.3.4:5555;                         ;          1.2.3.4",
+        "::ffff:127.0.0.1;   1.2.3.4;                              ;          1.2.3.4",
+        "::ffff:1.2.3.4;     ;                                     ;          1.2.3.4",
+        // IPv6 clients are keyed by their /64
+        "::1;                2001:db8:abcd:12:1::5;                ;          2001:db8:abcd:12::/64",
+        "0:0:0:0:0:0:0:1;    [2001:db8::1]:443;                    ;          2001:db8:0:0::/64",
+        "2001:db8:abcd:12:ffff::1; ;                               ;          2001:db8:abcd:12::/64",
+        "127.0.0.1;          fe80::1%eth0;                         ;          fe80:0:0:0::/64",
+        "2001:db8:ffff:1::9; 9.9.9.9;                              ;          9.9.9.9",
+        "2001:db8:fffe:1::9; 9.9.9.9;                              ;          2001:db8:fffe:1::/64",
+        // Not an IP at all
+        "unix-socket;        1.1.1.1;                              ;          unix-socket",
+    })
+    void resolvesTheClientBehindTrustedProxies(String remote, String forwardedFor, String realIp, String expected) {
+        ClientIdentityResolver resolver = resolver(TRUSTED, 64);
+
+        assertThat(resolver.resolve(request(remote, forwardedFor, realIp))).isEqualTo(expected);
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = ';', value = {
+        "16;  2001:db8:abcd:12ff::1; 2001::/16",
+        "48;  2001:db8:abcd:12ff::1; 2001:db8:abcd::/48",
+        "56;  2001:db8:abcd:12ff::1; 2001:db8:abcd:1200::/56",
+        "60;  2001:db8:abcd:12ff::1; 2001:db8:abcd:12f0::/60",
+        "64;  2001:db8:abcd:12ff::1; 2001:db8:abcd:12ff::/64",
+        "112; 2001:db8:abcd:12ff::1; 2001:db8:abcd:12ff:0:0:0::/112",
+        "128; 2001:db8:abcd:12ff::1; 2001:db8:abcd:12ff:0:0:0:1/128",
+        "64;  ::;                    0:0:0:0::/64",
+    })
+    void formatsIpv6KeysByPrefixLength(int prefixLength, String remote, String expected) {
+        ClientIdentityResolver resolver = resolver(TRUSTED, prefixLength);
+
+        assertThat(resolver.resolve(request(remote, null, null))).isEqualTo(expected);
+    }
+
+    /**
+     * trusted CIDRs; remote; X-Forwarded-For; expected key
+     */
+    @ParameterizedTest
+    @CsvSource(delimiter = ';', value = {
+        // IPv4 /0 trusts every IPv4 peer but no IPv6 one
+        "0.0.0.0/0;          203.0.113.5;        1.1.1.1;   1.1.1.1",
+        "0.0.0.0/0;          2001:db8::5;        1.1.1.1;   2001:db8:0:0::/64",
+        // IPv6 /0 trusts everything, mapped IPv4 included: the walk ends at the furthest hop
+        "::/0;               203.0.113.5;        1.1.1.1, 2.2.2.2;   1.1.1.1",
+        // /32 and /128 match exactly one address
+        "203.0.113.7/32;     203.0.113.7;        1.1.1.1;   1.1.1.1",
+        "203.0.113.7/32;     203.0.113.8;        1.1.1.1;   203.0.113.8",
+        "203.0.113.7;        203.0.113.7;        1.1.1.1;   1.1.1.1",
+        "2001:db8::1/128;    2001:db8::1;        1.1.1.1;   1.1.1.1",
+        "2001:db8::1/128;    2001:db8::2;        1.1.1.1;   2001:db8:0:0::/64",
+        // Prefix boundaries
+        "10.0.0.0/9;         10.127.255.255;     1.1.1.1;   1.1.1.1",
+        "10.0.0.0/9;         10.128.0.0;         1.1.1.1;   10.128.0.0",
+        // A longer prefix under a shorter one changes nothing
+        "10.0.0.0/8, 10.1.0.0/16;   10.2.0.1;    1.1.1.1;   1.1.1.1",
+        "10.1.0.0/16, 10.0.0.0/8;   10.2.0.1;    1.1.1.1;   1.1.1.1",
+    })
+    void matchesTrustedPrefixes(String trusted, String remote, String forwardedFor, String expected) {
+        ClientIdentityResolver resolver = resolver(trusted, 64);
+
+        assertThat(resolver.resolve(request(remote, forwardedFor, null))).isEqualTo(expected);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"10.0.0.0/33", "::/129", "10.0.0.0/-1", "10.0.0/8", "example.com"})
+    void rejectsInvalidTrustedProxies(String trusted) {
+        assertThatThrownBy(() -> resolver(trusted, 64)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 129})
+    void rejectsInvalidIpv6PrefixLengths(int prefixLength) {
+        assertThatThrownBy(() -> resolver(TRUSTED, prefixLength)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static ClientIdentityResolver resolver(String trusted, int ipv6PrefixLength) {
+        return new ClientIdentityResolver(new MockEnvironment()
+            .withProperty("rate-limit.trusted-proxies", trusted)
+            .withProperty("rate-limit.ipv6-prefix-length", String.valueOf(ipv6PrefixLength)));
+    }
+
+    private static MockHttpServletRequest request(String remote, String forwardedFor, String realIp) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(remote);
+        if (forwardedFor != null) {
+            for (String line : forwardedFor.split("\\|")) {
+                request.addHeader("X-Forwarded-For", line);
+            }
+        }
+        if (realIp != null) {
+            request.addHeader("X-Real-IP", realIp);
+        }
+        return request;
+    }
+}
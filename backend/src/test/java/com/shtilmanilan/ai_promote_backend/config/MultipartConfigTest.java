@@ -0,0 +1,18 @@
+package com.shtilmanilan.ai_promote_backend.config;
+
+import jakarta.servlet.MultipartConfigElement;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MultipartConfigTest {
+
+    @Test
+    void aRequestHoldsAFullBatchOfMaximumSizeImages() {
+        MultipartConfigElement config = new MultipartConfig().multipartConfigElement(16L << 20, 50);
+
+        assertThat(config.getMaxFileSize()).isEqualTo(16L << 20);
+        assertThat(config.getMaxRequestSize()).isGreaterThanOrEqualTo(50 * (16L << 20));
+        assertThat(config.getFileSizeThreshold()).isZero();
+    }
+}
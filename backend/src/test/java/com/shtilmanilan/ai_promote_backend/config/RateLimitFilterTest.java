@@ -0,0 +1,53 @@
+package com.shtilmanilan.ai_promote_backend.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RateLimitFilterTest {
+
+    private RateLimitFilter filter;
+
+    @AfterEach
+    void shutdown() {
+        filter.shutdown();
+    }
+
+    @Test
+    void aBatchOfMaxItemsFitsTheClientBudgetAndOneMoreDoesNot() throws Exception {
+        filter = filter(new MockEnvironment());
+
+        // Client budget of 90 units at 5 per image
+        assertThat(filter.maxItems("vision-batch")).isEqualTo(18);
+        assertThat(filter.chargeBudgets(request("10.0.0.1"), new MockHttpServletResponse(), "vision-batch", 17))
+            .isTrue();
+        assertThatThrownBy(() -> filter.chargeBudgets(request("10.0.0.2"), new MockHttpServletResponse(),
+            "vision-batch", 18)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void maxItemsFollowsTheSmallerBudget() {
+        filter = filter(new MockEnvironment()
+            .withProperty("rate-limit.budget.client.capacity", "1000")
+            .withProperty("rate-limit.budget.global.capacity", "300"));
+
+        assertThat(filter.maxItems("vision-batch")).isEqualTo(60);
+        assertThat(filter.maxItems("backgrounds-images")).isEqualTo(10);
+    }
+
+    private static RateLimitFilter filter(MockEnvironment environment) {
+        return new RateLimitFilter(new ObjectMapper(), environment, new ClientIdentityResolver(environment));
+    }
+
+    private static MockHttpServletRequest request(String remoteAddress) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/vision/analyze/batch");
+        request.setRemoteAddr(remoteAddress);
+        return request;
+    }
+}
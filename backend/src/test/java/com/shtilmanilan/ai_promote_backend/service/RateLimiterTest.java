@@ -0,0 +1,229 @@
+package com.shtilmanilan.ai_promote_backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RateLimiterTest {
+
+    // 60 a minute: one emission interval is exactly a second
+    private static final int REQUESTS_PER_MINUTE = 60;
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private long clock = 42 * SECOND;
+
+    private RateLimiter limiter(int burst, int maxKeys) {
+        return new RateLimiter(REQUESTS_PER_MINUTE, burst, maxKeys, () -> clock);
+    }
+
+    @Test
+    void admitsABurstThenRejectsWithTheExactWait() {
+        RateLimiter limiter = limiter(3, 100);
+
+        for (int remaining = 2; remaining >= 0; remaining--) {
+            RateLimiter.Decision decision = limiter.tryAcquire("client");
+            assertThat(decision.allowed()).isTrue();
+            assertThat(decision.remaining()).isEqualTo(remaining);
+            assertThat(decision.retryAfterNanos()).isZero();
+        }
+
+        RateLimiter.Decision rejected = limiter.tryAcquire("client");
+        assertThat(rejected.allowed()).isFalse();
+        assertThat(rejected.limit()).isEqualTo(3);
+        assertThat(rejected.remaining()).isZero();
+        assertThat(rejected.retryAfterNanos()).isEqualTo(SECOND);
+        assertThat(rejected.resetNanos()).isEqualTo(3 * SECOND);
+
+        // Other keys have their own burst
+        assertThat(limiter.tryAcquire("other").allowed()).isTrue();
+    }
+
+    @Test
+    void admitsAgainExactlyWhenRetryAfterHasPassed() {
+        RateLimiter limiter = limiter(3, 100);
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire("client");
+        }
+
+        clock += SECOND - 1;
+        RateLimiter.Decision early = limiter.tryAcquire("client");
+        assertThat(early.allowed()).isFalse();
+        assertThat(early.retryAfterNanos()).isEqualTo(1);
+        assertThat(early.retryAfterSeconds()).isEqualTo(1);
+
+        clock += 1;
+        RateLimiter.Decision due = limiter.tryAcquire("client");
+        assertThat(due.allowed()).isTrue();
+        assertThat(due.remaining()).isZero();
+        assertThat(limiter.tryAcquire("client").retryAfterNanos()).isEqualTo(SECOND);
+    }
+
+    @Test
+    void weightedCostsNeedRoomForEveryUnit() {
+        RateLimiter limiter = limiter(3, 100);
+
+        RateLimiter.Decision first = limiter.tryAcquire("client", 2);
+        assertThat(first.allowed()).isTrue();
+        assertThat(first.remaining()).isEqualTo(1);
+
+        RateLimiter.Decision second = limiter.tryAcquire("client", 2);
+        assertThat(second.allowed()).isFalse();
+        assertThat(second.remaining()).isEqualTo(1);
+        assertThat(second.retryAfterNanos()).isEqualTo(SECOND);
+
+        assertThat(limiter.tryAcquire("client", 1).allowed()).isTrue();
+
+        assertThatThrownBy(() -> limiter.tryAcquire("client", 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> limiter.tryAcquire("client", 4)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void reserveAdmitsWithinTheMaximumDelayAndQueuesBehindEarlierReservations() {
+        RateLimiter limiter = limiter(3, 100);
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire("client");
+        }
+
+        // Just short of the wait: nothing is taken
+        RateLimiter.Decision tooSoon = limiter.reserve("client", 1, SECOND - 1);
+        assertThat(tooSoon.allowed()).isFalse();
+        assertThat(tooSoon.retryAfterNanos()).isEqualTo(SECOND);
+
+        RateLimiter.Decision first = limiter.reserve("client", 1, 2 * SECOND);
+        assertThat(first.allowed()).isTrue();
+        assertThat(first.retryAfterNanos()).isEqualTo(SECOND);
+
+        // Exactly at the maximum delay is still admitted
+        RateLimiter.Decision second = limiter.reserve("client", 1, 2 * SECOND);
+        assertThat(second.allowed()).isTrue();
+        assertThat(second.retryAfterNanos()).isEqualTo(2 * SECOND);
+
+        RateLimiter.Decision third = limiter.reserve("client", 1, 2 * SECOND);
+        assertThat(third.allowed()).isFalse();
+        assertThat(third.retryAfterNanos()).isEqualTo(3 * SECOND);
+        assertThat(third.resetNanos()).isEqualTo(5 * SECOND);
+
+        // A plain acquire queues behind the reservations too
+        assertThat(limiter.tryAcquire("client").retryAfterNanos()).isEqualTo(3 * SECOND);
+    }
+
+    @Test
+    void reserveOnAFreshKeyAdmitsImmediately() {
+        RateLimiter limiter = limiter(3, 100);
+
+        RateLimiter.Decision decision = limiter.reserve("client", 3, 10 * SECOND);
+        assertThat(decision.allowed()).isTrue();
+        assertThat(decision.retryAfterNanos()).isZero();
+        assertThat(decision.remaining()).isZero();
+    }
+
+    @Test
+    void refundRestoresCapacity() {
+        RateLimiter limiter = limiter(3, 100);
+        limiter.tryAcquire("client", 3);
+        assertThat(limiter.tryAcquire("client").allowed()).isFalse();
+
+        limiter.refund("client", 2);
+
+        assertThat(limiter.tryAcquire("client").remaining()).isEqualTo(1);
+        assertThat(limiter.tryAcquire("client").remaining()).isZero();
+        assertThat(limiter.tryAcquire("client").allowed()).isFalse();
+    }
+
+    @Test
+    void refundNeverBanksMoreThanAFullBurst() {
+        RateLimiter limiter = limiter(3, 100);
+
+        // Nothing to give back on a key that is already at a full burst
+        limiter.refund("fresh", 3);
+        limiter.tryAcquire("used");
+        limiter.refund("used", 3);
+
+        for (String key : new String[]{"fresh", "used"}) {
+            assertThat(limiter.tryAcquire(key, 3).allowed()).isTrue();
+            assertThat(limiter.tryAcquire(key).allowed()).isFalse();
+        }
+    }
+
+    @Test
+    void sweepEvictsKeysWhoseTatHasPassed() {
+        RateLimiter limiter = limiter(1, 100);
+        limiter.tryAcquire("a");
+        limiter.tryAcquire("b");
+        assertThat(limiter.getStats()).containsEntry("liveKeys", 2).containsEntry("sweeps", 0L);
+
+        // A burst of one is one second; the next new key runs the sweep
+        clock += 2 * SECOND;
+        limiter.tryAcquire("c");
+
+        assertThat(limiter.getStats())
+            .containsEntry("liveKeys", 1)
+            .containsEntry("sweeps", 1L)
+            .containsEntry("evictions", 2L);
+
+        // An evicted key comes back with a full burst
+        assertThat(limiter.tryAcquire("a").allowed()).isTrue();
+    }
+
+    @Test
+    void sweepKeepsKeysThatAreStillLimited() {
+        RateLimiter limiter = limiter(3, 100);
+        limiter.tryAcquire("busy", 3);
+        limiter.reserve("busy", 3, 3 * SECOND);
+        limiter.tryAcquire("idle");
+
+        // Sweeps run at most once per burst period, three seconds here
+        clock += 3 * SECOND;
+        limiter.tryAcquire("new");
+
+        assertThat(limiter.getStats()).containsEntry("liveKeys", 2).containsEntry("evictions", 1L);
+        // busy keeps the three seconds it had left
+        assertThat(limiter.tryAcquire("busy").retryAfterNanos()).isEqualTo(SECOND);
+    }
+
+    @Test
+    void keysPastTheCapShareTheOverflowSlotUntilASweepMakesRoom() {
+        RateLimiter limiter = limiter(1, 2);
+        assertThat(limiter.tryAcquire("a").allowed()).isTrue();
+        assertThat(limiter.tryAcquire("b").allowed()).isTrue();
+
+        // Too soon for even an early sweep: new keys share one overflow TAT
+        assertThat(limiter.tryAcquire("c").allowed()).isTrue();
+        RateLimiter.Decision shared = limiter.tryAcquire("d");
+        assertThat(shared.allowed()).isFalse();
+        assertThat(shared.retryAfterNanos()).isEqualTo(SECOND);
+        assertThat(limiter.getStats())
+            .containsEntry("liveKeys", 2)
+            .containsEntry("overflowRequests", 2L)
+            .containsEntry("evictions", 0L);
+
+        // Tracked keys are unaffected
+        assertThat(limiter.tryAcquire("a").allowed()).isFalse();
+
+        // Once a and b expire, a sweep frees their entries for new keys
+        clock += SECOND;
+        assertThat(limiter.tryAcquire("e").allowed()).isTrue();
+        assertThat(limiter.getStats())
+            .containsEntry("liveKeys", 1)
+            .containsEntry("evictions", 2L)
+            .containsEntry("overflowRequests", 2L);
+    }
+
+    @Test
+    void rejectsInvalidLimits() {
+        assertThatThrownBy(() -> new RateLimiter(0, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new RateLimiter(1, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new RateLimiter(1, 1, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void roundsHeaderSecondsUp() {
+        RateLimiter.Decision decision = new RateLimiter.Decision(false, 3, 0, SECOND + 1, 2 * SECOND);
+
+        assertThat(decision.retryAfterSeconds()).isEqualTo(2);
+        assertThat(decision.resetSeconds()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,110 @@
+package com.shtilmanilan.ai_promote_backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SharedMemoryRateLimitStoreTest {
+
+    // One request a minute, so no TAT set during a test expires before it ends
+    private static final int REQUESTS_PER_MINUTE = 1;
+    // The smallest table: every key's probe window covers all of it
+    private static final int SLOTS = 32;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void twoStoresOnOneFileShareTheLimit() throws IOException {
+        Path file = dir.resolve("limits.tat");
+        RateLimiter first = new RateLimiter(REQUESTS_PER_MINUTE, 3,
+            SharedMemoryRateLimitStore.open(file, SLOTS, REQUESTS_PER_MINUTE, 3));
+        RateLimiter second = new RateLimiter(REQUESTS_PER_MINUTE, 3,
+            SharedMemoryRateLimitStore.open(file, SLOTS, REQUESTS_PER_MINUTE, 3));
+
+        assertThat(first.tryAcquire("client").allowed()).isTrue();
+        assertThat(second.tryAcquire("client").allowed()).isTrue();
+        assertThat(first.tryAcquire("client").allowed()).isTrue();
+
+        RateLimiter.Decision rejected = second.tryAcquire("client");
+        assertThat(rejected.allowed()).isFalse();
+        assertThat(rejected.remaining()).isZero();
+        assertThat(first.tryAcquire("client").allowed()).isFalse();
+
+        // Other keys are unaffected
+        assertThat(second.tryAcquire("other").allowed()).isTrue();
+    }
+
+    @Test
+    void openRejectsAFileCreatedForAnotherLimit() throws IOException {
+        Path file = dir.resolve("limits.tat");
+        SharedMemoryRateLimitStore.open(file, SLOTS, REQUESTS_PER_MINUTE, 3);
+
+        assertThatThrownBy(() -> SharedMemoryRateLimitStore.open(file, SLOTS, REQUESTS_PER_MINUTE, 5))
+            .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> SharedMemoryRateLimitStore.open(file, 2 * SLOTS, REQUESTS_PER_MINUTE, 3))
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void expiredSlotIsReclaimedWithoutTheOldOwnersStaleCasWinning() throws IOException {
+        SharedMemoryRateLimitStore store = SharedMemoryRateLimitStore.open(
+            dir.resolve("limits.tat"), SLOTS, REQUESTS_PER_MINUTE, 1);
+        long now = store.now();
+
+        // Claimed slots read 0, which has passed: every one is expired
+        List<RateLimiter.Store.Slot> owners = new ArrayList<>();
+        for (int i = 0; i < SLOTS; i++) {
+            RateLimiter.Store.Slot slot = store.slot("old-" + i, now);
+            assertThat(slot.get()).isZero();
+            owners.add(slot);
+        }
+
+        RateLimiter.Store.Slot reclaimed = store.slot("new", now);
+        assertThat(reclaimed.get()).isEqualTo(now);
+        assertThat(store.getStats()).containsEntry("claims", (long) SLOTS).containsEntry("reclaims", 1L);
+
+        List<RateLimiter.Store.Slot> retired = owners.stream()
+            .filter(slot -> slot.get() == RateLimiter.Store.RETIRED)
+            .toList();
+        assertThat(retired).hasSize(1);
+
+        // The previous owner read 0 before the handover; its update must not land
+        assertThat(retired.get(0).compareAndSet(0, now + 1)).isFalse();
+        assertThat(reclaimed.get()).isEqualTo(now);
+
+        // The new key starts from a full burst
+        RateLimiter limiter = new RateLimiter(REQUESTS_PER_MINUTE, 1, store);
+        assertThat(limiter.tryAcquire("new").allowed()).isTrue();
+        assertThat(limiter.tryAcquire("new").allowed()).isFalse();
+    }
+
+    @Test
+    void keysShareTheOverflowSlotOnceTheProbeWindowIsFull() throws IOException {
+        SharedMemoryRateLimitStore store = SharedMemoryRateLimitStore.open(
+            dir.resolve("limits.tat"), SLOTS, REQUESTS_PER_MINUTE, 1);
+        RateLimiter limiter = new RateLimiter(REQUESTS_PER_MINUTE, 1, store);
+
+        // Every slot holds a live TAT, so none can be reclaimed
+        for (int i = 0; i < SLOTS; i++) {
+            assertThat(limiter.tryAcquire("live-" + i).allowed()).isTrue();
+        }
+        assertThat(store.getStats()).containsEntry("overflowRequests", 0L);
+
+        assertThat(limiter.tryAcquire("first").allowed()).isTrue();
+        // A different key lands on the same, now spent, overflow TAT
+        assertThat(limiter.tryAcquire("second").allowed()).isFalse();
+
+        assertThat(store.getStats())
+            .containsEntry("overflowRequests", 2L)
+            .containsEntry("usedSlots", SLOTS)
+            .containsEntry("liveKeys", SLOTS);
+    }
+}
@@ -0,0 +1,67 @@
+package com.shtilmanilan.ai_promote_backend.service.azure;
+
+import com.shtilmanilan.ai_promote_backend.model.azure.AzureBatchItemResult;
+import com.shtilmanilan.ai_promote_backend.model.azure.AzureVisionResponse;
+import com.shtilmanilan.ai_promote_backend.service.image.ImageBufferPool;
+import com.shtilmanilan.ai_promote_backend.service.image.PooledBuffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AzureVisionBatchServiceTest {
+
+    private final AzureVisionService azureVisionService = mock(AzureVisionService.class);
+    private final AzureVisionBatchService service =
+        new AzureVisionBatchService(azureVisionService, new ImageBufferPool(16), 2, 10, 1 << 20);
+
+    @AfterEach
+    void shutdown() {
+        service.shutdown();
+    }
+
+    @Test
+    void reportsFallbacksAndTheirDuplicatesAsFailures() throws Exception {
+        AzureVisionResponse analyzed = new AzureVisionResponse();
+        analyzed.setSceneType("food_");
+        when(azureVisionService.analyze(any(PooledBuffer.class), any())).thenAnswer(invocation -> {
+            PooledBuffer image = invocation.getArgument(0);
+            byte[] bytes = new byte[image.size()];
+            image.content().get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8).equals("good")
+                ? new AzureVisionService.Analysis(analyzed, false)
+                : new AzureVisionService.Analysis(new AzureVisionResponse(), true);
+        });
+        List<MultipartFile> images = List.of(image("good"), image("down"), image("down"), image("good"));
+        List<AzureBatchItemResult> results = new CopyOnWriteArrayList<>();
+        AtomicInteger skipped = new AtomicInteger();
+
+        service.analyzeBatch(images, VisionFeature.ALL, results::add, skipped::addAndGet).get(10, TimeUnit.SECONDS);
+
+        results.sort(Comparator.comparingInt(AzureBatchItemResult::index));
+        assertThat(results).extracting(AzureBatchItemResult::result)
+            .containsExactly(analyzed, null, null, analyzed);
+        assertThat(results).extracting(AzureBatchItemResult::error)
+            .containsExactly(null, "Image analysis unavailable", "Image analysis unavailable", null);
+        assertThat(results).extracting(AzureBatchItemResult::duplicate).containsExactly(false, false, false, true);
+        // Two duplicates, then the image that fell back
+        assertThat(skipped).hasValue(3);
+        assertThat(service.getStats()).containsEntry("failedImages", 2L).containsEntry("duplicatesSkipped", 2L);
+    }
+
+    private static MockMultipartFile image(String content) {
+        return new MockMultipartFile("images", content + ".png", "image/png", content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,171 @@
+package com.shtilmanilan.ai_promote_backend.service.azure;
+
+import com.shtilmanilan.ai_promote_backend.model.azure.AzureVisionResponse;
+import com.shtilmanilan.ai_promote_backend.service.image.ImageBufferPool;
+import com.shtilmanilan.ai_promote_backend.service.image.ImageDownscaler;
+import com.shtilmanilan.ai_promote_backend.service.image.PaletteExtractor;
+import com.shtilmanilan.ai_promote_backend.service.image.PooledBuffer;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+
+class AzureVisionServiceTest {
+
+    private static final String ANALYSIS = """
+        {"categories": [{"name": "food_", "score": 0.9}],
+         "color": {"dominantColorForeground": "Red", "dominantColorBackground": "White",
+                   "dominantColors": ["Red", "White"], "accentColor": "A1B2C3"},
+         "description": {"captions": [{"text": "a cake on a table", "confidence": 0.9}]},
+         "objects": [{"object": "cake", "confidence": 0.8}]}
+        """;
+
+    private final ImageBufferPool pool = new ImageBufferPool(16);
+    private final AtomicInteger azureCalls = new AtomicInteger();
+    private final List<String> azureQueries = new CopyOnWriteArrayList<>();
+    private final PaletteExtractor paletteExtractor = spy(new PaletteExtractor(5, 16384));
+    private HttpServer azure;
+    private AzureVisionService service;
+
+    @BeforeEach
+    void startAzure() throws IOException {
+        azure = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        azure.createContext("/vision/v3.1/analyze", exchange -> {
+            azureCalls.incrementAndGet();
+            azureQueries.add(exchange.getRequestURI().getQuery());
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = ANALYSIS.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        azure.start();
+
+        service = new AzureVisionService(pool, new ImageDownscaler(pool, true, 1024, 0.85f),
+            paletteExtractor, 256, 30, 100);
+        ReflectionTestUtils.setField(service, "endpoint", "http://127.0.0.1:" + azure.getAddress().getPort());
+        ReflectionTestUtils.setField(service, "key", "test");
+        ReflectionTestUtils.setField(service, "maxUploadBytes", 16L << 20);
+        ReflectionTestUtils.setField(service, "nearDuplicateEnabled", true);
+        ReflectionTestUtils.setField(service, "nearDuplicateMaxDistance", 6);
+        // Near-duplicate hits then reuse the cached colours rather than copying them with new ones
+        ReflectionTestUtils.setField(service, "localPaletteEnabled", false);
+    }
+
+    @AfterEach
+    void stopAzure() {
+        azure.stop(0);
+    }
+
+    @Test
+    void cachedResultsAreCopiesTheCallerMayChange() throws IOException {
+        byte[] image = png(0);
+
+        AzureVisionResponse first = analyze(image);
+        assertThat(first.getSceneType()).isEqualTo("food_");
+        vandalize(first);
+
+        AzureVisionResponse second = analyze(image);
+        assertThat(azureCalls).hasValue(1);
+        assertThat(second).isNotSameAs(first);
+        assertUntouched(second);
+        vandalize(second);
+
+        assertUntouched(analyze(image));
+    }
+
+    @Test
+    void nearDuplicateResultsAreCopiesTheCallerMayChange() throws IOException {
+        byte[] original = png(0);
+        byte[] retouched = png(1);
+        assertThat(retouched).isNotEqualTo(original);
+
+        vandalize(analyze(original));
+        AzureVisionResponse nearDuplicate = analyze(retouched);
+        assertThat(azureCalls).hasValue(1);
+        assertUntouched(nearDuplicate);
+        vandalize(nearDuplicate);
+
+        // Neither the original entry nor the one stored for the near-duplicate changed
+        assertUntouched(analyze(original));
+        assertUntouched(analyze(retouched));
+        assertThat(azureCalls).hasValue(1);
+    }
+
+    @Test
+    void aColourOnlyRequestTheLocalEngineFailsAsksAzureForColour() throws IOException {
+        ReflectionTestUtils.setField(service, "localPaletteEnabled", true);
+        doThrow(new IllegalStateException("palette failed")).when(paletteExtractor).extract(any());
+        byte[] image = png(0);
+
+        AzureVisionResponse result;
+        try (PooledBuffer buffer = pool.acquire(image.length)) {
+            buffer.buffer().put(image);
+            result = service.analyze(buffer.seal(), EnumSet.of(VisionFeature.COLOR)).response();
+        }
+
+        assertThat(azureQueries).singleElement().asString().contains("visualFeatures=Color&");
+        assertThat(result.getColors().getDominantColors()).isNotEmpty();
+    }
+
+    private AzureVisionResponse analyze(byte[] image) {
+        try (PooledBuffer buffer = pool.acquire(image.length)) {
+            buffer.buffer().put(image);
+            return service.analyzeImage(buffer.seal());
+        }
+    }
+
+    private static void vandalize(AzureVisionResponse response) {
+        response.setSceneType("changed");
+        response.getObjects()[0] = "changed";
+        response.getColors().setPrimary("#000000");
+        response.getColors().getDominantColors().set(0, "#000000");
+    }
+
+    private static void assertUntouched(AzureVisionResponse response) {
+        assertThat(response.getSceneType()).isEqualTo("food_");
+        assertThat(response.getObjects()).containsExactly("cake");
+        assertThat(response.getColors().getPrimary()).isNotEqualTo("#000000");
+        assertThat(response.getColors().getDominantColors()).doesNotContain("#000000");
+    }
+
+    /**
+     * A diagonal gradient; retouch != 0 changes one pixel, which changes the
+     * bytes but not the perceptual hash
+     */
+    private static byte[] png(int retouch) throws IOException {
+        BufferedImage image = new BufferedImage(128, 128, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 128; y++) {
+            for (int x = 0; x < 128; x++) {
+                int value = (x + y) * 255 / 254;
+                image.setRGB(x, y, value << 16 | (255 - value) << 8 | x);
+            }
+        }
+        if (retouch != 0) {
+            image.setRGB(64, 64, image.getRGB(64, 64) ^ retouch);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,44 @@
+package com.shtilmanilan.ai_promote_backend.service.azure;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.NullSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class VisionFeatureTest {
+
+    @ParameterizedTest
+    @CsvSource(delimiter = ';', value = {
+        "color;                    COLOR",
+        "Colors;                   COLOR",
+        "business_type;            BUSINESS_TYPE",
+        "businessType, object;     BUSINESS_TYPE OBJECTS",
+        "color,;                   COLOR",
+        "' description , color ';  DESCRIPTION COLOR",
+    })
+    void parsesFeatureNames(String features, String expected) {
+        EnumSet<VisionFeature> parsed = EnumSet.noneOf(VisionFeature.class);
+        Arrays.stream(expected.split(" ")).map(VisionFeature::valueOf).forEach(parsed::add);
+
+        assertThat(VisionFeature.parse(features)).isEqualTo(parsed);
+    }
+
+    @ParameterizedTest
+    @NullSource
+    @ValueSource(strings = {"", "  "})
+    void blankMeansEverything(String features) {
+        assertThat(VisionFeature.parse(features)).isEqualTo(VisionFeature.ALL);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {",", ",,", " , ", "landmarks", ",color", "color,,objects"})
+    void rejectsListsWithoutAValidFeature(String features) {
+        assertThatThrownBy(() -> VisionFeature.parse(features)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
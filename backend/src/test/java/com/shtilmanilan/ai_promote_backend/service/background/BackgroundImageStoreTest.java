@@ -0,0 +1,131 @@
+package com.shtilmanilan.ai_promote_backend.service.background;
+
+import com.shtilmanilan.ai_promote_backend.service.image.ImageBufferPool;
+import com.shtilmanilan.ai_promote_backend.service.image.PooledBuffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BackgroundImageStoreTest {
+
+    private final ImageBufferPool pool = new ImageBufferPool(16);
+
+    @TempDir
+    Path dir;
+
+    private BackgroundImageStore store;
+
+    @AfterEach
+    void shutdown() {
+        store.shutdown();
+    }
+
+    @Test
+    void flushesToDiskAndReleasesTheBuffer() throws Exception {
+        store = store(dir, 5, 128);
+
+        store.store("a.png", image(1000, (byte) 1));
+
+        awaitStats(stats -> stats.get("imagesFlushed").equals(1L));
+        assertThat(Files.readAllBytes(dir.resolve("a.png"))).containsOnly(1).hasSize(1000);
+        assertThat(store.getStats()).containsEntry("pendingImages", 0).containsEntry("pendingBytes", 0L);
+        assertThat(inUse()).isZero();
+    }
+
+    @Test
+    void retriesAFailedWriteAfterABackoff() throws Exception {
+        Path missing = dir.resolve("not-yet");
+        store = store(missing, 5, 128);
+
+        store.store("a.png", image(1000, (byte) 2));
+        awaitStats(stats -> stats.get("writeRetries").equals(1L));
+        // Still served from memory meanwhile
+        assertThat(store.getPendingImage("a.png")).hasSize(1000);
+
+        Files.createDirectories(missing);
+        awaitStats(stats -> stats.get("imagesFlushed").equals(1L));
+
+        assertThat(Files.readAllBytes(missing.resolve("a.png"))).containsOnly(2).hasSize(1000);
+        assertThat(store.getStats())
+            .containsEntry("flushFailures", 1L)
+            .containsEntry("imagesDropped", 0L)
+            .containsEntry("pendingBytes", 0L);
+        assertThat(inUse()).isZero();
+    }
+
+    @Test
+    void givesUpAfterTheLastAttemptAndReleasesTheBuffer() throws Exception {
+        store = store(dir.resolve("missing"), 2, 128);
+
+        store.store("a.png", image(1000, (byte) 3));
+
+        awaitStats(stats -> stats.get("imagesDropped").equals(1L));
+        assertThat(store.getStats())
+            .containsEntry("flushFailures", 2L)
+            .containsEntry("writeRetries", 1L)
+            .containsEntry("pendingImages", 0)
+            .containsEntry("pendingBytes", 0L);
+        assertThat(store.getPendingImage("a.png")).isNull();
+        assertThat(inUse()).isZero();
+    }
+
+    @Test
+    void dropsTheOldestFailingImagesPastThePendingLimit() throws Exception {
+        // Each image takes a 1 MiB pooled buffer; the limit holds one
+        store = store(dir.resolve("missing"), 100, 1);
+
+        store.store("a.png", image(600_000, (byte) 4));
+        store.store("b.png", image(600_000, (byte) 5));
+        store.store("c.png", image(600_000, (byte) 6));
+
+        awaitStats(stats -> stats.get("imagesDropped").equals(2L));
+        assertThat(store.getStats()).containsEntry("pendingImages", 1).containsEntry("pendingBytes", 1L << 20);
+        assertThat(store.getPendingImage("a.png")).isNull();
+        assertThat(store.getPendingImage("b.png")).isNull();
+        assertThat(store.getPendingImage("c.png")).containsOnly(6);
+    }
+
+    private BackgroundImageStore store(Path path, int maxWriteAttempts, long maxPendingMegabytes) {
+        BackgroundImageStore store = new BackgroundImageStore();
+        ReflectionTestUtils.setField(store, "backgroundImagesPath", path.toString());
+        ReflectionTestUtils.setField(store, "flushBatchSize", 16);
+        ReflectionTestUtils.setField(store, "queueCapacity", 64);
+        ReflectionTestUtils.setField(store, "maxWriteAttempts", maxWriteAttempts);
+        ReflectionTestUtils.setField(store, "maxPendingMegabytes", maxPendingMegabytes);
+        store.init();
+        return store;
+    }
+
+    private PooledBuffer image(int size, byte value) {
+        PooledBuffer image = pool.acquire(size);
+        byte[] bytes = new byte[size];
+        Arrays.fill(bytes, value);
+        image.buffer().put(bytes);
+        return image.seal();
+    }
+
+    @SuppressWarnings("unchecked")
+    private int inUse() {
+        Map<String, Object> classes = (Map<String, Object>) pool.getStats().get("sizeClasses");
+        return classes.values().stream()
+            .mapToInt(stats -> (Integer) ((Map<String, Object>) stats).get("inUse"))
+            .sum();
+    }
+
+    private void awaitStats(Predicate<Map<String, Object>> condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!condition.test(store.getStats())) {
+            assertThat(System.nanoTime()).as("store stats %s", store.getStats()).isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+}
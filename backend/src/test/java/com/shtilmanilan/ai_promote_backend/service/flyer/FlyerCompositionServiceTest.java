@@ -0,0 +1,129 @@
+package com.shtilmanilan.ai_promote_backend.service.flyer;
+
+import com.shtilmanilan.ai_promote_backend.model.ai.TextGenerationResponse;
+import com.shtilmanilan.ai_promote_backend.model.azure.AzureFlierConfig;
+import com.shtilmanilan.ai_promote_backend.model.azure.AzureVisionResponse;
+import com.shtilmanilan.ai_promote_backend.model.background.BackgroundOption;
+import com.shtilmanilan.ai_promote_backend.model.flyer.FlyerComposeRequest;
+import com.shtilmanilan.ai_promote_backend.model.flyer.FlyerComposeResponse;
+import com.shtilmanilan.ai_promote_backend.service.azure.AzureVisionService;
+import com.shtilmanilan.ai_promote_backend.service.background.BackgroundGenerationService;
+import com.shtilmanilan.ai_promote_backend.service.background.ImagenBackgroundService;
+import com.shtilmanilan.ai_promote_backend.service.groq.GroqService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FlyerCompositionServiceTest {
+
+    private final AzureVisionService azureVisionService = mock(AzureVisionService.class);
+    private final GroqService groqService = mock(GroqService.class);
+    private final BackgroundGenerationService backgroundGenerationService = mock(BackgroundGenerationService.class);
+    private final ImagenBackgroundService imagenBackgroundService = mock(ImagenBackgroundService.class);
+    private final BackgroundOption generated = new BackgroundOption();
+    private final BackgroundOption fallback = new BackgroundOption();
+
+    private FlyerCompositionService service;
+
+    @AfterEach
+    void shutdown() {
+        service.shutdown();
+    }
+
+    @Test
+    void interruptsAStageThatTimesOut() throws Exception {
+        service = service(2, 8);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(azureVisionService.analyzeImage(any(String.class))).thenAnswer(invocation -> {
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return new AzureVisionResponse();
+        });
+
+        FlyerComposeResponse response = service.compose(request(false, false)).get(10, TimeUnit.SECONDS);
+
+        assertThat(response.getFallbacks()).containsExactly("analysis");
+        assertThat(response.getAnalysis().getError()).isNotNull();
+        assertThat(response.getBackgrounds()).containsExactly(generated);
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void dependentStagesFallBackWhenThePoolIsBusy() throws Exception {
+        // One thread, one queued stage: analysis runs, text waits in the queue
+        service = service(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(azureVisionService.analyzeImage(any(String.class))).thenAnswer(invocation -> {
+            release.await();
+            return new AzureVisionResponse();
+        });
+
+        var future = service.compose(request(true, true));
+        // The backgrounds are submitted when analysis completes, with the queue still full
+        release.countDown();
+        FlyerComposeResponse response = future.get(10, TimeUnit.SECONDS);
+
+        assertThat(response.getFallbacks()).containsExactlyInAnyOrder("cssBackgrounds", "imagenBackgrounds");
+        assertThat(response.getBackgrounds()).containsExactly(fallback);
+        assertThat(response.getImageBackgrounds()).isEmpty();
+        assertThat(response.getGeneratedText()).isEqualTo("Generated");
+        assertThat(response.getConfig()).isNotNull();
+        assertThat(service.getStats()).containsEntry("rejected", 2L).containsEntry("composed", 1L);
+    }
+
+    @Test
+    void rejectsTheRequestWhenItsFirstStagesCannotBeQueued() throws Exception {
+        service = service(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(azureVisionService.analyzeImage(any(String.class))).thenAnswer(invocation -> {
+            release.await();
+            return new AzureVisionResponse();
+        });
+        var first = service.compose(request(false, false));
+        var second = service.compose(request(false, false));
+
+        try {
+            assertThatThrownBy(() -> service.compose(request(false, false)))
+                .isInstanceOf(RejectedExecutionException.class);
+            assertThat(service.getStats()).containsEntry("rejected", 1L);
+        } finally {
+            release.countDown();
+        }
+        assertThat(first.get(10, TimeUnit.SECONDS).getAnalysis().getError()).isNull();
+        assertThat(second.get(10, TimeUnit.SECONDS).getAnalysis().getError()).isNull();
+    }
+
+    private FlyerCompositionService service(int parallelism, int queueCapacity) {
+        TextGenerationResponse text = new TextGenerationResponse();
+        text.setGeneratedText("Generated");
+        when(groqService.generateText(any())).thenReturn(text);
+        when(backgroundGenerationService.generateBackgrounds(any())).thenReturn(List.of(generated));
+        when(backgroundGenerationService.generateFallbackBackgrounds(any())).thenReturn(List.of(fallback));
+        when(imagenBackgroundService.generateBackgroundImages(any())).thenReturn(List.of(generated));
+        when(azureVisionService.generateFlierConfig(any())).thenReturn(new AzureFlierConfig());
+        return new FlyerCompositionService(azureVisionService, groqService, backgroundGenerationService,
+            imagenBackgroundService, parallelism, queueCapacity, 1, 1, 1, 1);
+    }
+
+    private static FlyerComposeRequest request(boolean generateText, boolean generateImages) {
+        FlyerComposeRequest request = new FlyerComposeRequest();
+        request.setImage("data:image/png;base64,AAAA");
+        request.setTitle("Bakery");
+        request.setGenerateText(generateText);
+        request.setGenerateImages(generateImages);
+        return request;
+    }
+}
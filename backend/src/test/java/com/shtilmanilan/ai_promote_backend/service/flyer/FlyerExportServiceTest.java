@@ -0,0 +1,191 @@
+package com.shtilmanilan.ai_promote_backend.service.flyer;
+
+import com.shtilmanilan.ai_promote_backend.model.background.BackgroundOption;
+import com.shtilmanilan.ai_promote_backend.model.flyer.FlyerRenderRequest;
+import com.shtilmanilan.ai_promote_backend.service.background.BackgroundImageStore;
+import com.shtilmanilan.ai_promote_backend.service.image.ImageBufferPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FlyerExportServiceTest {
+
+    private final FlyerRenderer renderer =
+        new FlyerRenderer(new ImageBufferPool(16), new BackgroundImageStore(), 1, 16, 1024, 8, 6);
+    // 64-row tiles and a window of six, so a 517-row export takes nine tiles and refills the window
+    private final FlyerExportService service = new FlyerExportService(renderer, 4, 2, 64, 6);
+
+    @AfterEach
+    void shutdown() {
+        service.shutdown();
+        renderer.shutdown();
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = ';', value = {
+        "0; 0", "0; 1", "1; 0", "1; 1", "100; 7",
+        "65520; 1", "65521; 1", "65522; 3", "1; 65521", "3; 65522",
+        "5552; 5553", "200000; 131042", "131042; 200000",
+    })
+    void combineAdlerMatchesAdler32OfTheConcatenation(int firstLength, int secondLength) {
+        for (int fill : new int[]{-1, 0, 42}) {
+            byte[] data = data(firstLength + secondLength, fill);
+
+            long first = adler(data, 0, firstLength);
+            long second = adler(data, firstLength, secondLength);
+
+            assertThat(FlyerExportService.combineAdler(first, second, secondLength))
+                .as("fill %d", fill)
+                .isEqualTo(adler(data, 0, data.length));
+        }
+    }
+
+    @Test
+    void tiledPngMatchesASinglePassRender() throws IOException {
+        FlyerRenderRequest request = request(300, 517);
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        service.prepare(request).writeTo(png);
+
+        BufferedImage expected = new BufferedImage(300, 517, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = expected.createGraphics();
+        try {
+            renderer.prepare(request, 300, 517).paint(g);
+        } finally {
+            g.dispose();
+        }
+        BufferedImage actual = ImageIO.read(new ByteArrayInputStream(png.toByteArray()));
+
+        assertThat(service.getStats()).containsEntry("tiles", 9L).containsEntry("exports", 1L);
+        assertThat(inflateImageData(png.toByteArray())).hasSize(517 * (1 + 300 * 3));
+        assertThat(actual.getWidth()).isEqualTo(300);
+        assertThat(actual.getHeight()).isEqualTo(517);
+        for (int y = 0; y < 517; y++) {
+            for (int x = 0; x < 300; x++) {
+                int want = expected.getRGB(x, y);
+                int got = actual.getRGB(x, y);
+                if (want != got) {
+                    assertThat(Integer.toHexString(got)).as("pixel %d,%d", x, y).isEqualTo(Integer.toHexString(want));
+                }
+            }
+        }
+    }
+
+    @Test
+    void aSaturatedServiceRefusesInPrepareAndWritingGivesTheSlotBack() throws IOException {
+        FlyerExportService.Export first = service.prepare(request(40, 30));
+        FlyerExportService.Export second = service.prepare(request(40, 30));
+
+        assertThatThrownBy(() -> service.prepare(request(40, 30))).isInstanceOf(RejectedExecutionException.class);
+        assertThat(service.getStats()).containsEntry("activeExports", 2).containsEntry("rejected", 1L);
+
+        first.writeTo(OutputStream.nullOutputStream());
+        assertThatThrownBy(() -> first.writeTo(OutputStream.nullOutputStream())).isInstanceOf(IOException.class);
+        FlyerExportService.Export third = service.prepare(request(40, 30));
+        second.writeTo(OutputStream.nullOutputStream());
+        third.writeTo(OutputStream.nullOutputStream());
+
+        assertThat(service.getStats()).containsEntry("activeExports", 0).containsEntry("exports", 3L);
+    }
+
+    @Test
+    void aFailedPrepareGivesTheSlotBack() {
+        FlyerRenderRequest request = request(40, 30);
+        request.getBackground().setBackgroundImage(".hidden.png");
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> service.prepare(request)).isInstanceOf(IllegalArgumentException.class);
+        }
+        assertThat(service.getStats()).containsEntry("activeExports", 0).containsEntry("rejected", 0L);
+    }
+
+    private static FlyerRenderRequest request(int width, int height) {
+        BackgroundOption background = new BackgroundOption("Export",
+            "linear-gradient(135deg, #2196F3, #FF9800), radial-gradient(circle at 20% 80%, #4CAF5080, transparent 60%)",
+            "#333333", "#4CAF50", "test");
+        background.setPatternCSS("repeating-linear-gradient(45deg, #00000010 0px, #00000010 10px, transparent 10px, transparent 20px)");
+        background.setTextOverlay("rgba(255,255,255,0.6)");
+
+        FlyerRenderRequest request = new FlyerRenderRequest();
+        request.setBackground(background);
+        request.setTitle("Crazy Sale");
+        request.setPromotionalText("50% off everything in store\nThis week only - don't miss it!");
+        request.setWidth(width);
+        request.setHeight(height);
+        request.setDpi(300);
+        return request;
+    }
+
+    /**
+     * The concatenated IDAT payload, inflated; Inflater checks the stream's
+     * Adler-32 trailer when it reaches the end
+     */
+    private static byte[] inflateImageData(byte[] png) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(png, 8, png.length - 8));
+        ByteArrayOutputStream zlib = new ByteArrayOutputStream();
+        while (true) {
+            int length = in.readInt();
+            byte[] type = in.readNBytes(4);
+            byte[] body = in.readNBytes(length);
+            in.readInt();
+            if (Arrays.equals(type, "IDAT".getBytes(StandardCharsets.US_ASCII))) {
+                zlib.write(body);
+            } else if (Arrays.equals(type, "IEND".getBytes(StandardCharsets.US_ASCII))) {
+                break;
+            }
+        }
+
+        Inflater inflater = new Inflater();
+        inflater.setInput(zlib.toByteArray());
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try {
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                assertThat(count > 0 || !inflater.needsInput()).as("truncated image data").isTrue();
+                raw.write(buffer, 0, count);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+        return raw.toByteArray();
+    }
+
+    private static byte[] data(int length, int fill) {
+        byte[] data = new byte[length];
+        if (fill < 0) {
+            new Random(length).nextBytes(data);
+        } else {
+            Arrays.fill(data, (byte) (fill == 0 ? 0xFF : fill));
+        }
+        return data;
+    }
+
+    private static long adler(byte[] data, int offset, int length) {
+        Adler32 adler = new Adler32();
+        adler.update(data, offset, length);
+        return adler.getValue();
+    }
+}
@@ -0,0 +1,123 @@
+package com.shtilmanilan.ai_promote_backend.service.image;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The vector kernel must match the scalar reference exactly: lane-multiple
+ * bodies, scalar tails, odd offsets, the histogram's index chunks and the
+ * moments' flush blocks.
+ */
+class PixelKernelTest {
+
+    // One flush block of VectorPixelKernel.lumaMoments
+    private static final int FLUSH = 32768;
+
+    private static final PixelKernel scalar = PixelKernel.scalar();
+    private static final PixelKernel vector = PixelKernel.vectorized();
+    private static final int[] noise = new int[3 * FLUSH];
+
+    @BeforeAll
+    static void fill() {
+        Random random = new Random(42);
+        for (int i = 0; i < noise.length; i++) {
+            noise[i] = random.nextInt();
+        }
+    }
+
+    @Test
+    void vectorKernelIsAvailableToTheTests() {
+        assertThat(vector.name()).startsWith("vector-");
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = ';', value = {
+        "0; 0", "0; 1", "0; 7", "0; 8", "0; 9", "0; 15", "0; 16", "0; 17", "0; 33",
+        "1; 1", "1; 8", "3; 16", "5; 31", "17; 100",
+        "0; 1023", "0; 1024", "0; 1025", "7; 3079",
+        "0; 32767", "0; 32768", "0; 32769", "1; 32768", "9; 65536", "3; 65551", "13; 98291",
+    })
+    void luma(int offset, int length) {
+        int[] expected = new int[length + 5];
+        int[] actual = new int[length + 5];
+        Arrays.fill(expected, -1);
+        Arrays.fill(actual, -1);
+
+        scalar.luma(noise, offset, length, expected, 2);
+        vector.luma(noise, offset, length, actual, 2);
+
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = ';', value = {
+        "0; 0", "0; 1", "0; 7", "0; 8", "0; 9", "0; 15", "0; 16", "0; 17", "0; 33",
+        "1; 1", "1; 8", "3; 16", "5; 31", "17; 100",
+        "0; 1023", "0; 1024", "0; 1025", "7; 3079",
+        "0; 32767", "0; 32768", "0; 32769", "1; 32768", "9; 65536", "3; 65551", "13; 98291",
+    })
+    void lumaMoments(int offset, int length) {
+        long[] expected = {11, 13};
+        long[] actual = {11, 13};
+
+        scalar.lumaMoments(noise, offset, length, expected);
+        vector.lumaMoments(noise, offset, length, actual);
+
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = ';', value = {
+        "0; 32768", "0; 32769", "3; 65551", "0; 98304",
+    })
+    void lumaMomentsOfWhiteDoNotOverflowAFlushBlock(int offset, int length) {
+        int[] white = new int[3 * FLUSH];
+        Arrays.fill(white, 0xFFFFFFFF);
+        long[] expected = new long[2];
+        long[] actual = new long[2];
+
+        scalar.lumaMoments(white, offset, length, expected);
+        vector.lumaMoments(white, offset, length, actual);
+
+        assertThat(actual).isEqualTo(expected).containsExactly(255L * length, 255L * 255 * length);
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = ';', value = {
+        "0; 0", "0; 1", "0; 7", "0; 8", "0; 9", "0; 15", "0; 16", "0; 17", "0; 33",
+        "1; 1", "1; 8", "3; 16", "5; 31", "17; 100",
+        "0; 1023", "0; 1024", "0; 1025", "7; 3079",
+        "0; 32767", "0; 32768", "0; 32769", "1; 32768", "9; 65536", "3; 65551", "13; 98291",
+    })
+    void histogram(int offset, int length) {
+        int[] expected = new int[PixelKernel.HISTOGRAM_BINS];
+        int[] actual = new int[PixelKernel.HISTOGRAM_BINS];
+        expected[5] = actual[5] = 3;
+
+        scalar.histogram(noise, offset, length, expected);
+        vector.histogram(noise, offset, length, actual);
+
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    void histogramOfOneColourLandsInOneBin() {
+        int[] pixels = new int[1029];
+        Arrays.fill(pixels, 0xFF_E0_40_A0);
+        int[] expected = new int[PixelKernel.HISTOGRAM_BINS];
+        int[] actual = new int[PixelKernel.HISTOGRAM_BINS];
+
+        scalar.histogram(pixels, 0, pixels.length, expected);
+        vector.histogram(pixels, 0, pixels.length, actual);
+
+        assertThat(actual).isEqualTo(expected);
+        assertThat(actual[7 << 6 | 2 << 3 | 5]).isEqualTo(pixels.length);
+    }
+}
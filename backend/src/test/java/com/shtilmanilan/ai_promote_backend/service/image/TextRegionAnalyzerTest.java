@@ -0,0 +1,75 @@
+package com.shtilmanilan.ai_promote_backend.service.image;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class TextRegionAnalyzerTest {
+
+    @ParameterizedTest
+    @CsvSource({
+        "1000, 1", "1000, 5", "1, 1", "1, 1000", "96, 1", "300, 2"
+    })
+    void analyzesImagesOfAnyShape(int width, int height) {
+        TextRegions regions = new TextRegionAnalyzer(96).analyze(image(width, height, Color.WHITE));
+
+        assertThat(regions.contrastRatio(Color.BLACK)).isCloseTo(21.0, within(1e-9));
+        assertThat(regions.title().y() + regions.title().height()).isLessThanOrEqualTo(1.0);
+        assertThat(regions.body().y() + regions.body().height()).isLessThanOrEqualTo(1.0);
+    }
+
+    @Test
+    void aStripOneCellHighUsesTheWholeImageForBothRegions() {
+        TextRegions regions = new TextRegionAnalyzer(96).analyze(image(960, 4, Color.BLACK));
+
+        for (TextRegions.Region region : new TextRegions.Region[]{regions.title(), regions.body()}) {
+            assertThat(region.x()).isZero();
+            assertThat(region.y()).isZero();
+            assertThat(region.width()).isEqualTo(1.0);
+            assertThat(region.height()).isEqualTo(1.0);
+        }
+        assertThat(regions.textPosition()).isEqualTo("center");
+    }
+
+    @Test
+    void placesTextOnTheCalmestPartOfTheImage() {
+        BufferedImage image = image(400, 400, Color.WHITE);
+        Graphics2D graphics = image.createGraphics();
+        // Stripes, several cells apart, over the top half
+        graphics.setColor(Color.BLACK);
+        for (int y = 0; y < 200; y += 32) {
+            graphics.fillRect(0, y, 400, 16);
+        }
+        graphics.dispose();
+
+        TextRegions regions = new TextRegionAnalyzer(96).analyze(image);
+
+        assertThat(regions.title().busyness()).isZero();
+        assertThat(regions.body().busyness()).isZero();
+        assertThat(regions.textPosition()).isEqualTo("bottom");
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, -1})
+    void rejectsANonPositiveGrid(int gridSize) {
+        assertThatThrownBy(() -> new TextRegionAnalyzer(gridSize)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static BufferedImage image(int width, int height, Color color) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        return image;
+    }
+}